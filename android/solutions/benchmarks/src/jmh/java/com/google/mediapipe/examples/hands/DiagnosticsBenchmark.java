@@ -0,0 +1,71 @@
+package com.google.mediapipe.examples.hands;
+
+import java.util.Locale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Per-frame cost of the wrist log line, formatted with String.format as before and through a
+// Diagnostics channel that is disabled, rate limited, or emitting every frame.
+
+@State(Scope.Thread)
+public class DiagnosticsBenchmark {
+
+    private HandFrame[] frames;
+    private int next;
+    private Blackhole sinkHole;
+
+    private Diagnostics.Channel disabled;
+    private Diagnostics.Channel rateLimited;
+    private Diagnostics.Channel everyFrame;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        frames = HandFixtures.recorded(50, 0.02f, 7L);
+        sinkHole = blackhole;
+        Diagnostics diagnostics = new Diagnostics("bench", Diagnostics.DEBUG, (priority, tag, message) -> sinkHole.consume(message));
+        disabled = diagnostics.channel("Wrist", Diagnostics.DEBUG, 0);
+        disabled.setEnabled(false);
+        rateLimited = diagnostics.channel("Wrist", Diagnostics.DEBUG, 500);
+        everyFrame = diagnostics.channel("Wrist", Diagnostics.DEBUG, 0);
+    }
+
+    private HandFrame nextFrame() {
+        HandFrame frame = frames[next];
+        next = next + 1 == frames.length ? 0 : next + 1;
+        return frame;
+    }
+
+    /** The old logWristLandmark formatting, without the logcat write. */
+    @Benchmark
+    public String legacyStringFormat() {
+        HandFrame hand = nextFrame();
+        return String.format(Locale.ROOT,
+                "MediaPipe Hand wrist normalized coordinates (value range: [0, 1]): x=%f, y=%f",
+                hand.x(0), hand.y(0));
+    }
+
+    @Benchmark
+    public void channelDisabled() {
+        log(disabled, nextFrame());
+    }
+
+    @Benchmark
+    public void channelRateLimited() {
+        log(rateLimited, nextFrame());
+    }
+
+    @Benchmark
+    public void channelEveryFrame() {
+        log(everyFrame, nextFrame());
+    }
+
+    private static void log(Diagnostics.Channel channel, HandFrame hand) {
+        if (channel.begin()) {
+            channel.append("x=").append(hand.x(0), 4).append(" y=").append(hand.y(0), 4).emit();
+        }
+    }
+}
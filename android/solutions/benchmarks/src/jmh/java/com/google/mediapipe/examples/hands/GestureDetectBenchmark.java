@@ -0,0 +1,92 @@
+package com.google.mediapipe.examples.hands;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Per-frame cost of the rule based classifiers in GestureDetect
+
+@State(Scope.Thread)
+public class GestureDetectBenchmark {
+
+    // "synthetic" cycles the clean poses, "recorded" the -Precording file or jittered tracker-like sequences
+    @Param({"synthetic", "recorded"})
+    public String landmarks;
+
+    private HandFrame[] frames;
+    private int next;
+    private HandFrame[] worldFrames;
+    private int nextWorld;
+    private final float[] curls = new float[FingerState.NUM_FINGERS];
+    private final GestureStabilizer stabilizer = new GestureStabilizer();
+    private final MultiHandFrame multiHand = new MultiHandFrame();
+    private final HandGesture[] gestures = new HandGesture[MultiHandFrame.MAX_HANDS];
+
+    @Setup
+    public void setup() {
+        frames = "recorded".equals(landmarks)
+                ? HandFixtures.recorded(50, 0.02f, 42L)
+                : HandFixtures.poses();
+        worldFrames = HandFixtures.worldPoses();
+        for (int i = 0; i < MultiHandFrame.MAX_HANDS; i++) {
+            multiHand.hand(i).copyFrom(frames[i % frames.length]);
+        }
+        multiHand.setHandCount(MultiHandFrame.MAX_HANDS);
+    }
+
+    private HandFrame nextFrame() {
+        HandFrame frame = frames[next];
+        next = next + 1 == frames.length ? 0 : next + 1;
+        return frame;
+    }
+
+    private HandFrame nextWorldFrame() {
+        HandFrame frame = worldFrames[nextWorld];
+        nextWorld = nextWorld + 1 == worldFrames.length ? 0 : nextWorld + 1;
+        return frame;
+    }
+
+    /** Image-space fallback: y comparisons followed by the table lookup. */
+    @Benchmark
+    public HandGesture handGestureCalculator() {
+        return GestureDetect.handGestureCalculator(nextFrame());
+    }
+
+    /** Joint angles from world landmarks followed by the table lookup. */
+    @Benchmark
+    public HandGesture worldHandGestureCalculator() {
+        return GestureDetect.worldHandGestureCalculator(nextWorldFrame());
+    }
+
+    /** Finger mask and curls only. */
+    @Benchmark
+    public int fingerState() {
+        return FingerState.extract(nextWorldFrame(), curls);
+    }
+
+    /** Classification followed by temporal smoothing, as done by GestureAnalyzer per frame. */
+    @Benchmark
+    public HandGesture stabilizedGesture() {
+        return stabilizer.push(GestureDetect.handGestureCalculator(nextFrame()));
+    }
+
+    /** Every hand of a full MultiHandFrame, should scale linearly with the single-hand cost. */
+    @Benchmark
+    public HandGesture[] multiHandGestureCalculator() {
+        GestureDetect.handGestureCalculator(multiHand, gestures);
+        return gestures;
+    }
+
+    @Benchmark
+    public boolean isThumbNearFirstFinger() {
+        return GestureDetect.isThumbNearFirstFinger(nextFrame());
+    }
+
+    @Benchmark
+    public double getEuclideanDistanceAB() {
+        HandFrame frame = nextFrame();
+        return GestureDetect.getEuclideanDistanceAB(frame.x(4), frame.y(4), frame.x(8), frame.y(8));
+    }
+}
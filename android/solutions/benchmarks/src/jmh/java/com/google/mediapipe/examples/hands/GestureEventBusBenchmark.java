@@ -0,0 +1,45 @@
+package com.google.mediapipe.examples.hands;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Cost of publishing a gesture event on the analyzer worker, with subscribers that never poll
+// and with one that polls every event. A stalled subscriber must not make publishing slower.
+
+@State(Scope.Thread)
+public class GestureEventBusBenchmark {
+
+    @Param({"0", "4"})
+    public int stalledSubscribers;
+
+    private GestureEventBus bus;
+    private GestureEventBus.Subscription polling;
+    private final GestureEventBus.Event event = new GestureEventBus.Event();
+    private long frameId;
+
+    @Setup
+    public void setup() {
+        bus = new GestureEventBus(64);
+        for (int i = 0; i < stalledSubscribers; i++) {
+            bus.subscribe(GestureEventBus.OverflowPolicy.DROP_OLDEST);
+        }
+        polling = bus.subscribe(GestureEventBus.OverflowPolicy.COALESCE);
+    }
+
+    @Benchmark
+    public long publish() {
+        frameId++;
+        bus.publish(HandGesture.VICTORY, (int) (frameId & 3), 0.8f, frameId * 33_333, frameId);
+        return frameId;
+    }
+
+    @Benchmark
+    public boolean publishAndPoll() {
+        frameId++;
+        bus.publish(HandGesture.VICTORY, (int) (frameId & 3), 0.8f, frameId * 33_333, frameId);
+        return polling.poll(event);
+    }
+}
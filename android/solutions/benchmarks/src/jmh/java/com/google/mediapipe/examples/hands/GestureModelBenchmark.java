@@ -0,0 +1,69 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Per-hand cost of the learned classifiers, trained on jittered fixtures labelled by pose. The
+// model goes through write() and load() first, so the mapped-file path is what gets measured.
+
+@State(Scope.Thread)
+public class GestureModelBenchmark {
+
+    private static final String[] POSE_LABELS = {"VICTORY", "HORNS", "LOVE", "INDEX", "FIST", "NONE"};
+
+    @Param({"knn", "linear"})
+    public String model;
+
+    // Training samples per pose, only changes the kNN cost
+    @Param({"20", "200"})
+    public int samplesPerPose;
+
+    private HandFrame[] frames;
+    private int next;
+    private GestureModel gestureModel;
+    private final float[] features = new float[LandmarkFeatures.SIZE];
+    private final GestureModel.Prediction prediction = new GestureModel.Prediction();
+
+    @Setup
+    public void setup() throws IOException {
+        GestureSamples samples = new GestureSamples();
+        HandFrame[] training = HandFixtures.jittered(samplesPerPose, 0.02f, 1L);
+        for (int i = 0; i < training.length; i++) {
+            samples.add(POSE_LABELS[i / samplesPerPose], training[i], features);
+        }
+        GestureModel trained = "knn".equals(model)
+                ? samples.toKnn(5, Float.POSITIVE_INFINITY)
+                : samples.trainLinear(20, 0.05f, 1L);
+        File file = File.createTempFile("gesture_model", ".bin");
+        file.deleteOnExit();
+        trained.write(file);
+        gestureModel = GestureModel.load(file);
+        frames = HandFixtures.recorded(50, 0.02f, 42L);
+    }
+
+    private HandFrame nextFrame() {
+        HandFrame frame = frames[next];
+        next = next + 1 == frames.length ? 0 : next + 1;
+        return frame;
+    }
+
+    @Benchmark
+    public float[] landmarkFeatures() {
+        LandmarkFeatures.extract(nextFrame(), features);
+        return features;
+    }
+
+    /** Feature extraction plus classification, the per-hand work in GestureAnalyzer. */
+    @Benchmark
+    public GestureModel.Prediction classify() {
+        LandmarkFeatures.extract(nextFrame(), features);
+        gestureModel.classify(features, prediction);
+        return prediction;
+    }
+}
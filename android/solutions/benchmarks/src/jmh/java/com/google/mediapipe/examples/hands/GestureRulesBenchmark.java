@@ -0,0 +1,66 @@
+package com.google.mediapipe.examples.hands;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Rule evaluation only: the old if/else cascade against the compiled GestureRules table, on the
+// same image-space frames. ruleTable isolates the lookup from the finger checks.
+
+@State(Scope.Thread)
+public class GestureRulesBenchmark {
+
+    @Param({"synthetic", "recorded"})
+    public String landmarks;
+
+    private HandFrame[] frames;
+    private int[] masks;
+    private int next;
+    private GestureRules rules;
+
+    @Setup
+    public void setup() {
+        frames = "recorded".equals(landmarks)
+                ? HandFixtures.recorded(50, 0.02f, 42L)
+                : HandFixtures.poses();
+        rules = GestureRules.defaults();
+        masks = new int[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            // Any mask that leads to OK exercises the near(4,8) chain, the rest resolve directly
+            HandGesture expected = LegacyGestureCascade.handGestureCalculator(frames[i]);
+            if (expected != GestureDetect.handGestureCalculator(frames[i])) {
+                throw new IllegalStateException("Rule table disagrees with the cascade on frame " + i);
+            }
+            for (int mask = 0; mask <= FingerState.ALL_FINGERS; mask++) {
+                if (rules.classify(mask, frames[i], false) == expected) {
+                    masks[i] = mask;
+                    break;
+                }
+            }
+        }
+    }
+
+    private int advance() {
+        int i = next;
+        next = next + 1 == frames.length ? 0 : next + 1;
+        return i;
+    }
+
+    @Benchmark
+    public HandGesture legacyCascade() {
+        return LegacyGestureCascade.handGestureCalculator(frames[advance()]);
+    }
+
+    @Benchmark
+    public HandGesture compiledRules() {
+        return GestureDetect.handGestureCalculator(frames[advance()]);
+    }
+
+    @Benchmark
+    public HandGesture ruleTable() {
+        int i = advance();
+        return rules.classify(masks[i], frames[i], false);
+    }
+}
@@ -0,0 +1,222 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plain-JVM client of {@link GestureEventServer}, measuring delivery over loopback.
+ *
+ * <p>Usage: {@code GestureServerDriver [clients] [events] [eventsPerSecond]} starts a server in
+ * this process, connects the clients, publishes the events at the given rate, 0 for as fast as
+ * possible, and prints throughput and publish-to-receive latency per client. {@code
+ * GestureServerDriver connect <port> [seconds]} instead prints what a running server sends, e.g.
+ * the app's after {@code adb forward tcp:<port> tcp:<port>}.
+ */
+public final class GestureServerDriver {
+
+    private GestureServerDriver() {
+    }
+
+    /** Blocking reader of the server's frames. */
+    static final class Client implements AutoCloseable {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+        String[] gestureNames;
+        // Last event read
+        int gesture;
+        int hand;
+        float confidence;
+        long sequence = -1;
+        long frameId;
+        long timestampUs;
+        long serverNanos;
+
+        Client(int port) throws IOException {
+            channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            channel.socket().setTcpNoDelay(true);
+            in.flip();
+            ByteBuffer hello = nextFrame();
+            if (hello.get() != GestureEventServer.TYPE_HELLO || hello.get() != GestureEventServer.PROTOCOL_VERSION) {
+                throw new IOException("Not a gesture event server of version " + GestureEventServer.PROTOCOL_VERSION);
+            }
+            gestureNames = new String[hello.getShort()];
+            for (int i = 0; i < gestureNames.length; i++) {
+                byte[] name = new byte[hello.getShort()];
+                hello.get(name);
+                gestureNames[i] = new String(name, StandardCharsets.UTF_8);
+            }
+        }
+
+        /** Reads the next event into the fields, skipping frames of other types. */
+        void nextEvent() throws IOException {
+            while (true) {
+                ByteBuffer frame = nextFrame();
+                if (frame.get() != GestureEventServer.TYPE_EVENT) {
+                    continue;
+                }
+                gesture = frame.get();
+                hand = frame.get();
+                frame.get();
+                confidence = frame.getFloat();
+                sequence = frame.getLong();
+                frameId = frame.getLong();
+                timestampUs = frame.getLong();
+                serverNanos = frame.getLong();
+                return;
+            }
+        }
+
+        // Payload of the next frame, valid until the next call
+        private ByteBuffer nextFrame() throws IOException {
+            fill(GestureEventServer.LENGTH_BYTES);
+            int length = in.getInt();
+            fill(length);
+            ByteBuffer payload = in.slice();
+            payload.limit(length);
+            in.position(in.position() + length);
+            return payload;
+        }
+
+        private void fill(int bytes) throws IOException {
+            if (in.remaining() >= bytes) {
+                return;
+            }
+            in.compact();
+            while (in.position() < bytes) {
+                if (channel.read(in) < 0) {
+                    throw new EOFException("Server closed the connection");
+                }
+            }
+            in.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("connect")) {
+            if (args.length < 2) {
+                System.err.println("Usage: GestureServerDriver connect <port> [seconds]");
+                System.exit(2);
+            }
+            watch(Integer.parseInt(args[1]), args.length > 2 ? Long.parseLong(args[2]) : 30);
+            return;
+        }
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int events = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int rate = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        measure(clientCount, events, rate);
+    }
+
+    private static void measure(int clientCount, int events, int rate) throws Exception {
+        GestureEventBus bus = new GestureEventBus(1024);
+        HandGesture[] gestures = HandGesture.values();
+        // Publish time by sequence, read by the clients once the event arrived
+        long[] publishedNanos = new long[events];
+        try (GestureEventServer server = new GestureEventServer(bus, 0, clientCount)) {
+            Client[] clients = new Client[clientCount];
+            for (int i = 0; i < clientCount; i++) {
+                clients[i] = new Client(server.getPort());
+            }
+            while (server.getClientCount() < clientCount) {
+                Thread.sleep(1);
+            }
+            long[][] latencies = new long[clientCount][events];
+            int[] received = new int[clientCount];
+            long[] lastReceivedNanos = new long[clientCount];
+            CountDownLatch done = new CountDownLatch(clientCount);
+            for (int c = 0; c < clientCount; c++) {
+                int index = c;
+                Thread reader = new Thread(() -> {
+                    Client client = clients[index];
+                    try {
+                        while (client.sequence < events - 1) {
+                            client.nextEvent();
+                            long now = System.nanoTime();
+                            latencies[index][received[index]++] = now - publishedNanos[(int) client.sequence];
+                            lastReceivedNanos[index] = now;
+                        }
+                    } catch (IOException e) {
+                        // Closed below when the last event was dropped
+                    } finally {
+                        done.countDown();
+                    }
+                }, "client-" + c);
+                reader.setDaemon(true);
+                reader.start();
+            }
+
+            long intervalNanos = rate > 0 ? 1_000_000_000L / rate : 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < events; i++) {
+                if (intervalNanos > 0) {
+                    long due = start + i * intervalNanos;
+                    while (System.nanoTime() < due) {
+                        LockSupport.parkNanos(due - System.nanoTime());
+                    }
+                }
+                publishedNanos[i] = System.nanoTime();
+                bus.publish(gestures[i % gestures.length], i % MultiHandFrame.MAX_HANDS, 1f, i * 33_333L, i);
+            }
+            // A client whose last event was dropped would wait forever
+            if (!done.await(2, TimeUnit.SECONDS)) {
+                for (Client client : clients) {
+                    client.close();
+                }
+                done.await();
+            }
+
+            System.out.printf(Locale.ROOT, "events         %d to %d clients%s%n", events, clientCount,
+                    rate > 0 ? " at " + rate + "/s" : ", as fast as possible");
+            for (int c = 0; c < clientCount; c++) {
+                long[] sorted = Arrays.copyOf(latencies[c], received[c]);
+                Arrays.sort(sorted);
+                long elapsed = lastReceivedNanos[c] - start;
+                System.out.printf(Locale.ROOT, "client %-7d received %d at %.0f/s, lost %d, latency p50 %d us, p99 %d us, max %d us%n",
+                        c, received[c], elapsed > 0 ? received[c] * 1e9 / elapsed : 0.0, events - received[c],
+                        percentile(sorted, 0.50) / 1000, percentile(sorted, 0.99) / 1000,
+                        sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000);
+                clients[c].close();
+            }
+            System.out.println(server.describe());
+        }
+    }
+
+    private static void watch(int port, long seconds) throws IOException {
+        try (Client client = new Client(port)) {
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            long lastSequence = -1;
+            long lost = 0;
+            while (System.nanoTime() < end) {
+                client.nextEvent();
+                if (lastSequence >= 0) {
+                    lost += client.sequence - lastSequence - 1;
+                }
+                lastSequence = client.sequence;
+                System.out.printf(Locale.ROOT, "#%d hand %d %s %.2f frame %d at %d us, lost %d%n",
+                        client.sequence, client.hand, client.gestureNames[client.gesture], client.confidence,
+                        client.frameId, client.timestampUs, lost);
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+}
@@ -0,0 +1,148 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Synthetic landmark sets shared by the benchmarks
+
+final class HandFixtures {
+
+    // Finger base (MCP) x positions for index, middle, ring and pinky
+    private static final float[] FINGER_BASE_X = {0.43f, 0.50f, 0.56f, 0.62f};
+    private static final float FINGER_BASE_Y = 0.65f;
+
+    private HandFixtures() {
+    }
+
+    /** Builds an upright right hand facing the camera with the given fingers extended. */
+    static HandFrame pose(boolean thumb, boolean index, boolean middle, boolean ring, boolean pinky) {
+        HandFrame frame = new HandFrame();
+        frame.set(0, 0.50f, 0.85f, 0f);
+        if (thumb) {
+            frame.set(1, 0.44f, 0.80f, -0.01f);
+            frame.set(2, 0.40f, 0.75f, -0.02f);
+            frame.set(3, 0.36f, 0.70f, -0.03f);
+            frame.set(4, 0.32f, 0.66f, -0.04f);
+        } else {
+            frame.set(1, 0.45f, 0.80f, -0.01f);
+            frame.set(2, 0.44f, 0.74f, -0.02f);
+            frame.set(3, 0.46f, 0.70f, -0.03f);
+            frame.set(4, 0.48f, 0.69f, -0.04f);
+        }
+        boolean[] open = {index, middle, ring, pinky};
+        for (int finger = 0; finger < 4; finger++) {
+            int base = 5 + 4 * finger;
+            float x = FINGER_BASE_X[finger];
+            frame.set(base, x, FINGER_BASE_Y, -0.02f);
+            if (open[finger]) {
+                frame.set(base + 1, x, 0.55f, -0.03f);
+                frame.set(base + 2, x, 0.48f, -0.03f);
+                frame.set(base + 3, x, 0.42f, -0.04f);
+            } else {
+                frame.set(base + 1, x, 0.58f, -0.05f);
+                frame.set(base + 2, x, 0.63f, -0.04f);
+                frame.set(base + 3, x, 0.66f, -0.03f);
+            }
+        }
+        frame.setPresent(true);
+        return frame;
+    }
+
+    static HandFrame[] poses() {
+        return new HandFrame[]{
+                pose(false, true, true, false, false),  // VICTORY
+                pose(false, true, false, false, true),  // HORNS
+                pose(true, true, false, false, true),   // LOVE
+                pose(false, true, false, false, false), // INDEX
+                pose(false, false, false, false, false), // FIST
+                pose(true, true, true, true, true),     // open palm, UNDEFINED
+        };
+    }
+
+    // Rough world-landmark stand-in: meters around the hand's center, same proportions
+    private static final float WORLD_SCALE = 0.2f;
+
+    /** Converts an image-space fixture into world coordinates, rotated by {@code angle} around z. */
+    static HandFrame world(HandFrame image, double angle) {
+        HandFrame world = new HandFrame();
+        float cos = (float) Math.cos(angle);
+        float sin = (float) Math.sin(angle);
+        for (int i = 0; i < HandFrame.NUM_LANDMARKS; i++) {
+            float x = (image.x(i) - 0.5f) * WORLD_SCALE;
+            float y = (image.y(i) - 0.7f) * WORLD_SCALE;
+            world.set(i, x * cos - y * sin, x * sin + y * cos, image.z(i) * WORLD_SCALE);
+        }
+        world.setPresent(image.isPresent());
+        return world;
+    }
+
+    /** The poses as world landmarks in a few in-plane rotations. */
+    static HandFrame[] worldPoses() {
+        HandFrame[] poses = poses();
+        double[] angles = {0, Math.PI / 2, Math.PI, -Math.PI / 3};
+        HandFrame[] frames = new HandFrame[poses.length * angles.length];
+        for (int a = 0; a < angles.length; a++) {
+            for (int p = 0; p < poses.length; p++) {
+                frames[a * poses.length + p] = world(poses[p], angles[a]);
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Frames of the recording passed with -Precording, or the jittered synthetic sequence when
+     * none is given. Only the first hand of each recorded frame is used; frames without hands are
+     * skipped.
+     */
+    static HandFrame[] recorded(int framesPerPose, float amplitude, long seed) {
+        String path = System.getProperty("gesturecam.recording");
+        if (path == null) {
+            return jittered(framesPerPose, amplitude, seed);
+        }
+        List<HandFrame> frames = new ArrayList<>();
+        MultiHandFrame multiHand = new MultiHandFrame();
+        try (LandmarkReplay replay = new LandmarkReplay(new File(path))) {
+            while (replay.next(multiHand)) {
+                if (multiHand.handCount() > 0) {
+                    HandFrame frame = new HandFrame();
+                    frame.copyFrom(multiHand.hand(0));
+                    frames.add(frame);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (frames.isEmpty()) {
+            throw new IllegalStateException("No hands in recording " + path);
+        }
+        return frames.toArray(new HandFrame[0]);
+    }
+
+    /**
+     * A sequence that mimics recorded tracker output: every pose repeated with seeded
+     * per-landmark jitter, so the benchmark sees realistic branch patterns.
+     */
+    static HandFrame[] jittered(int framesPerPose, float amplitude, long seed) {
+        HandFrame[] poses = poses();
+        HandFrame[] frames = new HandFrame[poses.length * framesPerPose];
+        Random random = new Random(seed);
+        for (int p = 0; p < poses.length; p++) {
+            for (int f = 0; f < framesPerPose; f++) {
+                HandFrame frame = new HandFrame();
+                frame.copyFrom(poses[p]);
+                for (int i = 0; i < HandFrame.NUM_LANDMARKS; i++) {
+                    frame.set(i,
+                            frame.x(i) + (random.nextFloat() - 0.5f) * amplitude,
+                            frame.y(i) + (random.nextFloat() - 0.5f) * amplitude,
+                            frame.z(i));
+                }
+                frames[p * framesPerPose + f] = frame;
+            }
+        }
+        return frames;
+    }
+}
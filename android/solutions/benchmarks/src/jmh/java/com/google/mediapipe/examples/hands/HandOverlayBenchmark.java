@@ -0,0 +1,111 @@
+package com.google.mediapipe.examples.hands;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Per-frame cost of building the overlay vertices drawn by HandsResultGlRenderer.
+// The legacy* benchmarks reproduce the old one-direct-buffer-per-segment path as a baseline.
+
+@State(Scope.Thread)
+public class HandOverlayBenchmark {
+
+    private HandFrame[] frames;
+    private int next;
+
+    private final float[] square = new float[HandOverlayGeometry.SQUARE_FLOATS];
+    private final OverlayVertexBatch lines = new OverlayVertexBatch(OverlayVertexBatch.CONNECTION_VERTICES);
+    private final OverlayVertexBatch points = new OverlayVertexBatch(OverlayVertexBatch.POINT_VERTICES);
+    // Stand-in for the renderer's persistent staging buffer
+    private final FloatBuffer staging = ByteBuffer
+            .allocateDirect((OverlayVertexBatch.CONNECTION_VERTICES + OverlayVertexBatch.POINT_VERTICES)
+                    * OverlayVertexBatch.FLOATS_PER_VERTEX * 4)
+            .order(ByteOrder.nativeOrder())
+            .asFloatBuffer();
+
+    @Setup
+    public void setup() {
+        frames = HandFixtures.recorded(50, 0.02f, 7L);
+    }
+
+    private HandFrame nextFrame() {
+        HandFrame frame = frames[next];
+        next = next + 1 == frames.length ? 0 : next + 1;
+        return frame;
+    }
+
+    /** Bounding box as computed for the square overlay. */
+    @Benchmark
+    public float[] squareVertices() {
+        HandOverlayGeometry.squareVertices(nextFrame(), square);
+        return square;
+    }
+
+    /** Square overlay packed and staged the way the renderer uploads it. */
+    @Benchmark
+    public FloatBuffer squareBatch() {
+        lines.reset();
+        lines.addSquare(nextFrame());
+        staging.clear();
+        staging.put(lines.array(), 0, lines.floatCount());
+        return staging;
+    }
+
+    /** Full skeleton (connections and landmark points) packed and staged for upload. */
+    @Benchmark
+    public FloatBuffer skeletonBatch() {
+        HandFrame frame = nextFrame();
+        lines.reset();
+        points.reset();
+        lines.addConnections(frame);
+        points.addPoints(frame);
+        staging.clear();
+        staging.put(lines.array(), 0, lines.floatCount());
+        staging.put(points.array(), 0, points.floatCount());
+        return staging;
+    }
+
+    /** Square overlay as the renderer used to draw it: one direct buffer per edge. */
+    @Benchmark
+    public void legacySquareVertexBuffers(Blackhole blackhole) {
+        HandOverlayGeometry.squareVertices(nextFrame(), square);
+        for (int i = 0; i < 4; i++) {
+            int start = 2 * i;
+            int end = 2 * ((i + 1) % 4);
+            float[] vertex = {square[start], square[start + 1], square[end], square[end + 1]};
+            blackhole.consume(LegacyOverlayVertices.toVertexBuffer(vertex));
+        }
+    }
+
+    /** Connections as drawConnections used to draw them: one direct buffer per segment. */
+    @Benchmark
+    public void legacyConnectionVertexBuffers(Blackhole blackhole) {
+        HandFrame frame = nextFrame();
+        int[] connections = HandOverlayGeometry.HAND_CONNECTIONS;
+        for (int c = 0; c < connections.length; c += 2) {
+            float[] vertex = {
+                    frame.x(connections[c]), frame.y(connections[c]),
+                    frame.x(connections[c + 1]), frame.y(connections[c + 1])
+            };
+            blackhole.consume(LegacyOverlayVertices.toVertexBuffer(vertex));
+        }
+    }
+
+    /** One dot and ring per landmark, as drawCircle/drawHollowCircle used to draw them. */
+    @Benchmark
+    public void legacyLandmarkCircleVertexBuffers(Blackhole blackhole) {
+        HandFrame frame = nextFrame();
+        for (int i = 0; i < HandFrame.NUM_LANDMARKS; i++) {
+            blackhole.consume(LegacyOverlayVertices.toVertexBuffer(
+                    LegacyOverlayVertices.circleVertices(frame.x(i), frame.y(i))));
+            blackhole.consume(LegacyOverlayVertices.toVertexBuffer(
+                    LegacyOverlayVertices.hollowCircleVertices(frame.x(i), frame.y(i))));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Cost of saving a picked photo through the banded path: one full photo encoded band by band, as
+// PhotoAnnotator feeds it, and a single MCU row. Memory stays at one MCU row whatever the size;
+// gc.alloc.rate.norm shows the per-photo allocations.
+
+@State(Scope.Thread)
+public class JpegBandEncoderBenchmark {
+
+    @Param({"1920x1080", "4000x3000"})
+    public String size;
+
+    @Param({"90"})
+    public int quality;
+
+    private int width;
+    private int height;
+    private int[] band;
+    private JpegBandEncoder rowEncoder;
+    private final CountingStream out = new CountingStream();
+
+    @Setup
+    public void setup() throws IOException {
+        int x = size.indexOf('x');
+        width = Integer.parseInt(size.substring(0, x));
+        height = Integer.parseInt(size.substring(x + 1));
+        band = photoBand(width, AnnotationLayout.bandRows(width, 4, 1024 * 1024));
+        // Tall enough that the single-row benchmark never runs out of rows
+        rowEncoder = new JpegBandEncoder(out, width, 0xffff, quality);
+    }
+
+    @Benchmark
+    public long encodePhoto() throws IOException {
+        out.count = 0;
+        int bandRows = band.length / width;
+        JpegBandEncoder encoder = new JpegBandEncoder(out, width, height, quality);
+        for (int top = 0; top < height; top += bandRows) {
+            encoder.writeRows(band, 0, width, Math.min(bandRows, height - top));
+        }
+        encoder.finish();
+        return out.count;
+    }
+
+    @Benchmark
+    public int encodeMcuRow() throws IOException {
+        if (rowEncoder.getRowsReceived() + JpegBandEncoder.MCU_ROWS > rowEncoder.getHeight()) {
+            rowEncoder = new JpegBandEncoder(out, width, 0xffff, quality);
+        }
+        rowEncoder.writeRows(band, 0, width, JpegBandEncoder.MCU_ROWS);
+        return rowEncoder.getRowsReceived();
+    }
+
+    // Smooth gradients with some texture, compresses about like a photo
+    private static int[] photoBand(int width, int rows) {
+        int[] pixels = new int[width * rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / width;
+                int g = (int) (128 + 100 * Math.sin(x * 0.05 + y * 0.03));
+                int b = ((x ^ y) & 31) + 96;
+                pixels[y * width + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    private static final class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.google.mediapipe.examples.hands;
+
+// The if/else cascade GestureDetect used before the rules moved to GestureRules, kept as the
+// baseline for GestureRulesBenchmark
+
+final class LegacyGestureCascade {
+
+    private LegacyGestureCascade() {
+    }
+
+    static HandGesture handGestureCalculator(HandFrame frame) {
+        if (!frame.isPresent()) {
+            return HandGesture.UNDEFINED;
+        }
+
+        boolean thumbIsOpen = false;
+        boolean firstFingerIsOpen = false;
+        boolean secondFingerIsOpen = false;
+        boolean thirdFingerIsOpen = false;
+        boolean fourthFingerIsOpen = false;
+
+        float pseudoFixKeyPoint = frame.x(2);
+        if (pseudoFixKeyPoint < frame.x(9)) {
+            if (frame.x(3) < pseudoFixKeyPoint && frame.x(4) < pseudoFixKeyPoint) {
+                thumbIsOpen = true;
+            }
+        }
+        if (pseudoFixKeyPoint > frame.x(9)) {
+            if (frame.x(3) > pseudoFixKeyPoint && frame.x(4) > pseudoFixKeyPoint) {
+                thumbIsOpen = false;
+            }
+        }
+        pseudoFixKeyPoint = frame.y(6);
+        if (frame.y(7) < pseudoFixKeyPoint && frame.y(8) < frame.y(7)) {
+            firstFingerIsOpen = true;
+        }
+        pseudoFixKeyPoint = frame.y(10);
+        if (frame.y(11) < pseudoFixKeyPoint && frame.y(12) < frame.y(11)) {
+            secondFingerIsOpen = true;
+        }
+        pseudoFixKeyPoint = frame.y(14);
+        if (frame.y(15) < pseudoFixKeyPoint && frame.y(16) < frame.y(15)) {
+            thirdFingerIsOpen = true;
+        }
+        pseudoFixKeyPoint = frame.y(18);
+        if (frame.y(19) < pseudoFixKeyPoint && frame.y(20) < frame.y(19)) {
+            fourthFingerIsOpen = true;
+        }
+
+        if (firstFingerIsOpen && secondFingerIsOpen && !thirdFingerIsOpen && !fourthFingerIsOpen && !thumbIsOpen) {
+            return HandGesture.VICTORY;
+        } else if (firstFingerIsOpen && !secondFingerIsOpen && !thirdFingerIsOpen && fourthFingerIsOpen && !thumbIsOpen) {
+            return HandGesture.HORNS;
+        } else if (thumbIsOpen && firstFingerIsOpen && !secondFingerIsOpen && !thirdFingerIsOpen && fourthFingerIsOpen) {
+            return HandGesture.LOVE;
+        } else if (!fourthFingerIsOpen && firstFingerIsOpen && !secondFingerIsOpen && !thirdFingerIsOpen && !thumbIsOpen) {
+            return HandGesture.INDEX;
+        } else if (!firstFingerIsOpen && secondFingerIsOpen && thirdFingerIsOpen && fourthFingerIsOpen && GestureDetect.isThumbNearFirstFinger(frame)) {
+            return HandGesture.OK;
+        } else if (!firstFingerIsOpen && secondFingerIsOpen && !thirdFingerIsOpen && !fourthFingerIsOpen) {
+            return HandGesture.MIDDLE;
+        } else if (!thumbIsOpen && !firstFingerIsOpen && !secondFingerIsOpen && !thirdFingerIsOpen && !fourthFingerIsOpen) {
+            return HandGesture.FIST;
+        } else {
+            return HandGesture.UNDEFINED;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.google.mediapipe.examples.hands;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+// Vertex building as HandsResultGlRenderer did it before VBO batching: one array and one direct
+// buffer per segment or circle. Kept as the baseline for HandOverlayBenchmark.
+
+final class LegacyOverlayVertices {
+    static final int NUM_SEGMENTS = 120;
+    static final float LANDMARK_RADIUS = 0.008f;
+    static final float HOLLOW_CIRCLE_RADIUS = 0.01f;
+
+    private LegacyOverlayVertices() {
+    }
+
+    static float[] circleVertices(float x, float y) {
+        int vertexCount = NUM_SEGMENTS + 2;
+        float[] vertices = new float[vertexCount * 3];
+        vertices[0] = x;
+        vertices[1] = y;
+        vertices[2] = 0;
+        for (int i = 1; i < vertexCount; i++) {
+            float angle = 2.0f * i * (float) Math.PI / NUM_SEGMENTS;
+            int currentIndex = 3 * i;
+            vertices[currentIndex] = x + (float) (LANDMARK_RADIUS * Math.cos(angle));
+            vertices[currentIndex + 1] = y + (float) (LANDMARK_RADIUS * Math.sin(angle));
+            vertices[currentIndex + 2] = 0;
+        }
+        return vertices;
+    }
+
+    static float[] hollowCircleVertices(float x, float y) {
+        int vertexCount = NUM_SEGMENTS + 1;
+        float[] vertices = new float[vertexCount * 3];
+        for (int i = 0; i < vertexCount; i++) {
+            float angle = 2.0f * i * (float) Math.PI / NUM_SEGMENTS;
+            int currentIndex = 3 * i;
+            vertices[currentIndex] = x + (float) (HOLLOW_CIRCLE_RADIUS * Math.cos(angle));
+            vertices[currentIndex + 1] = y + (float) (HOLLOW_CIRCLE_RADIUS * Math.sin(angle));
+            vertices[currentIndex + 2] = 0;
+        }
+        return vertices;
+    }
+
+    static FloatBuffer toVertexBuffer(float[] vertex) {
+        FloatBuffer vertexBuffer =
+                ByteBuffer.allocateDirect(vertex.length * 4)
+                        .order(ByteOrder.nativeOrder())
+                        .asFloatBuffer()
+                        .put(vertex);
+        vertexBuffer.position(0);
+        return vertexBuffer;
+    }
+}
@@ -0,0 +1,150 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Locale;
+
+/**
+ * Replays a {@link LandmarkRecorder} file through the classifier, the hand stability gate, the
+ * per-hand stabilizers and the trigger rule as fast as possible and prints throughput and
+ * per-frame latency, followed by how well HandRoiTracker predicts the hand box.
+ *
+ * <p>Usage: {@code ReplayDriver <recording> [TRIGGER,GESTURES] [repeat]}. Runs the same per-frame
+ * work as GestureAnalyzer does on the device, minus the thread hand-off and the learned model.
+ */
+public final class ReplayDriver {
+
+    private ReplayDriver() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args[0].isEmpty()) {
+            System.err.println("Usage: ReplayDriver <recording> [VICTORY,HORNS,OK] [repeat]");
+            System.exit(2);
+        }
+        File recording = new File(args[0]);
+        EnumSet<HandGesture> selected = EnumSet.noneOf(HandGesture.class);
+        for (String name : (args.length > 1 ? args[1] : "VICTORY,HORNS,OK").split(",")) {
+            selected.add(HandGesture.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+        }
+        int repeat = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        try (LandmarkReplay replay = new LandmarkReplay(recording)) {
+            int frameCount = 0;
+            MultiHandFrame frame = new MultiHandFrame();
+            while (replay.next(frame)) {
+                frameCount++;
+            }
+            if (frameCount == 0) {
+                System.err.println("Recording has no frames: " + recording);
+                System.exit(1);
+            }
+            // First pass warms up the JIT, the rest are measured
+            run(replay, frame, new TriggerRule(selected, MultiHandFrame.MAX_HANDS, false), new long[frameCount]);
+            long[] latencies = new long[frameCount * repeat];
+            long start = System.nanoTime();
+            int triggers = 0;
+            for (int r = 0; r < repeat; r++) {
+                long[] pass = new long[frameCount];
+                triggers += run(replay, frame, new TriggerRule(selected, MultiHandFrame.MAX_HANDS, false), pass);
+                System.arraycopy(pass, 0, latencies, r * frameCount, frameCount);
+            }
+            long elapsed = System.nanoTime() - start;
+            Arrays.sort(latencies);
+
+            System.out.printf(Locale.ROOT, "recording      %s (%d frames, x%d)%n", recording, frameCount, repeat);
+            System.out.printf(Locale.ROOT, "throughput     %.0f frames/s%n", latencies.length * 1e9 / elapsed);
+            System.out.printf(Locale.ROOT, "latency p50    %d ns%n", percentile(latencies, 0.50));
+            System.out.printf(Locale.ROOT, "latency p99    %d ns%n", percentile(latencies, 0.99));
+            System.out.printf(Locale.ROOT, "latency max    %d ns%n", latencies[latencies.length - 1]);
+            System.out.printf(Locale.ROOT, "triggers/pass  %d%n", triggers / repeat);
+            reportRoiTracking(replay, frame);
+        }
+    }
+
+    // How well HandRoiTracker predicts the first hand's box one frame ahead, and how often it is stable
+    private static void reportRoiTracking(LandmarkReplay replay, MultiHandFrame frame) {
+        HandRoiTracker tracker = new HandRoiTracker();
+        float[] predicted = new float[4];
+        float[] measured = new float[4];
+        float[] square = new float[HandOverlayGeometry.SQUARE_FLOATS];
+        double predictionError = 0;
+        double holdError = 0;
+        int predictions = 0;
+        int tracked = 0;
+        int stable = 0;
+        replay.rewind();
+        while (replay.next(frame)) {
+            if (frame.handCount() == 0) {
+                tracker.reset();
+                continue;
+            }
+            HandFrame hand = frame.hand(0);
+            if (tracker.isTracking() && tracker.predict(frame.getTimestampUs(), predicted) && tracker.getBox(measured)) {
+                HandOverlayGeometry.squareVertices(hand, square);
+                float cx = (square[0] + square[2]) * 0.5f;
+                float cy = (square[1] + square[5]) * 0.5f;
+                predictionError += Math.hypot((predicted[0] + predicted[2]) * 0.5f - cx, (predicted[1] + predicted[3]) * 0.5f - cy);
+                holdError += Math.hypot((measured[0] + measured[2]) * 0.5f - cx, (measured[1] + measured[3]) * 0.5f - cy);
+                predictions++;
+            }
+            tracker.update(hand, frame.getTimestampUs());
+            tracked++;
+            if (tracker.isStable()) {
+                stable++;
+            }
+        }
+        if (predictions > 0) {
+            System.out.printf(Locale.ROOT, "roi error      %.4f predicted, %.4f last box (mean center distance)%n",
+                    predictionError / predictions, holdError / predictions);
+        }
+        System.out.printf(Locale.ROOT, "roi stable     %.1f%% of %d tracked frames%n", tracked == 0 ? 0 : 100.0 * stable / tracked, tracked);
+    }
+
+    // One pass over the recording, returns the number of rising trigger edges
+    private static int run(LandmarkReplay replay, MultiHandFrame frame, TriggerRule rule, long[] latencies) {
+        GestureStabilizer[] stabilizers = new GestureStabilizer[MultiHandFrame.MAX_HANDS];
+        HandRoiTracker[] trackers = new HandRoiTracker[MultiHandFrame.MAX_HANDS];
+        for (int i = 0; i < stabilizers.length; i++) {
+            stabilizers[i] = new GestureStabilizer();
+            trackers[i] = new HandRoiTracker();
+        }
+        HandGesture[] raw = new HandGesture[MultiHandFrame.MAX_HANDS];
+        HandGesture[] stable = new HandGesture[MultiHandFrame.MAX_HANDS];
+        HandGesture lastTrigger = HandGesture.UNDEFINED;
+        int triggers = 0;
+
+        replay.rewind();
+        int n = 0;
+        while (replay.next(frame)) {
+            long t0 = System.nanoTime();
+            int handCount = GestureDetect.handGestureCalculator(frame, raw);
+            for (int i = 0; i < trackers.length; i++) {
+                if (i >= handCount) {
+                    trackers[i].reset();
+                    continue;
+                }
+                trackers[i].update(frame.hand(i), frame.getTimestampUs());
+                if (!trackers[i].isStable()) {
+                    raw[i] = HandGesture.UNDEFINED;
+                }
+            }
+            for (int i = 0; i < stabilizers.length; i++) {
+                stable[i] = stabilizers[i].push(i < handCount ? raw[i] : HandGesture.UNDEFINED);
+            }
+            HandGesture trigger = rule.match(stable, handCount);
+            latencies[n++] = System.nanoTime() - t0;
+            if (trigger != HandGesture.UNDEFINED && lastTrigger == HandGesture.UNDEFINED) {
+                triggers++;
+            }
+            lastTrigger = trigger;
+        }
+        return triggers;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+}
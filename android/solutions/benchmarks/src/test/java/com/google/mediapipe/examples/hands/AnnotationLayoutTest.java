@@ -0,0 +1,134 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AnnotationLayoutTest {
+
+    private static final int MB = 1024 * 1024;
+
+    @Test
+    public void anchorsPlaceTheBoxAtTheirCornerOrTheCenter() {
+        int[][] expected = {
+            // left, top for a 100 x 40 box in a 400 x 300 image, 10 pixels from the edges
+            {10, 10}, {290, 10}, {10, 250}, {290, 250}, {150, 130}
+        };
+        AnnotationLayout.Anchor[] anchors = {
+            AnnotationLayout.Anchor.LEFT_TOP,
+            AnnotationLayout.Anchor.RIGHT_TOP,
+            AnnotationLayout.Anchor.LEFT_BOTTOM,
+            AnnotationLayout.Anchor.RIGHT_BOTTOM,
+            AnnotationLayout.Anchor.CENTER
+        };
+        for (int i = 0; i < anchors.length; i++) {
+            assertEquals(anchors[i].toString(), expected[i][0], AnnotationLayout.left(anchors[i], 400, 100, 10));
+            assertEquals(anchors[i].toString(), expected[i][1], AnnotationLayout.top(anchors[i], 300, 40, 10));
+        }
+    }
+
+    @Test
+    public void previewLabelMapsBackToTheFullResolutionSpot() {
+        // Odd sizes, so the decoder rounds the downsampled size up
+        int width = 4001;
+        int height = 2999;
+        int boxWidth = 600;
+        int boxHeight = 120;
+        int paddingX = 60;
+        int paddingY = 50;
+        for (int sample = 1; sample <= 16; sample *= 2) {
+            int previewWidth = (width + sample - 1) / sample;
+            int previewHeight = (height + sample - 1) / sample;
+            // As PhotoAnnotator scales the label of a preview
+            float scale = previewWidth / (float) width;
+            // Each rounding in the preview is off by half a preview pixel at most
+            float tolerance = 1.5f / scale + 1f;
+            for (AnnotationLayout.Anchor anchor : AnnotationLayout.Anchor.values()) {
+                String what = anchor + " sampled by " + sample;
+                int left = AnnotationLayout.left(anchor, previewWidth, AnnotationLayout.scaled(boxWidth, scale),
+                        AnnotationLayout.scaled(paddingX, scale));
+                int top = AnnotationLayout.top(anchor, previewHeight, AnnotationLayout.scaled(boxHeight, scale),
+                        AnnotationLayout.scaled(paddingY, scale));
+                assertEquals(what, AnnotationLayout.left(anchor, width, boxWidth, paddingX), left / scale, tolerance);
+                assertEquals(what, AnnotationLayout.top(anchor, height, boxHeight, paddingY), top / scale, tolerance);
+            }
+        }
+    }
+
+    @Test
+    public void scaledRoundsToTheNearestPixel() {
+        assertEquals(60, AnnotationLayout.scaled(60, 1f));
+        assertEquals(15, AnnotationLayout.scaled(60, 0.25f));
+        assertEquals(4, AnnotationLayout.scaled(7, 0.5f));
+        assertEquals(0, AnnotationLayout.scaled(0, 0.1f));
+    }
+
+    @Test
+    public void sampleSizeKeepsAtLeastTheViewResolution() {
+        assertEquals(2, AnnotationLayout.sampleSize(4000, 3000, 1080, 1920));
+        assertEquals(4, AnnotationLayout.sampleSize(4000, 3000, 800, 600));
+        assertEquals(1, AnnotationLayout.sampleSize(100, 100, 1080, 1920));
+        // An unmeasured view counts as one pixel
+        assertEquals(8, AnnotationLayout.sampleSize(8, 8, 0, 0));
+    }
+
+    @Test
+    public void sampleSizeForBudgetFitsTheDecodedImage() {
+        assertEquals(1, AnnotationLayout.sampleSizeForBudget(4000, 3000, 4, 48_000_000L));
+        assertEquals(2, AnnotationLayout.sampleSizeForBudget(4000, 3000, 4, 12_000_000L));
+        assertEquals(4, AnnotationLayout.sampleSizeForBudget(4000, 3000, 4, 11_999_999L));
+        // Rounded up rows and columns count
+        assertEquals(4, AnnotationLayout.sampleSizeForBudget(4001, 3001, 4, 12_000_000L));
+        // Stops at a single pixel however small the budget
+        assertEquals(4096, AnnotationLayout.sampleSizeForBudget(4000, 3000, 4, 1L));
+    }
+
+    @Test
+    public void bandRowsAreWholeMcuRowsWithinTheBudget() {
+        assertEquals(64, AnnotationLayout.bandRows(4000, 4, MB));
+        assertEquals(JpegBandEncoder.MCU_ROWS, AnnotationLayout.bandRows(4000, 4, 1));
+        assertEquals(JpegBandEncoder.MCU_ROWS, AnnotationLayout.bandRows(100_000, 4, MB));
+        for (int width : new int[]{1, 17, 1920, 4001}) {
+            int rows = AnnotationLayout.bandRows(width, 4, 3 * MB);
+            assertEquals("width " + width, 0, rows % JpegBandEncoder.MCU_ROWS);
+            assertTrue("width " + width, (long) rows * width * 4 <= 3 * MB);
+            assertTrue("width " + width, rows > 0);
+        }
+    }
+
+    @Test
+    public void bandsOverlappingTheLabelCoverAllOfItsRows() {
+        int width = 4001;
+        int height = 3001;
+        int bandRows = AnnotationLayout.bandRows(width, 4, MB);
+        // A label near the bottom, spanning a band boundary
+        int labelTop = 2 * bandRows - 10;
+        int labelBottom = labelTop + 40;
+        boolean[] drawn = new boolean[height];
+        int bandsDrawn = 0;
+        for (int top = 0; top < height; top += bandRows) {
+            int bottom = Math.min(top + bandRows, height);
+            if (AnnotationLayout.overlaps(labelTop, labelBottom, top, bottom)) {
+                bandsDrawn++;
+                for (int row = top; row < bottom; row++) {
+                    drawn[row] = true;
+                }
+            }
+        }
+        assertEquals(2, bandsDrawn);
+        for (int row = labelTop; row < labelBottom; row++) {
+            assertTrue("row " + row, drawn[row]);
+        }
+    }
+
+    @Test
+    public void overlapsExcludesTouchingEdges() {
+        assertTrue(AnnotationLayout.overlaps(10, 20, 19, 30));
+        assertTrue(AnnotationLayout.overlaps(10, 20, 0, 11));
+        assertTrue(AnnotationLayout.overlaps(0, 100, 40, 50));
+        assertFalse(AnnotationLayout.overlaps(10, 20, 20, 30));
+        assertFalse(AnnotationLayout.overlaps(10, 20, 0, 10));
+    }
+}
@@ -0,0 +1,109 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+
+public class BurstControllerTest {
+
+    private static final long MS = 1_000_000L;
+
+    // Drives a burst held throughout against a camera that takes cameraMs per shot, one step per ms
+    private static BurstController run(int shots, long intervalMs, int maxInFlight, long cameraMs) {
+        BurstController burst = new BurstController(shots, intervalMs, maxInFlight);
+        burst.start(0);
+        ArrayDeque<Long> inCamera = new ArrayDeque<>();
+        for (long t = 0; t < 60_000 * MS && !burst.isFinished(); t += MS) {
+            while (!inCamera.isEmpty() && inCamera.peek() <= t) {
+                inCamera.poll();
+                burst.onShotCaptured(t);
+                burst.onShotSaved();
+            }
+            if (burst.shouldShoot(t, true, true)) {
+                burst.onShotRequested(t);
+                inCamera.add(t + cameraMs * MS);
+                assertTrue(burst.getInFlight() <= maxInFlight);
+            }
+        }
+        return burst;
+    }
+
+    @Test
+    public void shootsAtTheIntervalWhenTheCameraKeepsUp() {
+        BurstController burst = run(5, 100, 2, 50);
+        assertTrue(burst.isSettled());
+        assertEquals(5, burst.getCaptured());
+        assertEquals(10f, burst.getShotsPerSecond(), 0.01f);
+    }
+
+    @Test
+    public void pipelinesShotsOfASlowCamera() {
+        // Two 300 ms captures overlap, about 6.7 shots per second instead of 3.3
+        BurstController burst = run(100, 100, 2, 300);
+        assertTrue(burst.isSettled());
+        assertEquals(100, burst.getCaptured());
+        assertEquals(2 / 0.3f, burst.getShotsPerSecond(), 0.1f);
+    }
+
+    @Test
+    public void firstShotIgnoresTheRelease() {
+        BurstController burst = new BurstController(5, 100, 2);
+        burst.start(0);
+        assertTrue(burst.shouldShoot(0, false, true));
+        burst.onShotRequested(0);
+        assertFalse(burst.shouldShoot(200 * MS, false, true));
+        // Still waiting for the first shot
+        assertFalse(burst.isFinished());
+        burst.onShotCaptured(250 * MS);
+        assertTrue(burst.isFinished());
+        assertFalse(burst.shouldShoot(300 * MS, true, true));
+        assertEquals(1, burst.getRequested());
+    }
+
+    @Test
+    public void waitsForRoomInTheSaveQueue() {
+        BurstController burst = new BurstController(3, 100, 2);
+        burst.start(0);
+        assertFalse(burst.shouldShoot(0, true, false));
+        assertTrue(burst.shouldShoot(10 * MS, true, true));
+    }
+
+    @Test
+    public void keepsTheCadenceOrRestartsItFromALateShot() {
+        BurstController burst = new BurstController(5, 100, 5);
+        burst.start(0);
+        burst.onShotRequested(10 * MS);
+        assertEquals(100 * MS, burst.getNextShotNanos());
+        // Held back by more than half an interval
+        burst.onShotRequested(400 * MS);
+        assertEquals(500 * MS, burst.getNextShotNanos());
+    }
+
+    @Test
+    public void failuresAreBackFromTheCamera() {
+        BurstController burst = new BurstController(2, 100, 2);
+        burst.start(0);
+        burst.onShotRequested(0);
+        burst.onShotRequested(100 * MS);
+        burst.onShotFailed();
+        assertEquals(1, burst.getInFlight());
+        burst.onShotCaptured(300 * MS);
+        assertTrue(burst.isFinished());
+        assertFalse(burst.isSettled());
+        burst.onSaveFailed();
+        assertTrue(burst.isSettled());
+        assertEquals(0, burst.getSaved());
+    }
+
+    @Test
+    public void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new BurstController(0, 100, 2));
+        assertThrows(IllegalArgumentException.class, () -> new BurstController(3, -1, 2));
+        assertThrows(IllegalArgumentException.class, () -> new BurstController(3, 100, 0));
+    }
+}
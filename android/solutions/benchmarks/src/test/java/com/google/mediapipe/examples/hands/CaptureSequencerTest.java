@@ -0,0 +1,175 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CaptureSequencerTest {
+
+    private static final long MS = 1_000_000L;
+    private static final long S = 1_000_000_000L;
+
+    // Fake clock in nanoseconds, the listener logs against it
+    private long now;
+    private boolean finishOnCapture = true;
+    private final List<String> log = new ArrayList<>();
+    private final CaptureSequencer sequencer = new CaptureSequencer(3000, 2000, new CaptureSequencer.Listener() {
+        @Override
+        public void onStateChanged(CaptureSequencer.State from, CaptureSequencer.State to) {
+            log.add(from + ">" + to + "@" + now / MS);
+        }
+
+        @Override
+        public void onCountdownTick(int secondsLeft) {
+            log.add("tick" + secondsLeft + "@" + now / MS);
+        }
+
+        @Override
+        public void onCapture(HandGesture gesture) {
+            log.add("capture " + gesture);
+            if (finishOnCapture) {
+                // A single photo taken right away, from inside the listener call
+                sequencer.captureFinished(now);
+            }
+        }
+    });
+
+    // Wakes up a little late for every returned deadline, like the main thread handler does
+    private int runUntilIdle(long due, long gestureSeenNanos) {
+        int wakes = 0;
+        while (due != CaptureSequencer.NO_DEADLINE) {
+            now = due + 3 * MS;
+            due = sequencer.tick(now, gestureSeenNanos);
+            wakes++;
+        }
+        return wakes;
+    }
+
+    @Test
+    public void runsTheFullSequenceWithOneWakePerChange() {
+        assertTrue(sequencer.trigger(HandGesture.VICTORY, 0));
+        assertFalse(sequencer.trigger(HandGesture.VICTORY, 0));
+        assertEquals(4, runUntilIdle(sequencer.tick(0, 0), 0));
+        assertEquals("[ARMED>COUNTDOWN@0, tick3@0, tick2@1003, tick1@2003, COUNTDOWN>CAPTURING@3003,"
+                + " capture VICTORY, CAPTURING>COOLDOWN@3003, COOLDOWN>ARMED@5006]", log.toString());
+        assertEquals(CaptureSequencer.State.ARMED, sequencer.getState());
+        assertEquals(HandGesture.VICTORY, sequencer.getGesture());
+    }
+
+    @Test
+    public void tickReturnsTheNextSecondOrTheEnd() {
+        sequencer.trigger(HandGesture.OK, 0);
+        assertEquals(1 * S, sequencer.tick(0, 0));
+        assertEquals(1 * S, sequencer.tick(400 * MS, 0));
+        assertEquals(2 * S, sequencer.tick(1 * S, 0));
+        assertEquals(3 * S, sequencer.tick(2500 * MS, 0));
+        // Captured and finished inside this tick, the cooldown is due next
+        now = 3 * S;
+        assertEquals(5 * S, sequencer.tick(now, 0));
+        assertEquals(CaptureSequencer.NO_DEADLINE, sequencer.tick(5 * S, 0));
+    }
+
+    @Test
+    public void releasingTheGestureCancelsTheCountdown() {
+        sequencer.setReleaseMs(700);
+        assertTrue(sequencer.cancelsOnRelease());
+        sequencer.trigger(HandGesture.OK, 0);
+        // The release comes before the next second
+        assertEquals(700 * MS, sequencer.tick(0, 0));
+        // Seen again, now the next second comes first
+        assertEquals(1 * S, sequencer.tick(500 * MS, 450 * MS));
+        assertEquals(1750 * MS, sequencer.tick(1100 * MS, 1050 * MS));
+        assertTrue(sequencer.needsResults());
+
+        assertEquals(CaptureSequencer.NO_DEADLINE, sequencer.tick(1800 * MS, 1050 * MS));
+        assertEquals(CaptureSequencer.State.ARMED, sequencer.getState());
+        assertEquals(1, sequencer.getCancelled());
+        assertFalse(log.toString(), log.contains("capture OK"));
+    }
+
+    @Test
+    public void countdownWithoutReleaseIgnoresTheGesture() {
+        sequencer.trigger(HandGesture.OK, 0);
+        assertFalse(sequencer.needsResults());
+        sequencer.tick(2 * S, 0);
+        assertEquals(CaptureSequencer.State.COUNTDOWN, sequencer.getState());
+    }
+
+    @Test
+    public void captureLastsUntilFinished() {
+        finishOnCapture = false;
+        sequencer.trigger(HandGesture.OK, 0);
+        now = 3 * S;
+        assertEquals(CaptureSequencer.NO_DEADLINE, sequencer.tick(now, 0));
+        assertEquals(CaptureSequencer.State.CAPTURING, sequencer.getState());
+        assertTrue(sequencer.needsResults());
+        assertTrue(sequencer.isBusy());
+
+        now = 4 * S;
+        assertEquals(6 * S, sequencer.captureFinished(now));
+        assertEquals(CaptureSequencer.State.COOLDOWN, sequencer.getState());
+        // Only once
+        assertEquals(6 * S, sequencer.captureFinished(5 * S));
+        assertEquals(CaptureSequencer.State.COOLDOWN, sequencer.getState());
+    }
+
+    @Test
+    public void disarmDropsTheCountdownButNotTheCapture() {
+        sequencer.trigger(HandGesture.OK, 0);
+        sequencer.disarm();
+        assertEquals(CaptureSequencer.State.IDLE, sequencer.getState());
+        assertEquals(CaptureSequencer.NO_DEADLINE, sequencer.tick(5 * S, 0));
+        assertFalse(log.toString(), log.contains("capture OK"));
+
+        assertTrue(sequencer.arm());
+        finishOnCapture = false;
+        sequencer.trigger(HandGesture.OK, 10 * S);
+        sequencer.tick(13 * S, 0);
+        sequencer.disarm();
+        assertEquals(CaptureSequencer.State.CAPTURING, sequencer.getState());
+        assertFalse(sequencer.arm());
+        sequencer.captureFinished(14 * S);
+        sequencer.disarm();
+        assertEquals(CaptureSequencer.State.IDLE, sequencer.getState());
+    }
+
+    @Test
+    public void idleIgnoresTriggersUntilArmed() {
+        sequencer.disarm();
+        assertTrue(sequencer.isBusy());
+        assertFalse(sequencer.needsResults());
+        assertFalse(sequencer.trigger(HandGesture.OK, 0));
+        assertTrue(sequencer.arm());
+        assertFalse(sequencer.arm());
+        assertFalse(sequencer.isBusy());
+        assertTrue(sequencer.trigger(HandGesture.OK, 0));
+    }
+
+    @Test
+    public void noCooldownArmsRightAway() {
+        List<CaptureSequencer.State> states = new ArrayList<>();
+        CaptureSequencer[] self = new CaptureSequencer[1];
+        self[0] = new CaptureSequencer(0, 0, new CaptureSequencer.Listener() {
+            @Override
+            public void onStateChanged(CaptureSequencer.State from, CaptureSequencer.State to) {
+                states.add(to);
+            }
+
+            @Override
+            public void onCountdownTick(int secondsLeft) {
+            }
+
+            @Override
+            public void onCapture(HandGesture gesture) {
+                self[0].captureFinished(0);
+            }
+        });
+        assertTrue(self[0].trigger(HandGesture.OK, 0));
+        assertEquals("[COUNTDOWN, CAPTURING, ARMED]", states.toString());
+    }
+}
@@ -0,0 +1,246 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class GestureEventBusTest {
+
+    private static final HandGesture[] GESTURES = HandGesture.values();
+
+    // A cursor that stops advancing makes poll spin instead of failing
+    @Rule
+    public final Timeout timeout = Timeout.seconds(60);
+
+    private final GestureEventBus.Event event = new GestureEventBus.Event();
+
+    // Every field follows from the sequence, so a torn event shows up as a mismatch
+    private static void publish(GestureEventBus bus, long sequence) {
+        bus.publish(GESTURES[(int) (sequence % GESTURES.length)], (int) (sequence % MultiHandFrame.MAX_HANDS),
+                (sequence % 100) / 100f, sequence * 3, sequence);
+    }
+
+    private static void publish(GestureEventBus bus, long from, long to) {
+        for (long sequence = from; sequence < to; sequence++) {
+            publish(bus, sequence);
+        }
+    }
+
+    // Null if the event is the one published with its frame id
+    private static String tornFields(GestureEventBus.Event e) {
+        long s = e.getFrameId();
+        boolean whole = e.getSequence() == s && e.getTimestampUs() == s * 3
+                && e.getHand() == (int) (s % MultiHandFrame.MAX_HANDS)
+                && e.getGesture() == GESTURES[(int) (s % GESTURES.length)]
+                && e.getConfidence() == (s % 100) / 100f;
+        return whole ? null : "torn " + e;
+    }
+
+    private List<Long> pollAll(GestureEventBus.Subscription subscription) {
+        List<Long> sequences = new ArrayList<>();
+        while (subscription.poll(event)) {
+            assertNull(tornFields(event));
+            sequences.add(event.getSequence());
+        }
+        return sequences;
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> sequences = new ArrayList<>();
+        for (long sequence = from; sequence < to; sequence++) {
+            sequences.add(sequence);
+        }
+        return sequences;
+    }
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(8, new GestureEventBus(5).getCapacity());
+        assertEquals(1, new GestureEventBus(1).getCapacity());
+        assertThrows(IllegalArgumentException.class, () -> new GestureEventBus(0));
+        assertThrows(IllegalArgumentException.class, () -> new GestureEventBus((1 << 20) + 1));
+    }
+
+    @Test
+    public void rejectsHandsOutOfRange() {
+        GestureEventBus bus = new GestureEventBus(8);
+        assertThrows(IllegalArgumentException.class,
+                () -> bus.publish(HandGesture.OK, MultiHandFrame.MAX_HANDS, 1f, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> bus.publish(HandGesture.OK, -1, 1f, 0, 0));
+        assertEquals(0, bus.getPublished());
+    }
+
+    @Test
+    public void subscribersStartWithTheNextEvent() {
+        GestureEventBus bus = new GestureEventBus(8);
+        publish(bus, 0, 3);
+        GestureEventBus.Subscription subscription = bus.subscribe(GestureEventBus.OverflowPolicy.DROP_OLDEST);
+        assertFalse(subscription.poll(event));
+        publish(bus, 3, 6);
+        assertEquals(3, subscription.getBacklog());
+        assertEquals(range(3, 6), pollAll(subscription));
+        assertEquals(3, subscription.getDelivered());
+        assertEquals(0, subscription.getBacklog());
+    }
+
+    @Test
+    public void readerLaggingExactlyTheCapacityLosesNothing() {
+        for (GestureEventBus.OverflowPolicy policy : GestureEventBus.OverflowPolicy.values()) {
+            GestureEventBus bus = new GestureEventBus(8);
+            GestureEventBus.Subscription subscription = bus.subscribe(policy);
+            publish(bus, 0, 8);
+            assertEquals(policy.toString(), range(0, 8), pollAll(subscription));
+            assertEquals(policy.toString(), 0, subscription.getLost());
+        }
+    }
+
+    @Test
+    public void dropOldestKeepsTheLastRing() {
+        GestureEventBus bus = new GestureEventBus(8);
+        GestureEventBus.Subscription oneBehind = bus.subscribe(GestureEventBus.OverflowPolicy.DROP_OLDEST);
+        publish(bus, 0, 9);
+        assertEquals(range(1, 9), pollAll(oneBehind));
+        assertEquals(1, oneBehind.getLost());
+
+        GestureEventBus.Subscription farBehind = bus.subscribe(GestureEventBus.OverflowPolicy.DROP_OLDEST);
+        publish(bus, 9, 29);
+        assertEquals(range(21, 29), pollAll(farBehind));
+        assertEquals(12, farBehind.getLost());
+        assertEquals(8, farBehind.getDelivered());
+    }
+
+    @Test
+    public void coalesceKeepsTheNewestEventOfEachHand() {
+        GestureEventBus bus = new GestureEventBus(8);
+        GestureEventBus.Subscription oneBehind = bus.subscribe(GestureEventBus.OverflowPolicy.COALESCE);
+        GestureEventBus.Subscription farBehind = bus.subscribe(GestureEventBus.OverflowPolicy.COALESCE);
+        publish(bus, 0, 9);
+        // Hands cycle through the four slots, the newest of each are the last four events
+        assertEquals(range(5, 9), pollAll(oneBehind));
+        assertEquals(5, oneBehind.getLost());
+
+        publish(bus, 9, 20);
+        assertEquals(range(16, 20), pollAll(farBehind));
+        assertEquals(16, farBehind.getLost());
+        // Back within the ring, nothing else is folded
+        publish(bus, 20, 22);
+        assertEquals(range(20, 22), pollAll(farBehind));
+        assertEquals(16, farBehind.getLost());
+    }
+
+    @Test
+    public void coalesceOfASingleHandKeepsOnlyTheNewest() {
+        GestureEventBus bus = new GestureEventBus(4);
+        GestureEventBus.Subscription subscription = bus.subscribe(GestureEventBus.OverflowPolicy.COALESCE);
+        for (long frame = 0; frame < 10; frame++) {
+            bus.publish(frame < 9 ? HandGesture.FIST : HandGesture.OK, 1, 0.5f, frame, frame);
+        }
+        assertTrue(subscription.poll(event));
+        assertEquals(HandGesture.OK, event.getGesture());
+        assertEquals(1, event.getHand());
+        assertEquals(9, event.getSequence());
+        assertEquals(0.5f, event.getConfidence(), 0f);
+        assertFalse(subscription.poll(event));
+        assertEquals(9, subscription.getLost());
+    }
+
+    @Test
+    public void executorSubscriptionsQueueOneDrainAtATime() {
+        GestureEventBus bus = new GestureEventBus(16);
+        List<Runnable> queued = new ArrayList<>();
+        List<Long> seen = new ArrayList<>();
+        bus.subscribe(GestureEventBus.OverflowPolicy.DROP_OLDEST, queued::add, e -> seen.add(e.getSequence()));
+        publish(bus, 0, 5);
+        assertEquals(1, queued.size());
+        queued.remove(0).run();
+        assertEquals(range(0, 5), seen);
+
+        publish(bus, 5, 6);
+        assertEquals(1, queued.size());
+        queued.remove(0).run();
+        assertEquals(range(0, 6), seen);
+    }
+
+    @Test
+    public void closeDropsQueuedEventsAndStopsWakeups() {
+        GestureEventBus bus = new GestureEventBus(16);
+        List<Runnable> queued = new ArrayList<>();
+        List<Long> seen = new ArrayList<>();
+        GestureEventBus.Subscription subscription = bus.subscribe(
+                GestureEventBus.OverflowPolicy.DROP_OLDEST, queued::add, e -> seen.add(e.getSequence()));
+        GestureEventBus.Subscription polled = bus.subscribe(GestureEventBus.OverflowPolicy.DROP_OLDEST);
+        publish(bus, 0, 3);
+        subscription.close();
+        queued.remove(0).run();
+        publish(bus, 3, 4);
+        assertTrue(seen.isEmpty());
+        assertTrue(queued.isEmpty());
+        // The other subscriber is not affected
+        assertEquals(range(0, 4), pollAll(polled));
+    }
+
+    @Test
+    public void concurrentReadersSeeNoTornOrReorderedEvents() throws InterruptedException {
+        GestureEventBus bus = new GestureEventBus(64);
+        long total = 500_000;
+        AtomicReference<String> failure = new AtomicReference<>();
+        long[][] counts = new long[3][];
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            // Reader 1 sleeps now and then to fall behind, reader 2 coalesces
+            GestureEventBus.Subscription subscription = bus.subscribe(r == 2
+                    ? GestureEventBus.OverflowPolicy.COALESCE
+                    : GestureEventBus.OverflowPolicy.DROP_OLDEST);
+            int reader = r;
+            Thread thread = new Thread(() -> {
+                GestureEventBus.Event e = new GestureEventBus.Event();
+                long last = -1;
+                long delivered = 0;
+                while (last < total - 1 && failure.get() == null) {
+                    if (!subscription.poll(e)) {
+                        continue;
+                    }
+                    String torn = tornFields(e);
+                    if (torn != null || e.getSequence() <= last) {
+                        failure.compareAndSet(null, torn != null ? torn : "reordered after " + last + ": " + e);
+                    }
+                    last = e.getSequence();
+                    delivered++;
+                    if (reader == 1 && (delivered & 1023) == 0) {
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException interrupted) {
+                            return;
+                        }
+                    }
+                }
+                counts[reader] = new long[]{delivered, subscription.getLost()};
+            });
+            // A reader that never catches up must not keep the test JVM alive
+            thread.setDaemon(true);
+            readers.add(thread);
+            thread.start();
+        }
+        publish(bus, 0, total);
+        for (Thread thread : readers) {
+            thread.join(30_000);
+            assertFalse("reader stuck", thread.isAlive());
+        }
+        assertNull(failure.get());
+        for (int r = 0; r < 2; r++) {
+            assertEquals(Arrays.toString(counts[r]), total, counts[r][0] + counts[r][1]);
+        }
+        assertTrue(counts[2][0] > 0);
+    }
+}
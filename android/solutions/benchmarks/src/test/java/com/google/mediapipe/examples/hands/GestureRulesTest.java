@@ -0,0 +1,176 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.EnumSet;
+import java.util.Set;
+
+public class GestureRulesTest {
+
+    private static final int OK_MASK = FingerState.MIDDLE | FingerState.RING | FingerState.PINKY;
+
+    @Before
+    public void setUp() {
+        GestureDetect.setRules(GestureRules.defaults());
+    }
+
+    private static GestureRules rules(String definitions) throws IOException {
+        return GestureRules.parse(new StringReader(definitions));
+    }
+
+    // Only the thumb tip (4) and the index tip (8) are set, dx apart along x and dz along z
+    private static HandFrame tips(float dx, float dz) {
+        HandFrame hand = new HandFrame();
+        hand.set(4, 0.5f, 0.5f, 0f);
+        hand.set(8, 0.5f + dx, 0.5f, dz);
+        hand.setPresent(true);
+        return hand;
+    }
+
+    private static String parseError(String definitions) {
+        return assertThrows(IllegalArgumentException.class, () -> rules(definitions)).getMessage();
+    }
+
+    @Test
+    public void parsesTheDefaults() {
+        GestureRules rules = GestureRules.defaults();
+        assertEquals(7, rules.getRuleCount());
+        assertEquals(HandGesture.VICTORY, rules.classify(FingerState.INDEX | FingerState.MIDDLE, null, false));
+        assertEquals(HandGesture.INDEX, rules.classify(FingerState.INDEX, null, false));
+        assertEquals(HandGesture.FIST, rules.classify(0, null, false));
+        assertEquals(HandGesture.UNDEFINED, rules.classify(FingerState.ALL_FINGERS, null, false));
+    }
+
+    @Test
+    public void skipsCommentsAndBlankLines() throws IOException {
+        GestureRules rules = rules("# gesture thumb index middle ring pinky\n"
+                + "\n"
+                + "   \n"
+                + "victory 0 1 1 0 0  # names are not case sensitive\n");
+        assertEquals(1, rules.getRuleCount());
+        assertEquals(HandGesture.VICTORY, rules.classify(FingerState.INDEX | FingerState.MIDDLE, null, false));
+    }
+
+    @Test
+    public void dontCareMatchesBothStates() throws IOException {
+        GestureRules rules = rules("MIDDLE * 0 1 0 *\n");
+        assertEquals(HandGesture.MIDDLE, rules.classify(FingerState.MIDDLE, null, false));
+        assertEquals(HandGesture.MIDDLE, rules.classify(FingerState.THUMB | FingerState.MIDDLE, null, false));
+        assertEquals(HandGesture.MIDDLE, rules.classify(FingerState.MIDDLE | FingerState.PINKY, null, false));
+        assertEquals(HandGesture.UNDEFINED, rules.classify(FingerState.MIDDLE | FingerState.RING, null, false));
+        assertEquals(HandGesture.UNDEFINED, rules.classify(0, null, false));
+    }
+
+    @Test
+    public void nearAndFarUseImageThresholds() throws IOException {
+        GestureRules rules = rules("OK * 0 1 1 1 near(4,8)\nMIDDLE * 0 1 1 1 far(4,8)\n");
+        assertEquals(HandGesture.OK, rules.classify(OK_MASK, tips(0.05f, 0f), false));
+        assertEquals(HandGesture.MIDDLE, rules.classify(OK_MASK, tips(0.15f, 0f), false));
+        // Image z is relative depth and ignored
+        assertEquals(HandGesture.OK, rules.classify(OK_MASK, tips(0.05f, 0.5f), false));
+    }
+
+    @Test
+    public void nearAndFarUseWorldThresholds() throws IOException {
+        GestureRules rules = rules("OK * 0 1 1 1 near(4,8)\nMIDDLE * 0 1 1 1 far(4,8)\n");
+        assertEquals(HandGesture.OK, rules.classify(OK_MASK, tips(0.02f, 0f), true));
+        assertEquals(HandGesture.MIDDLE, rules.classify(OK_MASK, tips(0.05f, 0f), true));
+        assertEquals(HandGesture.MIDDLE, rules.classify(OK_MASK, tips(0.02f, 0.03f), true));
+    }
+
+    @Test
+    public void everyPredicateHasToHold() throws IOException {
+        GestureRules rules = rules("OK * 0 1 1 1 near(4,8) far(4,12)\n");
+        HandFrame hand = tips(0.05f, 0f);
+        hand.set(12, 0.5f, 0.5f, 0f);
+        assertEquals(HandGesture.UNDEFINED, rules.classify(OK_MASK, hand, false));
+        hand.set(12, 0.5f, 0.2f, 0f);
+        assertEquals(HandGesture.OK, rules.classify(OK_MASK, hand, false));
+    }
+
+    @Test
+    public void predicatesMayContainSpaces() throws IOException {
+        HandFrame near = tips(0.05f, 0f);
+        HandFrame far = tips(0.15f, 0f);
+        for (String predicate : new String[]{"near(4, 8)", "near( 4 , 8 )", "near (4,8)", "near(4,\t8)"}) {
+            GestureRules rules = rules("OK * 0 1 1 1 " + predicate + "\n");
+            assertEquals(predicate, 1, rules.getRuleCount());
+            assertEquals(predicate, HandGesture.OK, rules.classify(OK_MASK, near, false));
+            assertEquals(predicate, HandGesture.UNDEFINED, rules.classify(OK_MASK, far, false));
+        }
+        GestureRules rules = rules("OK * 0 1 1 1 near(4, 8)  far(4, 12)\n");
+        HandFrame hand = tips(0.05f, 0f);
+        hand.set(12, 0.5f, 0.2f, 0f);
+        assertEquals(HandGesture.OK, rules.classify(OK_MASK, hand, false));
+    }
+
+    @Test
+    public void firstMatchingRuleWins() throws IOException {
+        assertEquals(HandGesture.INDEX,
+                rules("INDEX 0 1 0 0 0\nFIST 0 1 0 0 0\n").classify(FingerState.INDEX, null, false));
+        assertEquals(HandGesture.FIST,
+                rules("FIST * * * * *\nINDEX 0 1 0 0 0\n").classify(FingerState.INDEX, null, false));
+    }
+
+    @Test
+    public void failedPredicateFallsThroughToLaterRules() throws IOException {
+        GestureRules rules = rules("OK * 0 1 1 1 near(4,8)\nHORNS * * * * *\n");
+        assertEquals(HandGesture.OK, rules.classify(OK_MASK, tips(0.05f, 0f), false));
+        assertEquals(HandGesture.HORNS, rules.classify(OK_MASK, tips(0.15f, 0f), false));
+        assertEquals(HandGesture.HORNS, rules.classify(0, null, false));
+    }
+
+    @Test
+    public void rulesAfterAPlainMatchAreNeverChecked() throws IOException {
+        GestureRules rules = rules("MIDDLE * 0 1 1 1\nOK * 0 1 1 1 near(4,8)\n");
+        assertEquals(HandGesture.MIDDLE, rules.classify(OK_MASK, tips(0.05f, 0f), false));
+    }
+
+    @Test
+    public void agreesWithTheLegacyCascadeOnEveryFingerPose() {
+        Set<HandGesture> seen = EnumSet.noneOf(HandGesture.class);
+        for (int mask = 0; mask <= FingerState.ALL_FINGERS; mask++) {
+            HandFrame frame = HandFixtures.pose((mask & FingerState.THUMB) != 0, (mask & FingerState.INDEX) != 0,
+                    (mask & FingerState.MIDDLE) != 0, (mask & FingerState.RING) != 0, (mask & FingerState.PINKY) != 0);
+            HandGesture expected = LegacyGestureCascade.handGestureCalculator(frame);
+            assertEquals("mask " + mask, expected, GestureDetect.handGestureCalculator(frame));
+            seen.add(expected);
+        }
+        // Every rule, including the near(4,8) chain, was exercised
+        assertEquals(EnumSet.allOf(HandGesture.class), seen);
+    }
+
+    @Test
+    public void agreesWithTheLegacyCascadeOnJitteredFrames() {
+        HandFrame[] frames = HandFixtures.jittered(200, 0.04f, 42L);
+        for (int i = 0; i < frames.length; i++) {
+            assertEquals("frame " + i, LegacyGestureCascade.handGestureCalculator(frames[i]),
+                    GestureDetect.handGestureCalculator(frames[i]));
+        }
+    }
+
+    @Test
+    public void errorsNameTheLine() {
+        String message = parseError("VICTORY 0 1 1 0 0\n\n# comment\nWAVE 1 1 1 1 1\n");
+        assertTrue(message, message.startsWith("Line 4: "));
+        assertTrue(message, message.contains("WAVE"));
+    }
+
+    @Test
+    public void rejectsMalformedRules() {
+        assertTrue(parseError("FIST 0 0 0 0\n").startsWith("Line 1: Expected a gesture"));
+        assertTrue(parseError("FIST 0 0 2 0 0\n").startsWith("Line 1: Finger state"));
+        assertTrue(parseError("OK * 0 1 1 1 touch(4,8)\n").startsWith("Line 1: Unknown predicate"));
+        assertTrue(parseError("OK * 0 1 1 1 near(4,8\n").startsWith("Line 1: Expected near(a,b)"));
+        assertTrue(parseError("OK * 0 1 1 1 near(4)\n").startsWith("Line 1: Expected near(a,b)"));
+        assertTrue(parseError("OK * 0 1 1 1 near(4,x)\n").startsWith("Line 1: Landmark index must be a number"));
+        assertTrue(parseError("OK * 0 1 1 1 near(4,21)\n").startsWith("Line 1: Landmark index out of range"));
+    }
+}
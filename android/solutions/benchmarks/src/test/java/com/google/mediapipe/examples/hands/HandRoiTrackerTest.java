@@ -0,0 +1,203 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HandRoiTrackerTest {
+
+    private static final long FRAME_US = 33_333L;
+    private static final float EPSILON = 1e-5f;
+
+    // Open palm, its box spans about 0.3 x 0.43 image units
+    private static final HandFrame PALM = HandFixtures.pose(true, true, true, true, true);
+
+    private final HandRoiTracker tracker = new HandRoiTracker();
+    private final float[] box = new float[4];
+
+    // The palm moved by (dx, dy)
+    private static HandFrame moved(float dx, float dy) {
+        HandFrame hand = new HandFrame();
+        for (int i = 0; i < HandFrame.NUM_LANDMARKS; i++) {
+            hand.set(i, PALM.x(i) + dx, PALM.y(i) + dy, PALM.z(i));
+        }
+        hand.setPresent(true);
+        return hand;
+    }
+
+    private static float[] boxOf(HandFrame hand) {
+        float[] square = new float[HandOverlayGeometry.SQUARE_FLOATS];
+        HandOverlayGeometry.squareVertices(hand, square);
+        return new float[]{square[0], square[1], square[4], square[5]};
+    }
+
+    private static float size() {
+        float[] palm = boxOf(PALM);
+        return Math.max(palm[2] - palm[0], palm[3] - palm[1]);
+    }
+
+    // A palm moving at (vx, vy) image units per second, one update per frame from time 0
+    private void track(float vx, float vy, int frames) {
+        for (int f = 0; f < frames; f++) {
+            long t = f * FRAME_US;
+            tracker.update(moved(vx * t * 1e-6f, vy * t * 1e-6f), t);
+        }
+    }
+
+    @Test
+    public void firstUpdateIsTheMeasuredBox() {
+        assertFalse(tracker.isTracking());
+        assertFalse(tracker.getBox(box));
+        tracker.update(PALM, 0);
+        assertTrue(tracker.isTracking());
+        assertTrue(tracker.getBox(box));
+        assertArrayEquals(boxOf(PALM), box, EPSILON);
+        assertEquals(0f, tracker.getSpeed(), 0f);
+    }
+
+    @Test
+    public void convergesOnConstantVelocity() {
+        float vx = 0.15f;
+        float vy = -0.05f;
+        int frames = 90;
+        track(vx, vy, frames);
+        long last = (frames - 1) * FRAME_US;
+        tracker.getBox(box);
+        assertArrayEquals(boxOf(moved(vx * last * 1e-6f, vy * last * 1e-6f)), box, 1e-3f);
+        float expectedSpeed = (float) Math.hypot(vx, vy) / size();
+        assertEquals(expectedSpeed, tracker.getSpeed(), expectedSpeed * 0.02f);
+    }
+
+    @Test
+    public void predictExtrapolatesAlongTheVelocity() {
+        float vx = 0.3f;
+        int frames = 90;
+        track(vx, 0f, frames);
+        long last = (frames - 1) * FRAME_US;
+
+        long ahead = last + 100_000L;
+        assertTrue(tracker.predict(ahead, box));
+        assertArrayEquals(boxOf(moved(vx * ahead * 1e-6f, 0f)), box, 1e-3f);
+
+        // Clamped to the longest gap the filter predicts across
+        long clamped = last + HandRoiTracker.MAX_GAP_US;
+        float[] atLimit = new float[4];
+        tracker.predict(clamped, atLimit);
+        tracker.predict(clamped + 1_000_000L, box);
+        assertArrayEquals(atLimit, box, EPSILON);
+
+        // Earlier timestamps give the box of the last update
+        float[] current = new float[4];
+        tracker.getBox(current);
+        tracker.predict(last - FRAME_US, box);
+        assertArrayEquals(current, box, EPSILON);
+    }
+
+    @Test
+    public void gapLongerThanMaxGapRestarts() {
+        track(0.5f, 0f, 30);
+        long last = 29 * FRAME_US;
+        HandFrame far = moved(-0.2f, 0.1f);
+        tracker.update(far, last + HandRoiTracker.MAX_GAP_US + 1);
+        tracker.getBox(box);
+        assertArrayEquals(boxOf(far), box, EPSILON);
+        assertEquals(0f, tracker.getSpeed(), 0f);
+        assertFalse(tracker.isStable());
+    }
+
+    @Test
+    public void gapOfExactlyMaxGapIsPredictedAcross() {
+        track(0f, 0f, 10);
+        long last = 9 * FRAME_US;
+        HandFrame far = moved(0.1f, 0f);
+        tracker.update(far, last + HandRoiTracker.MAX_GAP_US);
+        tracker.getBox(box);
+        // Smoothed halfway towards the new box instead of jumping to it
+        assertEquals(boxOf(PALM)[0] + 0.05f, box[0], 1e-4f);
+    }
+
+    @Test
+    public void timestampGoingBackRestarts() {
+        track(0.5f, 0f, 30);
+        HandFrame hand = moved(0.1f, 0f);
+        tracker.update(hand, 0);
+        tracker.getBox(box);
+        assertArrayEquals(boxOf(hand), box, EPSILON);
+        assertEquals(0f, tracker.getSpeed(), 0f);
+    }
+
+    @Test
+    public void duplicateTimestampSmoothsWithoutTouchingTheVelocity() {
+        track(0f, 0f, 5);
+        tracker.update(moved(0.1f, 0f), 4 * FRAME_US);
+        tracker.getBox(box);
+        assertEquals(boxOf(PALM)[0] + 0.05f, box[0], 1e-4f);
+        assertEquals(0f, tracker.getSpeed(), 0f);
+        assertTrue(tracker.isStable());
+    }
+
+    @Test
+    public void duplicateTimestampKeepsAMovingVelocity() {
+        track(0.2f, 0f, 30);
+        long last = 29 * FRAME_US;
+        float speed = tracker.getSpeed();
+        tracker.update(moved(0.2f * last * 1e-6f + 0.05f, 0f), last);
+        assertTrue(Float.isFinite(tracker.getSpeed()));
+        assertEquals(speed, tracker.getSpeed(), 1e-3f * speed);
+    }
+
+    @Test
+    public void smoothsJitterOfAHandHeldStill() {
+        // The open palm part of the jittered fixture sequence
+        int framesPerPose = 60;
+        HandFrame[] frames = HandFixtures.jittered(framesPerPose, 0.02f, 7L);
+        float[] palm = boxOf(PALM);
+        float rawError = 0f;
+        float smoothedError = 0f;
+        for (int f = 0; f < framesPerPose; f++) {
+            HandFrame hand = frames[5 * framesPerPose + f];
+            tracker.update(hand, f * FRAME_US);
+            if (f < 10) {
+                continue;
+            }
+            float[] raw = boxOf(hand);
+            tracker.getBox(box);
+            for (int i = 0; i < 4; i++) {
+                rawError += Math.abs(raw[i] - palm[i]);
+                smoothedError += Math.abs(box[i] - palm[i]);
+            }
+            assertTrue("frame " + f, tracker.isStable());
+        }
+        assertTrue(smoothedError + " vs " + rawError, smoothedError < 0.8f * rawError);
+    }
+
+    @Test
+    public void stableOnlyFromMinUpdates() {
+        for (int f = 0; f < HandRoiTracker.MIN_UPDATES; f++) {
+            assertFalse("after " + f + " updates", tracker.isStable());
+            tracker.update(PALM, f * FRAME_US);
+        }
+        assertTrue(tracker.isStable());
+    }
+
+    @Test
+    public void fastHandIsNotStable() {
+        // About 2.3 box sizes per second
+        track(1f, 0f, 60);
+        assertTrue(tracker.getSpeed() > HandRoiTracker.DEFAULT_STABLE_SPEED);
+        assertFalse(tracker.isStable());
+    }
+
+    @Test
+    public void missingHandResets() {
+        track(0f, 0f, 5);
+        HandFrame missing = new HandFrame();
+        tracker.update(missing, 5 * FRAME_US);
+        assertFalse(tracker.isTracking());
+        assertFalse(tracker.predict(6 * FRAME_US, box));
+        assertFalse(tracker.isStable());
+    }
+}
@@ -0,0 +1,158 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+public class JpegBandEncoderTest {
+
+    // Widths and heights on and off the 8 and 16 pixel block grid
+    private static final int[][] SIZES = {{1, 1}, {7, 5}, {16, 16}, {17, 33}, {100, 75}, {321, 239}};
+
+    // Smooth gradients with a little texture, like a photo, whatever the size of the image
+    private static int[] colorImage(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (int) (120 + 80 * Math.sin(x * 0.02));
+                int g = (int) (128 + 60 * Math.sin(x * 0.05 + y * 0.03));
+                int b = (int) (110 + 70 * Math.cos(y * 0.025)) + ((x ^ y) & 7);
+                pixels[y * width + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] grayImage(int width, int height) {
+        int[] pixels = colorImage(width, height);
+        for (int i = 0; i < pixels.length; i++) {
+            int gray = (pixels[i] >> 8) & 0xff;
+            pixels[i] = 0xff000000 | gray * 0x010101;
+        }
+        return pixels;
+    }
+
+    // Feeds the rows in bands of bandRows, as PhotoAnnotator does, and decodes the result
+    private static BufferedImage roundTrip(int[] pixels, int width, int height, int quality, int bandRows)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JpegBandEncoder encoder = new JpegBandEncoder(out, width, height, quality);
+        for (int top = 0; top < height; top += bandRows) {
+            encoder.writeRows(pixels, top * width, width, Math.min(bandRows, height - top));
+        }
+        encoder.finish();
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertNotNull("not a readable JPEG", decoded);
+        return decoded;
+    }
+
+    private static double psnr(int[] pixels, BufferedImage decoded) {
+        int width = decoded.getWidth();
+        double squaredError = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            int actual = decoded.getRGB(i % width, i / width);
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int difference = ((pixels[i] >> shift) & 0xff) - ((actual >> shift) & 0xff);
+                squaredError += difference * difference;
+            }
+        }
+        double mse = squaredError / (pixels.length * 3.0);
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255.0 * 255.0 / mse);
+    }
+
+    private static void checkRoundTrip(boolean gray, int quality, double minPsnr) throws IOException {
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            int[] pixels = gray ? grayImage(width, height) : colorImage(width, height);
+            // Bands smaller and larger than an MCU row
+            for (int bandRows : new int[]{5, 40}) {
+                BufferedImage decoded = roundTrip(pixels, width, height, quality, bandRows);
+                String what = width + "x" + height + (gray ? " gray" : " color") + " q" + quality
+                        + " bands of " + bandRows;
+                assertEquals(what, width, decoded.getWidth());
+                assertEquals(what, height, decoded.getHeight());
+                double psnr = psnr(pixels, decoded);
+                assertTrue(what + ": PSNR " + psnr, psnr >= minPsnr);
+            }
+        }
+    }
+
+    @Test
+    public void colorPhotosDecodeCloseToTheOriginal() throws IOException {
+        checkRoundTrip(false, 95, 42);
+        checkRoundTrip(false, 75, 37);
+        checkRoundTrip(false, 30, 34);
+    }
+
+    @Test
+    public void grayPhotosDecodeCloseToTheOriginal() throws IOException {
+        // Chroma subsampling costs nothing without color
+        checkRoundTrip(true, 95, 50);
+        checkRoundTrip(true, 75, 45);
+        checkRoundTrip(true, 30, 39);
+    }
+
+    @Test
+    public void higherQualityIsCloserAndLarger() throws IOException {
+        int width = 321;
+        int height = 239;
+        int[] pixels = colorImage(width, height);
+        double lastPsnr = 0;
+        int lastBytes = 0;
+        for (int quality : new int[]{10, 50, 90, 100}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            JpegBandEncoder encoder = new JpegBandEncoder(out, width, height, quality);
+            encoder.writeRows(pixels, 0, width, height);
+            encoder.finish();
+            double psnr = psnr(pixels, ImageIO.read(new ByteArrayInputStream(out.toByteArray())));
+            assertTrue("q" + quality + ": PSNR " + psnr, psnr > lastPsnr);
+            assertTrue("q" + quality + ": " + out.size() + " bytes", out.size() > lastBytes);
+            lastPsnr = psnr;
+            lastBytes = out.size();
+        }
+    }
+
+    @Test
+    public void rowsAreReadWithOffsetAndStride() throws IOException {
+        int width = 20;
+        int height = 18;
+        int[] pixels = colorImage(width, height);
+        // Two columns of padding on each side of every row
+        int stride = width + 4;
+        int[] padded = new int[stride * height];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(pixels, y * width, padded, y * stride + 2, width);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JpegBandEncoder encoder = new JpegBandEncoder(out, width, height, 90);
+        encoder.writeRows(padded, 2, stride, 7);
+        encoder.writeRows(padded, 2 + 7 * stride, stride, height - 7);
+        encoder.finish();
+        assertEquals(height, encoder.getRowsReceived());
+        assertTrue(psnr(pixels, ImageIO.read(new ByteArrayInputStream(out.toByteArray()))) >= 42);
+    }
+
+    @Test
+    public void rejectsWrongSizesAndRowCounts() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(IllegalArgumentException.class, () -> new JpegBandEncoder(out, 0, 10, 90));
+        assertThrows(IllegalArgumentException.class, () -> new JpegBandEncoder(out, 10, 0x10000, 90));
+
+        JpegBandEncoder encoder = new JpegBandEncoder(out, 8, 8, 90);
+        int[] pixels = new int[8 * 9];
+        assertThrows(IllegalStateException.class, () -> encoder.writeRows(pixels, 0, 8, 9));
+        encoder.writeRows(pixels, 0, 8, 4);
+        assertThrows(IllegalStateException.class, encoder::finish);
+    }
+}
@@ -0,0 +1,71 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class KnnGestureModelTest {
+
+    // Header and the single one-byte label "A" come before k
+    private static final int K_OFFSET = 16 + 2 + 1;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File writeModel(int k) throws IOException {
+        GestureSamples samples = new GestureSamples();
+        float[] features = new float[LandmarkFeatures.SIZE];
+        samples.add("A", features);
+        features[0] = 1f;
+        samples.add("A", features);
+        File file = folder.newFile();
+        samples.toKnn(k, Float.POSITIVE_INFINITY).write(file);
+        return file;
+    }
+
+    private static void overwriteK(File file, int k) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(K_OFFSET);
+            out.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(k).array());
+        }
+    }
+
+    @Test
+    public void loadsWhatItWrote() throws IOException {
+        KnnGestureModel model = (KnnGestureModel) GestureModel.load(writeModel(3));
+        assertEquals(3, model.getK());
+        assertEquals(2, model.getSampleCount());
+    }
+
+    @Test
+    public void emptySamplesBuildNoModel() {
+        GestureSamples samples = new GestureSamples();
+        assertThrows(IllegalArgumentException.class, () -> samples.toKnn(3, Float.POSITIVE_INFINITY));
+        assertThrows(IllegalArgumentException.class, () -> samples.trainLinear(10, 0.1f, 1L));
+        samples.add("A", new float[LandmarkFeatures.SIZE]);
+        samples.clear();
+        assertThrows(IllegalArgumentException.class, () -> samples.toKnn(3, Float.POSITIVE_INFINITY));
+        assertThrows(IllegalArgumentException.class,
+                () -> new LinearGestureModel(new String[0], LandmarkFeatures.SIZE, new float[0], new float[0]));
+    }
+
+    @Test
+    public void corruptKFailsWithIOException() throws IOException {
+        File file = writeModel(3);
+        for (int k : new int[]{0, -1, KnnGestureModel.MAX_K + 1, Integer.MAX_VALUE}) {
+            overwriteK(file, k);
+            IOException e = assertThrows(IOException.class, () -> GestureModel.load(file));
+            assertTrue(e.getMessage(), e.getMessage().contains("k=" + k));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class OverlayVertexBatchTest {
+
+    // Every landmark at its own spot, shifted per hand, so misplaced vertices show up
+    private static HandFrame hand(int index) {
+        HandFrame hand = new HandFrame();
+        for (int i = 0; i < HandFrame.NUM_LANDMARKS; i++) {
+            hand.set(i, 0.1f + 0.2f * index + 0.01f * i, 0.9f - 0.03f * i, -0.01f * i);
+        }
+        hand.setPresent(true);
+        return hand;
+    }
+
+    // The vertices written for one hand by addConnections and addSquare, in that order
+    private static float[] expectedLines(HandFrame hand) {
+        float[] expected = new float[(OverlayVertexBatch.CONNECTION_VERTICES + OverlayVertexBatch.SQUARE_VERTICES)
+                * OverlayVertexBatch.FLOATS_PER_VERTEX];
+        int n = 0;
+        for (int landmark : HandOverlayGeometry.HAND_CONNECTIONS) {
+            expected[n++] = hand.x(landmark);
+            expected[n++] = hand.y(landmark);
+        }
+        // Landmark 0 is the lowest, 20 the highest and rightmost
+        float minX = hand.x(0);
+        float maxX = hand.x(20);
+        float minY = hand.y(20);
+        float maxY = hand.y(0);
+        float[] edges = {
+            minX, minY, maxX, minY,
+            maxX, minY, maxX, maxY,
+            maxX, maxY, minX, maxY,
+            minX, maxY, minX, minY
+        };
+        System.arraycopy(edges, 0, expected, n, edges.length);
+        return expected;
+    }
+
+    private static float[] expectedPoints(HandFrame hand) {
+        float[] expected = new float[OverlayVertexBatch.POINT_VERTICES * OverlayVertexBatch.FLOATS_PER_VERTEX];
+        for (int i = 0; i < HandFrame.NUM_LANDMARKS; i++) {
+            expected[2 * i] = hand.x(i);
+            expected[2 * i + 1] = hand.y(i);
+        }
+        return expected;
+    }
+
+    private static float[] valid(OverlayVertexBatch batch) {
+        return Arrays.copyOf(batch.array(), batch.floatCount());
+    }
+
+    @Test
+    public void squareIsTheBoundingBoxOfAllLandmarks() {
+        HandFrame hand = hand(0);
+        // An outlier in the middle of the landmarks moves the box
+        hand.set(9, -0.5f, 1.5f, 0f);
+        float[] square = new float[HandOverlayGeometry.SQUARE_FLOATS];
+        HandOverlayGeometry.squareVertices(hand, square);
+        assertArrayEquals(new float[]{-0.5f, hand.y(20), hand.x(20), hand.y(20), hand.x(20), 1.5f, -0.5f, 1.5f},
+                square, 0f);
+    }
+
+    @Test
+    public void packsOneHand() {
+        HandFrame hand = hand(0);
+        OverlayVertexBatch lines = new OverlayVertexBatch(OverlayVertexBatch.CONNECTION_VERTICES);
+        OverlayVertexBatch points = new OverlayVertexBatch(OverlayVertexBatch.POINT_VERTICES);
+        lines.addConnections(hand);
+        lines.addSquare(hand);
+        points.addPoints(hand);
+
+        // GL_LINES takes vertex pairs: 21 connections and the 4 box edges
+        assertEquals(2 * (HandOverlayGeometry.NUM_CONNECTIONS + 4), lines.vertexCount());
+        assertEquals(lines.vertexCount() * OverlayVertexBatch.FLOATS_PER_VERTEX, lines.floatCount());
+        assertEquals(HandFrame.NUM_LANDMARKS, points.vertexCount());
+        assertArrayEquals(expectedLines(hand), valid(lines), 0f);
+        assertArrayEquals(expectedPoints(hand), valid(points), 0f);
+    }
+
+    @Test
+    public void packsSeveralHandsBackToBack() {
+        int hands = MultiHandFrame.MAX_HANDS;
+        // Room for one hand only, the rest grows the batches
+        OverlayVertexBatch lines = new OverlayVertexBatch(OverlayVertexBatch.CONNECTION_VERTICES);
+        OverlayVertexBatch points = new OverlayVertexBatch(OverlayVertexBatch.POINT_VERTICES);
+        for (int h = 0; h < hands; h++) {
+            lines.addConnections(hand(h));
+            lines.addSquare(hand(h));
+            points.addPoints(hand(h));
+        }
+        assertEquals(hands * (OverlayVertexBatch.CONNECTION_VERTICES + OverlayVertexBatch.SQUARE_VERTICES),
+                lines.vertexCount());
+        assertEquals(hands * OverlayVertexBatch.POINT_VERTICES, points.vertexCount());
+
+        float[] packedLines = valid(lines);
+        float[] packedPoints = valid(points);
+        for (int h = 0; h < hands; h++) {
+            float[] handLines = expectedLines(hand(h));
+            float[] handPoints = expectedPoints(hand(h));
+            assertArrayEquals("hand " + h, handLines,
+                    Arrays.copyOfRange(packedLines, h * handLines.length, (h + 1) * handLines.length), 0f);
+            assertArrayEquals("hand " + h, handPoints,
+                    Arrays.copyOfRange(packedPoints, h * handPoints.length, (h + 1) * handPoints.length), 0f);
+        }
+    }
+
+    @Test
+    public void resetReusesTheArray() {
+        OverlayVertexBatch points = new OverlayVertexBatch(OverlayVertexBatch.POINT_VERTICES);
+        points.addPoints(hand(0));
+        points.addPoints(hand(1));
+        float[] grown = points.array();
+        points.reset();
+        assertEquals(0, points.vertexCount());
+        points.addPoints(hand(2));
+        points.addPoints(hand(3));
+        assertSame(grown, points.array());
+        assertArrayEquals(expectedPoints(hand(2)),
+                Arrays.copyOf(points.array(), expectedPoints(hand(2)).length), 0f);
+    }
+}
@@ -0,0 +1,197 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PhotoSaveQueueTest {
+
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private final AtomicInteger mainCalls = new AtomicInteger();
+    // Stands in for the main thread, counts what is posted to it
+    private final Executor main = task -> {
+        mainCalls.incrementAndGet();
+        task.run();
+    };
+    // "saved <result>" or "failed <message>", in callback order
+    private final BlockingQueue<String> outcomes = new LinkedBlockingQueue<>();
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private PhotoSaveQueue queue;
+
+    @After
+    public void tearDown() {
+        gate.countDown();
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    private <T> PhotoSaveQueue.Callback<T> recorder() {
+        return new PhotoSaveQueue.Callback<T>() {
+            @Override
+            public void onSaved(T result) {
+                outcomes.add("saved " + result);
+            }
+
+            @Override
+            public void onFailed(Exception error) {
+                outcomes.add("failed " + error.getMessage());
+            }
+        };
+    }
+
+    // Holds the worker until the gate opens
+    private PhotoSaveQueue.Job<Integer> blocked(int result) {
+        return quality -> {
+            gate.await();
+            return result;
+        };
+    }
+
+    private String nextOutcome() throws InterruptedException {
+        String outcome = outcomes.poll(5, TimeUnit.SECONDS);
+        assertNotNull("no callback", outcome);
+        return outcome;
+    }
+
+    @Test
+    public void refusesWhenFull() throws InterruptedException {
+        queue = new PhotoSaveQueue(2, main, metrics);
+        assertTrue(queue.offer(blocked(1), recorder()));
+        assertTrue(queue.offer(blocked(2), recorder()));
+        assertFalse(queue.hasCapacity());
+        assertFalse(queue.offer(quality -> 3, recorder()));
+        assertNull(queue.tryReserve());
+        assertEquals(2, queue.getRejected());
+
+        gate.countDown();
+        assertEquals("saved 1", nextOutcome());
+        assertEquals("saved 2", nextOutcome());
+        assertEquals(2, queue.getSaved());
+        assertEquals(2, queue.getPeakPending());
+        assertEquals(0, queue.getPending());
+        assertEquals(2, mainCalls.get());
+        assertEquals(2, metrics.getHistogram(PipelineMetrics.Stage.SAVE_WRITTEN).getCount());
+    }
+
+    @Test
+    public void ticketHoldsASlotUntilCompleted() {
+        queue = new PhotoSaveQueue(1, main, metrics);
+        PhotoSaveQueue.Ticket ticket = queue.tryReserve();
+        assertNotNull(ticket);
+        assertFalse(queue.offer(quality -> 1, recorder()));
+        ticket.complete();
+        ticket.complete();
+        ticket.fail();
+        assertEquals(1, queue.getSaved());
+        assertEquals(0, queue.getFailed());
+        assertEquals(0, queue.getPending());
+        assertTrue(queue.hasCapacity());
+    }
+
+    @Test
+    public void failedTicketCountsAsFailure() {
+        queue = new PhotoSaveQueue(1, main, metrics);
+        queue.tryReserve().fail();
+        assertEquals(1, queue.getFailed());
+        assertEquals(0, queue.getPending());
+    }
+
+    @Test
+    public void ticketSubmitsIntoItsOwnSlot() throws InterruptedException {
+        queue = new PhotoSaveQueue(1, main, metrics);
+        PhotoSaveQueue.Ticket ticket = queue.tryReserve();
+        ticket.submit(quality -> "photo", recorder());
+        assertEquals("saved photo", nextOutcome());
+        assertEquals(0, queue.getPending());
+        assertThrows(IllegalStateException.class, () -> ticket.submit(quality -> "again", recorder()));
+    }
+
+    @Test
+    public void failuresAreReported() throws InterruptedException {
+        queue = new PhotoSaveQueue(1, main, metrics);
+        IOException diskFull = new IOException("disk full");
+        Exception[] reported = new Exception[1];
+        assertTrue(queue.offer(quality -> {
+            throw diskFull;
+        }, new PhotoSaveQueue.Callback<Object>() {
+            @Override
+            public void onSaved(Object result) {
+                outcomes.add("saved");
+            }
+
+            @Override
+            public void onFailed(Exception error) {
+                reported[0] = error;
+                outcomes.add("failed");
+            }
+        }));
+        assertEquals("failed", nextOutcome());
+        assertSame(diskFull, reported[0]);
+        assertEquals(1, queue.getFailed());
+        assertEquals(0, queue.getPending());
+    }
+
+    @Test
+    public void errorsFreeTheSlotAndAreReported() throws InterruptedException {
+        queue = new PhotoSaveQueue(1, main, metrics);
+        assertTrue(queue.offer(quality -> {
+            throw new AssertionError("broken encoder");
+        }, recorder()));
+        assertEquals("failed Error while saving", nextOutcome());
+        assertEquals(1, queue.getFailed());
+        assertEquals(0, queue.getPending());
+        // The worker thread is replaced
+        assertTrue(queue.offer(quality -> 1, recorder()));
+        assertEquals("saved 1", nextOutcome());
+    }
+
+    @Test
+    public void jobsGetTheQualitySetBeforeTheyStart() throws InterruptedException {
+        queue = new PhotoSaveQueue(2, main, metrics);
+        assertEquals(PhotoSaveQueue.DEFAULT_JPEG_QUALITY, queue.getJpegQuality());
+        queue.setJpegQuality(80);
+        assertTrue(queue.offer(quality -> quality, recorder()));
+        assertEquals("saved 80", nextOutcome());
+        queue.setJpegQuality(0);
+        assertEquals(1, queue.getJpegQuality());
+        queue.setJpegQuality(150);
+        assertEquals(100, queue.getJpegQuality());
+    }
+
+    @Test
+    public void closeFinishesPendingSavesAndRefusesNewOnes() throws InterruptedException {
+        queue = new PhotoSaveQueue(3, main, metrics);
+        assertTrue(queue.offer(blocked(1), recorder()));
+        assertTrue(queue.offer(quality -> 2, recorder()));
+        PhotoSaveQueue.Ticket ticket = queue.tryReserve();
+        queue.close();
+
+        assertFalse(queue.offer(quality -> 3, recorder()));
+        ticket.submit(quality -> 4, recorder());
+        assertEquals("failed Save queue is closed", nextOutcome());
+        // The refused offer and the ticket submitted too late
+        assertEquals(2, queue.getRejected());
+
+        gate.countDown();
+        assertEquals("saved 1", nextOutcome());
+        assertEquals("saved 2", nextOutcome());
+        assertEquals(0, queue.getPending());
+        assertEquals(2, queue.getSaved());
+    }
+}
@@ -0,0 +1,207 @@
+package com.google.mediapipe.examples.hands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES20;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives {@link GlFrameGrabber} the way {@link HandsResultGlRenderer} does, on an offscreen GLES 3
+ * context whose frames are cleared to a single color.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GlFrameGrabberTest {
+  private static final int WIDTH = 64;
+  private static final int HEIGHT = 48;
+  // Frames drawn after a grab before giving up on its delivery
+  private static final int MAX_FRAMES = 10;
+
+  private EGLDisplay display;
+  private EGLContext context;
+  private EGLSurface surface;
+  private GlFrameGrabber grabber;
+
+  // "<timestamp> <width>x<height> <r>,<g>,<b>,<a>" per grabbed frame, or "failed <message>"
+  private final List<String> outcomes = new ArrayList<>();
+  private final GlFrameGrabber.Callback recorder =
+      new GlFrameGrabber.Callback() {
+        @Override
+        public void onFrameGrabbed(ByteBuffer rgba, int width, int height, long timestampUs) {
+          assertEquals(width * height * 4, rgba.remaining());
+          int p = rgba.position();
+          outcomes.add(
+              timestampUs + " " + width + "x" + height + " " + (rgba.get(p) & 0xFF) + ","
+                  + (rgba.get(p + 1) & 0xFF) + "," + (rgba.get(p + 2) & 0xFF) + ","
+                  + (rgba.get(p + 3) & 0xFF));
+        }
+
+        @Override
+        public void onGrabFailed(Exception error) {
+          outcomes.add("failed " + error.getMessage());
+        }
+      };
+
+  @Before
+  public void setUp() {
+    display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+    int[] version = new int[2];
+    assertTrue(EGL14.eglInitialize(display, version, 0, version, 1));
+    int[] configAttributes = {
+      EGL14.EGL_RED_SIZE, 8,
+      EGL14.EGL_GREEN_SIZE, 8,
+      EGL14.EGL_BLUE_SIZE, 8,
+      EGL14.EGL_ALPHA_SIZE, 8,
+      EGL14.EGL_RENDERABLE_TYPE, EGLExt.EGL_OPENGL_ES3_BIT_KHR,
+      EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+      EGL14.EGL_NONE
+    };
+    EGLConfig[] configs = new EGLConfig[1];
+    int[] count = new int[1];
+    assertTrue(EGL14.eglChooseConfig(display, configAttributes, 0, configs, 0, 1, count, 0));
+    assertEquals(1, count[0]);
+    context =
+        EGL14.eglCreateContext(
+            display,
+            configs[0],
+            EGL14.EGL_NO_CONTEXT,
+            new int[] {EGL14.EGL_CONTEXT_CLIENT_VERSION, 3, EGL14.EGL_NONE},
+            0);
+    surface =
+        EGL14.eglCreatePbufferSurface(
+            display,
+            configs[0],
+            new int[] {EGL14.EGL_WIDTH, WIDTH, EGL14.EGL_HEIGHT, HEIGHT, EGL14.EGL_NONE},
+            0);
+    assertTrue(EGL14.eglMakeCurrent(display, surface, surface, context));
+    GLES20.glViewport(0, 0, WIDTH, HEIGHT);
+  }
+
+  @After
+  public void tearDown() {
+    if (grabber != null) {
+      grabber.release();
+    }
+    EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+    EGL14.eglDestroySurface(display, surface);
+    EGL14.eglDestroyContext(display, context);
+    EGL14.eglTerminate(display);
+  }
+
+  private GlFrameGrabber newGrabber(int glMajorVersion) {
+    grabber = new GlFrameGrabber(glMajorVersion);
+    grabber.setup();
+    return grabber;
+  }
+
+  // One frame of a single color, grabbed like the renderer grabs it
+  private void drawFrame(float red, float green, float blue, long timestampUs) {
+    GLES20.glClearColor(red, green, blue, 1f);
+    GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+    if (grabber.beginFrame()) {
+      grabber.grab(timestampUs);
+    }
+    grabber.endFrame();
+  }
+
+  // Draws black frames until `count` outcomes arrived
+  private void drawUntil(int count) {
+    for (int frame = 0; frame < MAX_FRAMES && outcomes.size() < count; frame++) {
+      drawFrame(0f, 0f, 0f, 1000 + frame);
+    }
+    assertEquals(outcomes.toString(), count, outcomes.size());
+  }
+
+  @Test
+  public void grabsTheNextDrawnFrame() {
+    newGrabber(3);
+    assertTrue(grabber.request(recorder));
+    drawFrame(1f, 0f, 0f, 1);
+    drawUntil(1);
+    assertEquals("1 64x48 255,0,0,255", outcomes.get(0));
+  }
+
+  @Test
+  public void servesOneRequestPerFrame() {
+    newGrabber(3);
+    grabber.request(recorder);
+    grabber.request(recorder);
+    drawFrame(1f, 0f, 0f, 1);
+    drawFrame(0f, 1f, 0f, 2);
+    drawUntil(2);
+    assertEquals("1 64x48 255,0,0,255", outcomes.get(0));
+    assertEquals("2 64x48 0,255,0,255", outcomes.get(1));
+  }
+
+  @Test
+  public void readsSynchronouslyOnGles2() {
+    newGrabber(2);
+    grabber.request(recorder);
+    drawFrame(0f, 0f, 1f, 7);
+    assertEquals(1, outcomes.size());
+    assertEquals("7 64x48 0,0,255,255", outcomes.get(0));
+  }
+
+  @Test
+  public void framesWithoutRequestsAreNotGrabbed() {
+    newGrabber(3);
+    assertFalse(grabber.beginFrame());
+    drawFrame(1f, 1f, 1f, 1);
+    drawFrame(1f, 1f, 1f, 2);
+    assertTrue(outcomes.isEmpty());
+  }
+
+  @Test
+  public void closeFailsPendingRequestsAndRefusesNewOnes() {
+    newGrabber(3);
+    grabber.request(recorder);
+    grabber.close();
+    assertEquals("failed Preview closed", outcomes.get(0));
+    assertFalse(grabber.request(recorder));
+    drawFrame(1f, 0f, 0f, 1);
+    assertEquals(1, outcomes.size());
+  }
+
+  @Test
+  public void closeFailsReadsInFlight() {
+    newGrabber(3);
+    grabber.request(recorder);
+    assertTrue(grabber.beginFrame());
+    grabber.grab(1);
+    grabber.close();
+    assertEquals("failed Preview closed", outcomes.get(0));
+    // The finished read is dropped, not delivered as well
+    drawFrame(0f, 0f, 0f, 2);
+    GLES20.glFinish();
+    drawFrame(0f, 0f, 0f, 3);
+    assertEquals(1, outcomes.size());
+  }
+
+  @Test
+  public void releaseFailsReadsInFlight() {
+    newGrabber(3);
+    grabber.request(recorder);
+    assertTrue(grabber.beginFrame());
+    grabber.grab(1);
+    grabber.release();
+    grabber = null;
+    assertEquals("failed Preview released", outcomes.get(0));
+  }
+}
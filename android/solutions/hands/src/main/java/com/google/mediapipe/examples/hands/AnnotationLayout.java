@@ -0,0 +1,101 @@
+package com.google.mediapipe.examples.hands;
+
+/**
+ * Placement and sizing math of photo annotations, in pixels of the image being annotated.
+ *
+ * <p>Pure Java, used only by {@link PhotoAnnotator} for photos that are decoded downsampled or one
+ * band at a time.
+ */
+public final class AnnotationLayout {
+
+    /** Corner or center of an image that a label or watermark is placed relative to. */
+    public enum Anchor {
+        LEFT_TOP,
+        RIGHT_TOP,
+        LEFT_BOTTOM,
+        RIGHT_BOTTOM,
+        CENTER
+    }
+
+    private AnnotationLayout() {
+    }
+
+    /** Left edge of a {@code boxWidth} wide box, {@code padding} away from the anchored edge. */
+    public static int left(Anchor anchor, int width, int boxWidth, int padding) {
+        switch (anchor) {
+            case LEFT_TOP:
+            case LEFT_BOTTOM:
+                return padding;
+            case CENTER:
+                return (width - boxWidth) / 2;
+            default:
+                return width - boxWidth - padding;
+        }
+    }
+
+    /** Top edge of a {@code boxHeight} high box, {@code padding} away from the anchored edge. */
+    public static int top(Anchor anchor, int height, int boxHeight, int padding) {
+        switch (anchor) {
+            case LEFT_TOP:
+            case RIGHT_TOP:
+                return padding;
+            case CENTER:
+                return (height - boxHeight) / 2;
+            default:
+                return height - boxHeight - padding;
+        }
+    }
+
+    /**
+     * A length in pixels of the full resolution image, such as a padding, in pixels of a copy
+     * scaled by {@code scale}; a label placed with scaled lengths lands where it does at full
+     * resolution, to within a pixel of the copy.
+     */
+    public static int scaled(int length, float scale) {
+        return Math.round(length * scale);
+    }
+
+    /**
+     * Largest power of two to downsample a {@code width} x {@code height} image by, as
+     * {@code BitmapFactory.Options.inSampleSize}, that still loses no detail when the image is
+     * scaled to fit a {@code viewWidth} x {@code viewHeight} view.
+     */
+    public static int sampleSize(int width, int height, int viewWidth, int viewHeight) {
+        viewWidth = Math.max(1, viewWidth);
+        viewHeight = Math.max(1, viewHeight);
+        int sample = 1;
+        while (width / (sample * 2) >= viewWidth || height / (sample * 2) >= viewHeight) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    /** Smallest power of two to downsample by so the decoded image fits in {@code maxBytes}. */
+    public static int sampleSizeForBudget(int width, int height, int bytesPerPixel, long maxBytes) {
+        int sample = 1;
+        while ((long) ceilDiv(width, sample) * ceilDiv(height, sample) * bytesPerPixel > maxBytes
+                && (width > sample || height > sample)) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    /**
+     * Rows per band for processing a {@code width} wide image in bands of at most {@code maxBytes},
+     * a multiple of {@link JpegBandEncoder#MCU_ROWS} and at least one MCU row.
+     */
+    public static int bandRows(int width, int bytesPerPixel, long maxBytes) {
+        long rows = maxBytes / Math.max(1L, (long) width * bytesPerPixel);
+        rows -= rows % JpegBandEncoder.MCU_ROWS;
+        return (int) Math.max(JpegBandEncoder.MCU_ROWS, Math.min(rows, Integer.MAX_VALUE / 2));
+    }
+
+    /** True if rows {@code [top, bottom)} overlap the band {@code [bandTop, bandBottom)}. */
+    public static boolean overlaps(int top, int bottom, int bandTop, int bandBottom) {
+        return top < bandBottom && bottom > bandTop;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
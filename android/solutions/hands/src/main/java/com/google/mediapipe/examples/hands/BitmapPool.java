@@ -0,0 +1,115 @@
+package com.google.mediapipe.examples.hands;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Bounded pool of mutable bitmaps, keyed by width, height and config.
+ *
+ * <p>Annotating a photo needs one full-resolution buffer. Instead of allocating a new one for every
+ * photo, the buffer of the previous photo is handed back with {@link #release(Bitmap)} and reused,
+ * either directly through {@link #acquire} or as {@link BitmapFactory.Options#inBitmap} through
+ * {@link #prepareDecode}. The pool keeps at most {@code maxBytes} of idle bitmaps and drops the
+ * least recently released ones first. Thread-safe.
+ */
+public class BitmapPool {
+
+    private final long maxBytes;
+    // Idle bitmaps, least recently released first
+    private final ArrayDeque<Bitmap> idle = new ArrayDeque<>();
+    private long idleBytes;
+    private int hits;
+    private int misses;
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a mutable bitmap of the given size and config, reused if one is idle. The content of
+     * a reused bitmap is cleared to transparent.
+     *
+     * @throws OutOfMemoryError if a new bitmap is needed and does not fit
+     */
+    public Bitmap acquire(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(width, height, config);
+        if (bitmap != null) {
+            bitmap.eraseColor(0);
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Sets up {@code options} to decode a {@code width} x {@code height} image into a mutable
+     * bitmap, reusing an idle one of that size as {@link BitmapFactory.Options#inBitmap}.
+     */
+    public void prepareDecode(BitmapFactory.Options options, int width, int height) {
+        Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inBitmap = take(width, height, config);
+    }
+
+    /** Hands a bitmap back for reuse. Immutable or recycled bitmaps are ignored. */
+    public void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        long bytes = bitmap.getAllocationByteCount();
+        if (bytes > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            if (idle.contains(bitmap)) {
+                return;
+            }
+            idle.addLast(bitmap);
+            idleBytes += bytes;
+            trimTo(maxBytes);
+        }
+    }
+
+    /** Drops every idle bitmap, e.g. when the system is low on memory. */
+    public synchronized void clear() {
+        trimTo(0);
+    }
+
+    public synchronized long getIdleBytes() {
+        return idleBytes;
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    private synchronized Bitmap take(int width, int height, Bitmap.Config config) {
+        // Newest first, it is the most likely to still be resident
+        for (Iterator<Bitmap> it = idle.descendingIterator(); it.hasNext(); ) {
+            Bitmap bitmap = it.next();
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                it.remove();
+                idleBytes -= bitmap.getAllocationByteCount();
+                hits++;
+                return bitmap;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    private void trimTo(long bytes) {
+        while (idleBytes > bytes && !idle.isEmpty()) {
+            Bitmap evicted = idle.removeFirst();
+            idleBytes -= evicted.getAllocationByteCount();
+            evicted.recycle();
+        }
+    }
+}
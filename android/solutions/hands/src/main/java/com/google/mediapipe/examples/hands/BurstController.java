@@ -0,0 +1,138 @@
+package com.google.mediapipe.examples.hands;
+
+import java.util.Locale;
+
+/**
+ * Timing of a burst: up to {@code shots} captures, {@code intervalMs} apart, for as long as the
+ * gesture that started it is held.
+ *
+ * <p>Shots are pipelined: the next one is requested on schedule while earlier ones are still being
+ * exposed or saved, bounded by {@code maxInFlight} captures the camera has not returned yet and by
+ * the save queue having room. A shot that cannot go out on time is delayed, not dropped, and the
+ * cadence restarts from it. The first shot always goes out, the countdown already confirmed the
+ * gesture; after that, releasing the gesture ends the burst.
+ *
+ * <p>Pure timing logic driven with explicit timestamps, so it runs the same against a fake clock.
+ * Not thread-safe, the app drives it from the main thread.
+ */
+public class BurstController {
+
+    private final int shots;
+    private final long intervalNanos;
+    private final int maxInFlight;
+
+    private long nextShotNanos;
+    private boolean released;
+    private int requested;
+    private int captured;
+    private int captureFailed;
+    private int saved;
+    private int saveFailed;
+    private long firstCapturedNanos;
+    private long lastCapturedNanos;
+
+    public BurstController(int shots, long intervalMs, int maxInFlight) {
+        if (shots < 1 || intervalMs < 0 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Expected shots >= 1, intervalMs >= 0 and maxInFlight >= 1, got "
+                    + shots + ", " + intervalMs + ", " + maxInFlight);
+        }
+        this.shots = shots;
+        this.intervalNanos = intervalMs * 1_000_000L;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public void start(long nowNanos) {
+        nextShotNanos = nowNanos;
+    }
+
+    /**
+     * Returns true if a shot should be requested now; the caller then requests it and calls
+     * {@link #onShotRequested(long)}.
+     *
+     * @param gestureHeld whether the burst gesture is still shown
+     * @param canSave     whether the save queue would take another photo
+     */
+    public boolean shouldShoot(long nowNanos, boolean gestureHeld, boolean canSave) {
+        if (released || requested >= shots) {
+            return false;
+        }
+        if (!gestureHeld && requested > 0) {
+            released = true;
+            return false;
+        }
+        return nowNanos >= nextShotNanos && getInFlight() < maxInFlight && canSave;
+    }
+
+    public void onShotRequested(long nowNanos) {
+        requested++;
+        // Keep the cadence if on time, restart it from this shot if it was held back
+        long base = nowNanos - nextShotNanos > intervalNanos / 2 ? nowNanos : nextShotNanos;
+        nextShotNanos = base + intervalNanos;
+    }
+
+    // The camera returned the image, it is now waiting to be saved
+    public void onShotCaptured(long nowNanos) {
+        if (captured == 0) {
+            firstCapturedNanos = nowNanos;
+        }
+        captured++;
+        lastCapturedNanos = nowNanos;
+    }
+
+    public void onShotFailed() {
+        captureFailed++;
+    }
+
+    public void onShotSaved() {
+        saved++;
+    }
+
+    public void onSaveFailed() {
+        saveFailed++;
+    }
+
+    /** Requested shots the camera has not returned yet. */
+    public int getInFlight() {
+        return requested - captured - captureFailed;
+    }
+
+    /** True once no more shots will be requested and every requested shot is back from the camera. */
+    public boolean isFinished() {
+        return (released || requested >= shots) && getInFlight() == 0;
+    }
+
+    /** True once every captured shot was saved or failed to save as well. */
+    public boolean isSettled() {
+        return isFinished() && saved + saveFailed == captured;
+    }
+
+    /** When the next shot is due, for scheduling the next {@link #shouldShoot} call. */
+    public long getNextShotNanos() {
+        return nextShotNanos;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getCaptured() {
+        return captured;
+    }
+
+    public int getSaved() {
+        return saved;
+    }
+
+    /** Shots returned by the camera per second, from the first to the last; 0 below two shots. */
+    public float getShotsPerSecond() {
+        if (captured < 2 || lastCapturedNanos == firstCapturedNanos) {
+            return 0f;
+        }
+        return (captured - 1) * 1e9f / (lastCapturedNanos - firstCapturedNanos);
+    }
+
+    public String describe() {
+        return String.format(Locale.ROOT, "burst %d of %d shots, %.1f shots/s, saved %d, failed %d",
+                captured, shots, getShotsPerSecond(), saved, captureFailed + saveFailed);
+    }
+}
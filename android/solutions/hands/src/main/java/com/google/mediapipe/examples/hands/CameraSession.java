@@ -0,0 +1,202 @@
+package com.google.mediapipe.examples.hands;
+
+import android.util.Log;
+
+import androidx.camera.core.Camera;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageCapture;
+import androidx.camera.core.Preview;
+import androidx.camera.core.UseCase;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The CameraX side of the live camera: the lens in use, the camera it is bound to, and the
+ * {@link ImageCapture} that photos are taken with.
+ *
+ * <p>{@code CameraInput} binds its {@link Preview} itself when it starts. {@link #attach} adds
+ * {@code ImageCapture} to that camera without rebinding the preview. {@link #switchFacing} moves
+ * the use cases to the other lens in a single bind. The preview keeps its surface, so the GL
+ * context behind it and the graph it feeds stay untouched and frames only stop for the hardware
+ * switch. The {@code ImageCapture} is built once and reused across switches and camera restarts.
+ *
+ * <p>{@code CameraInput} keeps what it worked out for the lens it was started with: the facing it
+ * reports and the frame size, which depends on the sensor orientation. An in-place switch is only
+ * kept when both lenses have their sensors mounted along the same axis, otherwise the caller
+ * restarts {@code CameraInput} with the new lens.
+ *
+ * <p>The time from a switch to the first frame of the new lens goes to the
+ * {@link PipelineMetrics.Stage#CAMERA_SWITCH} stage.
+ *
+ * <p>Main thread only, except {@link #onFrame()}.
+ */
+public class CameraSession {
+    private static final String TAG = "CameraSession";
+
+    private final LifecycleOwner owner;
+    private final ListenableFuture<ProcessCameraProvider> providerFuture;
+    private final Executor mainExecutor;
+    private final PipelineMetrics metrics;
+    private int lensFacing;
+
+    private ImageCapture imageCapture;
+    // Use cases of the running camera, preview is null until attached or if it was not found
+    private Preview preview;
+    private boolean captureEnabled;
+    private Camera camera;
+    // Bumped by attach and detach, so a bind still waiting for the provider can tell it is stale
+    private int generation;
+    // Set by a switch until the first frame of the new lens arrives
+    private final AtomicLong switchStartNanos = new AtomicLong();
+
+    /** @param lensFacing {@link CameraSelector#LENS_FACING_FRONT} or {@link CameraSelector#LENS_FACING_BACK} */
+    public CameraSession(LifecycleOwner owner, ListenableFuture<ProcessCameraProvider> providerFuture,
+                         Executor mainExecutor, PipelineMetrics metrics, int lensFacing) {
+        this.owner = owner;
+        this.providerFuture = providerFuture;
+        this.mainExecutor = mainExecutor;
+        this.metrics = metrics;
+        this.lensFacing = lensFacing;
+    }
+
+    public int getLensFacing() {
+        return lensFacing;
+    }
+
+    /** Lens for the next camera start, the running camera is not touched. */
+    public void setLensFacing(int lensFacing) {
+        this.lensFacing = lensFacing;
+    }
+
+    /** The photo use case, the same instance for the whole session. */
+    public ImageCapture getImageCapture() {
+        if (imageCapture == null) {
+            imageCapture = new ImageCapture.Builder()
+                    .setCaptureMode(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY)
+                    .build();
+        }
+        return imageCapture;
+    }
+
+    /** The camera bound with {@code ImageCapture}, or null before {@link #attach} or without capture. */
+    public Camera getCamera() {
+        return camera;
+    }
+
+    /**
+     * Takes over the camera {@code CameraInput} just started, once the provider is ready.
+     *
+     * @param previewLookup finds the preview {@code CameraInput} bound, may return null, which
+     *                      rules out {@link #switchFacing}
+     * @param withCapture   whether to add {@link #getImageCapture()} to the camera
+     */
+    public void attach(Supplier<Preview> previewLookup, boolean withCapture) {
+        preview = null;
+        captureEnabled = withCapture;
+        camera = null;
+        int attached = ++generation;
+        // Runs after CameraInput's own listener on the same future, so its preview exists by then
+        providerFuture.addListener(() -> {
+            if (generation != attached) {
+                // Detached or attached again meanwhile
+                return;
+            }
+            preview = previewLookup.get();
+            if (!withCapture) {
+                return;
+            }
+            ImageCapture capture = getImageCapture();
+            try {
+                ProcessCameraProvider provider = providerFuture.get();
+                // Binding only the new use case leaves the running preview alone
+                provider.unbind(capture);
+                camera = provider.bindToLifecycle(owner, selector(lensFacing), capture);
+            } catch (ExecutionException | InterruptedException | RuntimeException e) {
+                Log.e(TAG, "Cannot bind the photo use case", e);
+            }
+        }, mainExecutor);
+    }
+
+    /** Forgets the running camera, call when {@code CameraInput} is closed. */
+    public void detach() {
+        preview = null;
+        camera = null;
+        generation++;
+        switchStartNanos.set(0);
+    }
+
+    /**
+     * Moves the running camera to {@code facing}.
+     *
+     * @return false if the camera cannot be switched in place and has to be restarted with the new
+     * lens instead; the session is detached then if the switch got as far as unbinding
+     */
+    public boolean switchFacing(int facing) {
+        if (preview == null || !providerFuture.isDone()) {
+            return false;
+        }
+        ProcessCameraProvider provider;
+        try {
+            provider = providerFuture.get();
+        } catch (ExecutionException | InterruptedException e) {
+            return false;
+        }
+        UseCase[] useCases = captureEnabled
+                ? new UseCase[]{preview, getImageCapture()}
+                : new UseCase[]{preview};
+        long startNanos = System.nanoTime();
+        int sensorRotation;
+        try {
+            // Without use cases this only looks up the camera the preview runs on
+            sensorRotation = provider.bindToLifecycle(owner, selector(lensFacing))
+                    .getCameraInfo().getSensorRotationDegrees();
+        } catch (RuntimeException e) {
+            return false;
+        }
+        provider.unbind(useCases);
+        Camera bound;
+        try {
+            bound = provider.bindToLifecycle(owner, selector(facing), useCases);
+        } catch (RuntimeException e) {
+            // No such lens, keep the one that worked
+            Log.e(TAG, "Cannot switch to lens facing " + facing + ", staying on " + lensFacing, e);
+            try {
+                bound = provider.bindToLifecycle(owner, selector(lensFacing), useCases);
+            } catch (RuntimeException rebindError) {
+                Log.e(TAG, "Cannot rebind lens facing " + lensFacing, rebindError);
+                detach();
+                return false;
+            }
+            facing = lensFacing;
+        }
+        if (bound.getCameraInfo().getSensorRotationDegrees() % 180 != sensorRotation % 180) {
+            // CameraInput sized its frames for the other orientation
+            provider.unbind(useCases);
+            detach();
+            return false;
+        }
+        lensFacing = facing;
+        // Only the photo path uses the camera, keep it as attach() leaves it
+        camera = captureEnabled ? bound : null;
+        switchStartNanos.set(startNanos);
+        return true;
+    }
+
+    /** Called for every camera frame, on the thread that delivers them. */
+    public void onFrame() {
+        if (switchStartNanos.get() != 0) {
+            metrics.record(PipelineMetrics.Stage.CAMERA_SWITCH, switchStartNanos.getAndSet(0));
+        }
+    }
+
+    private static CameraSelector selector(int facing) {
+        return new CameraSelector.Builder().requireLensFacing(facing).build();
+    }
+}
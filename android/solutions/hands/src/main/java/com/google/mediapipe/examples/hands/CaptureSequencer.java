@@ -0,0 +1,194 @@
+package com.google.mediapipe.examples.hands;
+
+/**
+ * State machine of a gesture-triggered capture: IDLE, ARMED, COUNTDOWN, CAPTURING and COOLDOWN.
+ *
+ * <p>ARMED accepts triggers; IDLE ignores them, e.g. while a picked photo is shown. A trigger
+ * starts the countdown, which reports every second left and can be cancelled by releasing the
+ * gesture. When it runs out the capture starts and lasts until {@link #captureFinished(long)}, a
+ * single photo or a whole burst, followed by a cooldown before the next trigger is accepted.
+ *
+ * <p>Pure logic driven with explicit {@link System#nanoTime()} timestamps: the caller calls
+ * {@link #tick} at the time it returns, one reusable task instead of a timer per countdown, and
+ * tests drive it with a fake clock. Listener calls happen inside the calls that cause them.
+ * Changed only from the main thread; {@link #getState()} and {@link #isBusy()} can be read from
+ * any thread.
+ */
+public class CaptureSequencer {
+
+    public enum State {
+        IDLE,
+        ARMED,
+        COUNTDOWN,
+        CAPTURING,
+        COOLDOWN
+    }
+
+    public interface Listener {
+        void onStateChanged(State from, State to);
+
+        // Seconds left when the countdown starts and whenever that number drops, not for 0
+        void onCountdownTick(int secondsLeft);
+
+        // The countdown ran out, capture and call captureFinished when done
+        void onCapture(HandGesture gesture);
+    }
+
+    /** Returned by {@link #tick} when nothing is due. */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final long SECOND_NANOS = 1_000_000_000L;
+
+    private final long countdownNanos;
+    private final long cooldownNanos;
+    private final Listener listener;
+    private long releaseNanos;
+
+    private volatile State state = State.ARMED;
+    private HandGesture gesture = HandGesture.UNDEFINED;
+    // End of the countdown or cooldown
+    private long deadlineNanos;
+    private int secondsShown;
+    private long cancelled;
+
+    public CaptureSequencer(long countdownMs, long cooldownMs, Listener listener) {
+        this.countdownNanos = countdownMs * 1_000_000L;
+        this.cooldownNanos = cooldownMs * 1_000_000L;
+        this.listener = listener;
+    }
+
+    /**
+     * Cancels the countdown once the gesture has not been seen for {@code releaseMs}; 0 keeps it
+     * running, so the hand can be lowered for the photo.
+     */
+    public void setReleaseMs(long releaseMs) {
+        this.releaseNanos = Math.max(0, releaseMs) * 1_000_000L;
+    }
+
+    public boolean cancelsOnRelease() {
+        return releaseNanos > 0;
+    }
+
+    /** Starts accepting triggers again after {@link #disarm()}; returns false unless IDLE. */
+    public boolean arm() {
+        if (state != State.IDLE) {
+            return false;
+        }
+        moveTo(State.ARMED);
+        return true;
+    }
+
+    /** Stops accepting triggers, a running countdown is dropped. A running capture still finishes. */
+    public void disarm() {
+        if (state == State.ARMED || state == State.COUNTDOWN || state == State.COOLDOWN) {
+            moveTo(State.IDLE);
+        }
+    }
+
+    /** Starts the countdown for {@code gesture}; returns false if not ARMED. */
+    public boolean trigger(HandGesture gesture, long nowNanos) {
+        if (state != State.ARMED) {
+            return false;
+        }
+        this.gesture = gesture;
+        deadlineNanos = nowNanos + countdownNanos;
+        secondsShown = 0;
+        moveTo(State.COUNTDOWN);
+        tick(nowNanos, nowNanos);
+        return true;
+    }
+
+    /**
+     * Advances the timed states.
+     *
+     * @param gestureSeenNanos when a hand last showed the trigger gesture, only used to cancel on
+     *                         release
+     * @return when to call again, or {@link #NO_DEADLINE}
+     */
+    public long tick(long nowNanos, long gestureSeenNanos) {
+        if (state == State.COUNTDOWN) {
+            if (releaseNanos > 0 && nowNanos - gestureSeenNanos >= releaseNanos) {
+                cancelled++;
+                moveTo(State.ARMED);
+                return NO_DEADLINE;
+            }
+            if (nowNanos >= deadlineNanos) {
+                moveTo(State.CAPTURING);
+                listener.onCapture(gesture);
+                // The listener may have finished the capture already
+                return nextDeadline(nowNanos, gestureSeenNanos);
+            }
+            int seconds = (int) ((deadlineNanos - nowNanos + SECOND_NANOS - 1) / SECOND_NANOS);
+            if (seconds != secondsShown) {
+                secondsShown = seconds;
+                listener.onCountdownTick(seconds);
+            }
+        } else if (state == State.COOLDOWN && nowNanos >= deadlineNanos) {
+            moveTo(State.ARMED);
+        }
+        return nextDeadline(nowNanos, gestureSeenNanos);
+    }
+
+    /** Ends the capture and starts the cooldown; returns when to {@link #tick} next. */
+    public long captureFinished(long nowNanos) {
+        if (state != State.CAPTURING) {
+            return nextDeadline(nowNanos, nowNanos);
+        }
+        deadlineNanos = nowNanos + cooldownNanos;
+        moveTo(cooldownNanos > 0 ? State.COOLDOWN : State.ARMED);
+        return nextDeadline(nowNanos, nowNanos);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /** True unless ARMED, i.e. while nothing else should react to gestures or the UI. */
+    public boolean isBusy() {
+        return state != State.ARMED;
+    }
+
+    /**
+     * True while hand results are needed: to trigger, to see a release during the countdown, or
+     * while capturing, when a burst watches the gesture and preview captures need drawn frames.
+     */
+    public boolean needsResults() {
+        State current = state;
+        return current == State.ARMED || current == State.CAPTURING
+                || (current == State.COUNTDOWN && releaseNanos > 0);
+    }
+
+    /** Gesture of the current or last countdown. */
+    public HandGesture getGesture() {
+        return gesture;
+    }
+
+    public long getCancelled() {
+        return cancelled;
+    }
+
+    private long nextDeadline(long nowNanos, long gestureSeenNanos) {
+        switch (state) {
+            case COUNTDOWN:
+                // Next change of the seconds shown, the end, or the release
+                long next = deadlineNanos - (secondsShown - 1) * SECOND_NANOS;
+                if (releaseNanos > 0) {
+                    next = Math.min(next, gestureSeenNanos + releaseNanos);
+                }
+                return next;
+            case COOLDOWN:
+                return deadlineNanos;
+            default:
+                return NO_DEADLINE;
+        }
+    }
+
+    private void moveTo(State next) {
+        State previous = state;
+        if (previous == next) {
+            return;
+        }
+        state = next;
+        listener.onStateChanged(previous, next);
+    }
+}
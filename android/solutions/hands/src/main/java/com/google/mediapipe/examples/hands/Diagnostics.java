@@ -0,0 +1,166 @@
+package com.google.mediapipe.examples.hands;
+
+/**
+ * Leveled, rate-limited debug logging for the per-frame paths.
+ *
+ * <p>Messages are built in a {@link Channel}'s preallocated StringBuilder, and only after the level
+ * check and the channel's rate limit have passed, so a suppressed message costs a volatile read and
+ * a clock read. Numbers are appended digit by digit instead of through {@code String.format}. The
+ * only allocation left is the String handed to the {@link Sink} for messages that are emitted.
+ */
+public final class Diagnostics {
+
+    // Same values as the android.util.Log priorities
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    public interface Sink {
+        void write(int priority, String tag, String message);
+    }
+
+    private static final long[] POW10 = {1, 10, 100, 1000, 10000, 100000, 1000000};
+    public static final int MAX_DECIMALS = POW10.length - 1;
+
+    private final String tag;
+    private final Sink sink;
+    private volatile int level;
+
+    public Diagnostics(String tag, int level, Sink sink) {
+        this.tag = tag;
+        this.level = level;
+        this.sink = sink;
+    }
+
+    public boolean isLoggable(int priority) {
+        return priority >= level;
+    }
+
+    // Messages below this priority are dropped before they are formatted
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /** Creates a channel that emits at most once every {@code minIntervalMs}, 0 for no limit. */
+    public Channel channel(String key, int priority, long minIntervalMs) {
+        return new Channel(key, priority, minIntervalMs * 1_000_000L);
+    }
+
+    /**
+     * One message key with its own rate limit and builder. Not thread-safe, every channel has to
+     * be used from a single thread.
+     *
+     * <pre>
+     * if (channel.begin()) {
+     *     channel.append("x=").append(x, 3).emit();
+     * }
+     * </pre>
+     */
+    public final class Channel {
+        private final String key;
+        private final int priority;
+        private final long minIntervalNanos;
+        private final StringBuilder builder = new StringBuilder(128);
+        private volatile boolean enabled = true;
+        private boolean started;
+        private long lastEmitNanos;
+        private int suppressed;
+
+        private Channel(String key, int priority, long minIntervalNanos) {
+            this.key = key;
+            this.priority = priority;
+            this.minIntervalNanos = minIntervalNanos;
+        }
+
+        // Switches the channel independently of the level, e.g. from a debug preference
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Returns true if a message should be built now and starts it with the channel key.
+         * Calls that are rate limited away are counted and reported with the next message.
+         */
+        public boolean begin() {
+            if (!enabled || priority < level) {
+                return false;
+            }
+            long now = System.nanoTime();
+            if (started && now - lastEmitNanos < minIntervalNanos) {
+                suppressed++;
+                return false;
+            }
+            started = true;
+            lastEmitNanos = now;
+            builder.setLength(0);
+            builder.append(key).append(": ");
+            return true;
+        }
+
+        public Channel append(CharSequence text) {
+            builder.append(text);
+            return this;
+        }
+
+        public Channel append(char c) {
+            builder.append(c);
+            return this;
+        }
+
+        public Channel append(long value) {
+            builder.append(value);
+            return this;
+        }
+
+        public Channel append(float value, int decimals) {
+            appendFixed(builder, value, decimals);
+            return this;
+        }
+
+        public void emit() {
+            if (suppressed > 0) {
+                builder.append(" (+").append(suppressed).append(" suppressed)");
+                suppressed = 0;
+            }
+            sink.write(priority, tag, builder.toString());
+        }
+    }
+
+    /** Appends {@code value} rounded to {@code decimals} fraction digits without allocating. */
+    static void appendFixed(StringBuilder out, float value, int decimals) {
+        if (Float.isNaN(value)) {
+            out.append("NaN");
+            return;
+        }
+        if (Float.isInfinite(value)) {
+            out.append(value > 0 ? "Infinity" : "-Infinity");
+            return;
+        }
+        decimals = Math.max(0, Math.min(decimals, MAX_DECIMALS));
+        long scale = POW10[decimals];
+        long scaled = Math.round(Math.abs((double) value) * scale);
+        if (value < 0 && scaled != 0) {
+            out.append('-');
+        }
+        out.append(scaled / scale);
+        if (decimals == 0) {
+            return;
+        }
+        out.append('.');
+        long fraction = scaled % scale;
+        for (long digit = scale / 10; digit > fraction && digit > 1; digit /= 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+}
@@ -0,0 +1,80 @@
+package com.google.mediapipe.examples.hands;
+
+/**
+ * Which fingers of a hand are extended, computed from joint angles.
+ *
+ * <p>Works on world landmarks ({@link MultiHandFrame#worldHand(int)}), which are metric and
+ * centered on the hand, so only relative bone directions matter: the result is the same whether
+ * the palm or the back of the hand faces the camera and however the hand is rotated. Each joint's
+ * bend is {@code 1 - cos} of the angle between its two bones, read straight from the packed
+ * {@link HandFrame#coords()} array in one loop over a fixed joint table.
+ */
+public final class FingerState {
+
+    // Bits of the finger mask, a set bit means the finger is extended
+    public static final int THUMB = 1;
+    public static final int INDEX = 1 << 1;
+    public static final int MIDDLE = 1 << 2;
+    public static final int RING = 1 << 3;
+    public static final int PINKY = 1 << 4;
+    public static final int NUM_FINGERS = 5;
+    public static final int ALL_FINGERS = (1 << NUM_FINGERS) - 1;
+
+    // Mean joint bend above which a finger counts as curled. The thumb bends less when tucked in.
+    static final float THUMB_CURLED = 0.15f;
+    static final float FINGER_CURLED = 0.5f;
+
+    // (previous, joint, next) landmark triples, grouped by finger. The thumb's CMC joint is left
+    // out, it is bent even when the thumb is stretched out.
+    private static final int[] JOINTS = {
+            // Thumb MCP, IP
+            1, 2, 3, 2, 3, 4,
+            // Index, middle, ring and pinky MCP, PIP, DIP
+            0, 5, 6, 5, 6, 7, 6, 7, 8,
+            0, 9, 10, 9, 10, 11, 10, 11, 12,
+            0, 13, 14, 13, 14, 15, 14, 15, 16,
+            0, 17, 18, 17, 18, 19, 18, 19, 20
+    };
+    // First triple of each finger in JOINTS, plus the end
+    private static final int[] FINGER_JOINTS = {0, 2, 5, 8, 11, 14};
+
+    private FingerState() {
+    }
+
+    /**
+     * Returns the mask of extended fingers and, if {@code curls} is not null, writes the curl of
+     * every finger into it. A curl is the mean bend of the finger's joints, 0 for a straight finger
+     * and 1 when every joint is bent by 90 degrees. Allocates nothing.
+     *
+     * @param curls null or at least {@link #NUM_FINGERS} entries, indexed thumb to pinky
+     */
+    public static int extract(HandFrame hand, float[] curls) {
+        float[] c = hand.coords();
+        int mask = 0;
+        for (int f = 0; f < NUM_FINGERS; f++) {
+            float bend = 0f;
+            for (int j = FINGER_JOINTS[f] * 3; j < FINGER_JOINTS[f + 1] * 3; j += 3) {
+                int prev = JOINTS[j] * HandFrame.STRIDE;
+                int joint = JOINTS[j + 1] * HandFrame.STRIDE;
+                int next = JOINTS[j + 2] * HandFrame.STRIDE;
+                float ax = c[joint] - c[prev];
+                float ay = c[joint + 1] - c[prev + 1];
+                float az = c[joint + 2] - c[prev + 2];
+                float bx = c[next] - c[joint];
+                float by = c[next + 1] - c[joint + 1];
+                float bz = c[next + 2] - c[joint + 2];
+                float lengths = (ax * ax + ay * ay + az * az) * (bx * bx + by * by + bz * bz);
+                float cos = lengths > 0f ? (ax * bx + ay * by + az * bz) / (float) Math.sqrt(lengths) : 1f;
+                bend += 1f - cos;
+            }
+            float curl = bend / (FINGER_JOINTS[f + 1] - FINGER_JOINTS[f]);
+            if (curls != null) {
+                curls[f] = curl;
+            }
+            if (curl < (f == 0 ? THUMB_CURLED : FINGER_CURLED)) {
+                mask |= 1 << f;
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,354 @@
+package com.google.mediapipe.examples.hands;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Single-threaded analysis stage between the MediaPipe result callback and the UI.
+ *
+ * <p>The result thread fills the frame returned by {@link #beginFrame()} and calls {@link
+ * #publishFrame()}. Classification runs on a dedicated worker; if the worker falls behind, older
+ * frames are overwritten so only the latest one is classified. Every hand slot has its own
+ * {@link GestureStabilizer}, and the main thread is only posted to when the stable gestures change
+ * or the {@link TriggerPolicy} asks for the countdown to start. Every change of a hand's stable
+ * gesture is also published to the {@link GestureEventBus}, if one is set.
+ */
+public class GestureAnalyzer {
+
+    public interface Listener {
+        /**
+         * Called on the main executor whenever the stable gestures change. {@code gestures} is
+         * indexed like the hands of the frame and only valid during the call.
+         */
+        void onGesturesChanged(HandGesture[] gestures, int handCount);
+
+        // Called on the main executor when the trigger policy matched while no capture is running
+        void onGestureTriggered(HandGesture gesture);
+    }
+
+    public interface TriggerPolicy {
+        /**
+         * Returns the gesture that should start a capture, or {@link HandGesture#UNDEFINED}.
+         * Called on the worker thread for every change of the stable gestures.
+         */
+        HandGesture match(HandGesture[] gestures, int handCount);
+    }
+
+    private final ExecutorService worker =
+            Executors.newSingleThreadExecutor(r -> new Thread(r, "GestureAnalyzer"));
+    private final Executor mainExecutor;
+    private final Listener listener;
+    private final TriggerPolicy triggerPolicy;
+    private final BooleanSupplier captureInProgress;
+    private final PipelineMetrics metrics;
+
+    // Triple buffer: the producer owns writeFrame, the worker owns readFrame and pendingFrame
+    // is handed over under the lock. Swapping references keeps the hand-off allocation free.
+    private final Object lock = new Object();
+    private MultiHandFrame writeFrame = new MultiHandFrame();
+    private MultiHandFrame pendingFrame = new MultiHandFrame();
+    private MultiHandFrame readFrame = new MultiHandFrame();
+    private boolean hasPending;
+
+    // Worker-only state, one slot per hand
+    private final GestureStabilizer[] stabilizers = new GestureStabilizer[MultiHandFrame.MAX_HANDS];
+    private final HandRoiTracker[] roiTrackers = new HandRoiTracker[MultiHandFrame.MAX_HANDS];
+    private volatile boolean requireStableHands = true;
+    private final HandGesture[] rawGestures = new HandGesture[MultiHandFrame.MAX_HANDS];
+    private final HandGesture[] stableGestures = new HandGesture[MultiHandFrame.MAX_HANDS];
+    private final HandGesture[] lastGestures = new HandGesture[MultiHandFrame.MAX_HANDS];
+    private int lastHandCount;
+    private boolean wasCapturing;
+    private long frameId;
+    private final float[] features = new float[LandmarkFeatures.SIZE];
+    private final GestureModel.Prediction prediction = new GestureModel.Prediction();
+
+    // Learned classifier and its labels mapped to gestures, replaced as a whole
+    private static final class LearnedGestures {
+        final GestureModel model;
+        final HandGesture[] gestures;
+        final float minConfidence;
+
+        LearnedGestures(GestureModel model, float minConfidence) {
+            this.model = model;
+            this.minConfidence = minConfidence;
+            gestures = new HandGesture[model.getLabelCount()];
+            for (int i = 0; i < gestures.length; i++) {
+                try {
+                    gestures[i] = HandGesture.valueOf(model.getLabel(i).toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    gestures[i] = HandGesture.UNDEFINED;
+                }
+            }
+        }
+    }
+
+    private volatile LearnedGestures learned;
+    private volatile GestureEventBus eventBus;
+
+    // Gesture still classified while a capture runs, and when a hand last showed it
+    private volatile HandGesture watchedGesture = HandGesture.UNDEFINED;
+    private volatile long watchedSeenNanos;
+
+    // Hand-off to the preallocated main-thread runnables
+    private final Object displayLock = new Object();
+    private final HandGesture[] pendingDisplay = new HandGesture[MultiHandFrame.MAX_HANDS];
+    private int pendingDisplayCount;
+    private long pendingDisplayNanos;
+    private final HandGesture[] mainDisplay = new HandGesture[MultiHandFrame.MAX_HANDS];
+    private volatile HandGesture triggeredGesture = HandGesture.UNDEFINED;
+
+    // Latest smoothed hand boxes, (left, top, right, bottom) per hand
+    private final Object boxLock = new Object();
+    private final float[] boxes = new float[MultiHandFrame.MAX_HANDS * 4];
+    private final float[] box = new float[4];
+    private int boxCount;
+
+    private final Runnable drainTask = this::drain;
+    private final Runnable gesturesChangedTask = this::dispatchGesturesChanged;
+    private final Runnable gestureTriggeredTask;
+
+    public GestureAnalyzer(Executor mainExecutor, TriggerPolicy triggerPolicy,
+                           BooleanSupplier captureInProgress, PipelineMetrics metrics, Listener listener) {
+        this.mainExecutor = mainExecutor;
+        this.metrics = metrics;
+        this.triggerPolicy = triggerPolicy;
+        this.captureInProgress = captureInProgress;
+        this.listener = listener;
+        for (int i = 0; i < MultiHandFrame.MAX_HANDS; i++) {
+            stabilizers[i] = new GestureStabilizer();
+            roiTrackers[i] = new HandRoiTracker();
+        }
+        Arrays.fill(lastGestures, HandGesture.UNDEFINED);
+        Arrays.fill(mainDisplay, HandGesture.UNDEFINED);
+        gestureTriggeredTask = () -> listener.onGestureTriggered(triggeredGesture);
+    }
+
+    /**
+     * Returns the frame the producer may fill. Only valid until the next {@link #publishFrame()}
+     * and must only be used from the producing thread.
+     */
+    public MultiHandFrame beginFrame() {
+        return writeFrame;
+    }
+
+    /** Hands the frame filled since {@link #beginFrame()} to the worker, replacing any stale one. */
+    public void publishFrame() {
+        boolean schedule;
+        synchronized (lock) {
+            MultiHandFrame published = writeFrame;
+            writeFrame = pendingFrame;
+            pendingFrame = published;
+            if (hasPending) {
+                metrics.frameDropped();
+            }
+            schedule = !hasPending;
+            hasPending = true;
+        }
+        if (schedule) {
+            try {
+                worker.execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                // Closed meanwhile on another thread, the frame is not needed anymore
+            }
+        }
+    }
+
+    /**
+     * Lets {@code model} override the rule-based gesture of a hand whenever its confidence reaches
+     * {@code minConfidence}. Labels that do not name a {@link HandGesture} count as UNDEFINED, so
+     * samples of non-gestures suppress false triggers. The model is used on the worker thread from
+     * now on and must not be used elsewhere; pass null to go back to the rules only.
+     */
+    public void setModel(GestureModel model, float minConfidence) {
+        learned = model == null ? null : new LearnedGestures(model, minConfidence);
+    }
+
+    /**
+     * Publishes stable gesture changes to {@code bus} from the worker thread, which must be the
+     * only publisher of the bus; null stops publishing.
+     */
+    public void setEventBus(GestureEventBus bus) {
+        eventBus = bus;
+    }
+
+    /**
+     * Whether hands that move faster than {@link HandRoiTracker#DEFAULT_STABLE_SPEED} or were
+     * just found count as UNDEFINED, so a waving hand does not start a capture. On by default.
+     */
+    public void setRequireStableHands(boolean requireStableHands) {
+        this.requireStableHands = requireStableHands;
+    }
+
+    /**
+     * Copies the smoothed box of every tracked hand of the latest analyzed frame into {@code out}
+     * as (left, top, right, bottom) in normalized image coordinates. Hands without a box yet are
+     * written as zeros.
+     *
+     * @return the number of hands written, {@code out} needs 4 floats per hand
+     */
+    public int copyHandBoxes(float[] out) {
+        synchronized (boxLock) {
+            int count = Math.min(boxCount, out.length / 4);
+            System.arraycopy(boxes, 0, out, 0, count * 4);
+            return count;
+        }
+    }
+
+    /**
+     * Keeps classifying frames while a capture runs, only to see whether any hand still shows
+     * {@code gesture}; nothing is stabilized, displayed or triggered. UNDEFINED stops watching.
+     * Counts as seen right now, so the watch starts out held.
+     */
+    public void watchHeld(HandGesture gesture) {
+        watchedSeenNanos = System.nanoTime();
+        watchedGesture = gesture;
+    }
+
+    /** {@link System#nanoTime()} of the last frame a hand showed the watched gesture in. */
+    public long getWatchedSeenNanos() {
+        return watchedSeenNanos;
+    }
+
+    public long getDroppedFrames() {
+        return metrics.getFramesDropped();
+    }
+
+    public void close() {
+        worker.shutdownNow();
+    }
+
+    private void drain() {
+        synchronized (lock) {
+            if (!hasPending) {
+                return;
+            }
+            MultiHandFrame latest = pendingFrame;
+            pendingFrame = readFrame;
+            readFrame = latest;
+            hasPending = false;
+        }
+        analyze(readFrame);
+    }
+
+    private void analyze(MultiHandFrame frame) {
+        frameId++;
+        boolean capturing = captureInProgress.getAsBoolean();
+        if (capturing) {
+            wasCapturing = true;
+            HandGesture watched = watchedGesture;
+            if (watched != HandGesture.UNDEFINED) {
+                int handCount = classify(frame);
+                for (int i = 0; i < handCount; i++) {
+                    if (rawGestures[i] == watched) {
+                        watchedSeenNanos = frame.getReceivedNanos();
+                        break;
+                    }
+                }
+            }
+            return;
+        }
+        // Once a capture cycle is over the held gesture has to become stable again before it can
+        // trigger, frames from before the capture must not count
+        boolean rearmed = wasCapturing;
+        wasCapturing = false;
+        if (rearmed) {
+            for (GestureStabilizer stabilizer : stabilizers) {
+                stabilizer.reset();
+            }
+        }
+
+        int handCount = classify(frame);
+        trackHands(frame, handCount);
+        long classifiedNanos = metrics.record(PipelineMetrics.Stage.CLASSIFIED, frame.getReceivedNanos());
+        metrics.reach(PipelineMetrics.Milestone.FIRST_CLASSIFIED);
+        boolean changed = handCount != lastHandCount;
+        GestureEventBus bus = eventBus;
+        // Slots without a hand vote UNDEFINED so a hand that left the frame decays like a flicker
+        for (int i = 0; i < MultiHandFrame.MAX_HANDS; i++) {
+            HandGesture stable = stabilizers[i].push(i < handCount ? rawGestures[i] : HandGesture.UNDEFINED);
+            stableGestures[i] = stable;
+            if (stable != lastGestures[i]) {
+                if (i < handCount) {
+                    changed = true;
+                }
+                if (bus != null) {
+                    bus.publish(stable, i, stabilizers[i].getConfidence(), frame.getTimestampUs(), frameId);
+                }
+            }
+            lastGestures[i] = stable;
+        }
+        lastHandCount = handCount;
+
+        if (changed || rearmed) {
+            synchronized (displayLock) {
+                System.arraycopy(stableGestures, 0, pendingDisplay, 0, handCount);
+                pendingDisplayCount = handCount;
+                pendingDisplayNanos = classifiedNanos;
+            }
+            mainExecutor.execute(gesturesChangedTask);
+            HandGesture trigger = triggerPolicy.match(stableGestures, handCount);
+            if (trigger != HandGesture.UNDEFINED) {
+                triggeredGesture = trigger;
+                mainExecutor.execute(gestureTriggeredTask);
+            }
+        }
+    }
+
+    // Writes the unstabilized gesture of every hand into rawGestures, returns the hand count
+    private int classify(MultiHandFrame frame) {
+        int handCount = GestureDetect.handGestureCalculator(frame, rawGestures);
+        LearnedGestures learnedGestures = learned;
+        if (learnedGestures != null) {
+            for (int i = 0; i < handCount; i++) {
+                if (LandmarkFeatures.extract(frame.hand(i), features)) {
+                    learnedGestures.model.classify(features, prediction);
+                    if (prediction.label >= 0 && prediction.confidence >= learnedGestures.minConfidence) {
+                        rawGestures[i] = learnedGestures.gestures[prediction.label];
+                    }
+                }
+            }
+        }
+        return handCount;
+    }
+
+    private void trackHands(MultiHandFrame frame, int handCount) {
+        boolean gate = requireStableHands;
+        synchronized (boxLock) {
+            for (int i = 0; i < MultiHandFrame.MAX_HANDS; i++) {
+                HandRoiTracker tracker = roiTrackers[i];
+                if (i >= handCount) {
+                    tracker.reset();
+                    continue;
+                }
+                tracker.update(frame.hand(i), frame.getTimestampUs());
+                if (!tracker.getBox(box)) {
+                    box[0] = box[1] = box[2] = box[3] = 0f;
+                }
+                System.arraycopy(box, 0, boxes, i * 4, 4);
+                if (gate && !tracker.isStable()) {
+                    rawGestures[i] = HandGesture.UNDEFINED;
+                }
+            }
+            boxCount = handCount;
+        }
+    }
+
+    // Runs on the main executor
+    private void dispatchGesturesChanged() {
+        int count;
+        long classifiedNanos;
+        synchronized (displayLock) {
+            count = pendingDisplayCount;
+            classifiedNanos = pendingDisplayNanos;
+            System.arraycopy(pendingDisplay, 0, mainDisplay, 0, count);
+        }
+        listener.onGesturesChanged(mainDisplay, count);
+        metrics.record(PipelineMetrics.Stage.UI_APPLIED, classifiedNanos);
+    }
+}
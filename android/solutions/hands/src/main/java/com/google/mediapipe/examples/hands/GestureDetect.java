@@ -1,12 +1,6 @@
 package com.google.mediapipe.examples.hands;
 
-
-import android.util.Log;
-
-import com.google.mediapipe.formats.proto.LandmarkProto;
-
 import java.util.EnumMap;
-import java.util.List;
 import java.util.Map;
 
 public class GestureDetect {
@@ -22,104 +16,97 @@ public class GestureDetect {
             HandGesture.FIST, 0x270A
     ));
 
-    public static HandGesture handGestureCalculator(List<LandmarkProto.NormalizedLandmarkList> multiHandLandmarks, HandGesture lastGesture) {
+    // Replaced by the definitions from assets/gestures.txt once they are loaded
+    private static volatile GestureRules rules = GestureRules.defaults();
 
-        boolean thumbIsOpen = false;
-        boolean firstFingerIsOpen = false;
-        boolean secondFingerIsOpen = false;
-        boolean thirdFingerIsOpen = false;
-        boolean fourthFingerIsOpen = false;
+    public static void setRules(GestureRules gestureRules) {
+        rules = gestureRules;
+    }
 
-        //FIXME: something is wrong with the calculation I think
-        // Original implementation from github gist, has problems depending on which side of the hand face the camera
-        for (LandmarkProto.NormalizedLandmarkList landmarks : multiHandLandmarks) {
+    public static GestureRules getRules() {
+        return rules;
+    }
 
-            List<LandmarkProto.NormalizedLandmark> landmarkList = landmarks.getLandmarkList();
-            float pseudoFixKeyPoint = landmarkList.get(2).getX();
-            if (pseudoFixKeyPoint < landmarkList.get(9).getX()) {
-                if (landmarkList.get(3).getX() < pseudoFixKeyPoint && landmarkList.get(4).getX() < pseudoFixKeyPoint) {
-                    thumbIsOpen = true;
-                }
-            }
-            if (pseudoFixKeyPoint > landmarkList.get(9).getX()) {
-                if (landmarkList.get(3).getX() > pseudoFixKeyPoint && landmarkList.get(4).getX() > pseudoFixKeyPoint) {
-                    thumbIsOpen = false;
-                }
-            }
-            pseudoFixKeyPoint = landmarkList.get(6).getY();
-            if (landmarkList.get(7).getY() < pseudoFixKeyPoint && landmarkList.get(8).getY() < landmarkList.get(7).getY()) {
-                firstFingerIsOpen = true;
-            }
-            pseudoFixKeyPoint = landmarkList.get(10).getY();
-            if (landmarkList.get(11).getY() < pseudoFixKeyPoint && landmarkList.get(12).getY() < landmarkList.get(11).getY()) {
-                secondFingerIsOpen = true;
-            }
-            pseudoFixKeyPoint = landmarkList.get(14).getY();
-            if (landmarkList.get(15).getY() < pseudoFixKeyPoint && landmarkList.get(16).getY() < landmarkList.get(15).getY()) {
-                thirdFingerIsOpen = true;
-            }
-            pseudoFixKeyPoint = landmarkList.get(18).getY();
-            if (landmarkList.get(19).getY() < pseudoFixKeyPoint && landmarkList.get(20).getY() < landmarkList.get(19).getY()) {
-                fourthFingerIsOpen = true;
-            }
+    /**
+     * Classifies a hand from its world landmarks by joint angles, independent of the hand's
+     * orientation. Allocates nothing.
+     */
+    public static HandGesture worldHandGestureCalculator(HandFrame worldHand) {
+        if (!worldHand.isPresent()) {
+            return HandGesture.UNDEFINED;
+        }
+        return rules.classify(FingerState.extract(worldHand, null), worldHand, true);
+    }
 
-            // TODO: writing this in a nested fashion might be better, right now reaching "On the Phone" is difficult
-            //  The order probably should be 1st -> 2nd -> 3rd -> 4th -> thumb (last because it is the most complex here)
-            /* Hand gesture recognition
-             * First = Index finger
-             *  Second = Middle finger
-             *  Third = Ring finger
-             *  Fourth = Pinky
-             *
-             *  All gestures are represented by standard emojis, their strings correspond to the emoji names
-             * */
-            if (firstFingerIsOpen && secondFingerIsOpen && !thirdFingerIsOpen && !fourthFingerIsOpen && !thumbIsOpen) {
-                return HandGesture.VICTORY;
-            } else if (firstFingerIsOpen && !secondFingerIsOpen && !thirdFingerIsOpen && fourthFingerIsOpen && !thumbIsOpen) {
-                return HandGesture.HORNS;
-            } else if (thumbIsOpen && firstFingerIsOpen && !secondFingerIsOpen && !thirdFingerIsOpen && fourthFingerIsOpen) {
-                return HandGesture.LOVE;
-            } else if (!fourthFingerIsOpen && firstFingerIsOpen && !secondFingerIsOpen && !thirdFingerIsOpen && !thumbIsOpen) {
-                return HandGesture.INDEX;
-            } else if (!firstFingerIsOpen && secondFingerIsOpen && thirdFingerIsOpen && fourthFingerIsOpen && isThumbNearFirstFinger(landmarkList.get(4), landmarkList.get(8))) {
-                return HandGesture.OK;
-            } else if (!firstFingerIsOpen && secondFingerIsOpen && !thirdFingerIsOpen && !fourthFingerIsOpen) { // thumb state doesn't matter
-                return HandGesture.MIDDLE;
-            } else if (!thumbIsOpen && !firstFingerIsOpen && !secondFingerIsOpen && !thirdFingerIsOpen && !fourthFingerIsOpen) {
-                return HandGesture.FIST;
-            } else {
-                return HandGesture.UNDEFINED;
+    /**
+     * Classifies the hand held in {@code frame} from its normalized image coordinates. Only used
+     * when no world landmarks are available. Works on primitives only and allocates nothing.
+     */
+    public static HandGesture handGestureCalculator(HandFrame frame) {
+        if (!frame.isPresent()) {
+            return HandGesture.UNDEFINED;
+        }
+
+        int mask = 0;
+
+        //FIXME: something is wrong with the calculation I think
+        // Original implementation from github gist, has problems depending on which side of the hand face the camera.
+        // worldHandGestureCalculator does not have this problem.
+        float pseudoFixKeyPoint = frame.x(2);
+        if (pseudoFixKeyPoint < frame.x(9)) {
+            if (frame.x(3) < pseudoFixKeyPoint && frame.x(4) < pseudoFixKeyPoint) {
+                mask |= FingerState.THUMB;
             }
         }
-        return HandGesture.UNDEFINED;
+        pseudoFixKeyPoint = frame.y(6);
+        if (frame.y(7) < pseudoFixKeyPoint && frame.y(8) < frame.y(7)) {
+            mask |= FingerState.INDEX;
+        }
+        pseudoFixKeyPoint = frame.y(10);
+        if (frame.y(11) < pseudoFixKeyPoint && frame.y(12) < frame.y(11)) {
+            mask |= FingerState.MIDDLE;
+        }
+        pseudoFixKeyPoint = frame.y(14);
+        if (frame.y(15) < pseudoFixKeyPoint && frame.y(16) < frame.y(15)) {
+            mask |= FingerState.RING;
+        }
+        pseudoFixKeyPoint = frame.y(18);
+        if (frame.y(19) < pseudoFixKeyPoint && frame.y(20) < frame.y(19)) {
+            mask |= FingerState.PINKY;
+        }
+
+        return rules.classify(mask, frame, false);
     }
 
-    private static boolean isThumbNearFirstFinger(LandmarkProto.NormalizedLandmark point1, LandmarkProto.NormalizedLandmark point2) {
-        double distance = getEuclideanDistanceAB(point1.getX(), point1.getY(), point2.getX(), point2.getY());
-        return distance < 0.1;
+    /**
+     * Classifies every hand in {@code frame} into {@code out}, indexed like the hands of the frame.
+     * Uses the world landmarks where present and falls back to the image coordinates otherwise.
+     * Hands are independent, so this costs one single-hand classification per hand and allocates
+     * nothing.
+     *
+     * @return the number of entries written
+     */
+    public static int handGestureCalculator(MultiHandFrame frame, HandGesture[] out) {
+        int count = Math.min(frame.handCount(), out.length);
+        for (int i = 0; i < count; i++) {
+            HandFrame worldHand = frame.worldHand(i);
+            out[i] = worldHand.isPresent()
+                    ? worldHandGestureCalculator(worldHand)
+                    : handGestureCalculator(frame.hand(i));
+        }
+        return count;
     }
 
-    private static double getEuclideanDistanceAB(double a_x, double a_y, double b_x, double b_y) {
-        double dist = Math.pow(a_x - b_x, 2) + Math.pow(a_y - b_y, 2);
-        return Math.sqrt(dist);
+    // Thumb tip (4) against index finger tip (8)
+    static boolean isThumbNearFirstFinger(HandFrame frame) {
+        double distance = getEuclideanDistanceAB(frame.x(4), frame.y(4), frame.x(8), frame.y(8));
+        return distance < 0.1;
     }
 
-    private static String getMultiHandLandmarksDebugString(List<LandmarkProto.NormalizedLandmarkList> multiHandLandmarks) {
-        if (multiHandLandmarks.isEmpty()) {
-            return "No hand landmarks";
-        }
-        StringBuilder multiHandLandmarksStr = new StringBuilder("Number of hands detected: " + multiHandLandmarks.size() + "\n");
-        int handIndex = 0;
-        for (LandmarkProto.NormalizedLandmarkList landmarks : multiHandLandmarks) {
-            multiHandLandmarksStr.append("\t#Hand landmarks for hand[").append(handIndex).append("]: ").append(landmarks.getLandmarkCount()).append("\n");
-            int landmarkIndex = 0;
-            for (LandmarkProto.NormalizedLandmark landmark : landmarks.getLandmarkList()) {
-                multiHandLandmarksStr.append("\t\tLandmark [").append(landmarkIndex).append("]: (").append(landmark.getX()).append(", ").append(landmark.getY()).append(", ").append(landmark.getZ()).append(")\n");
-                ++landmarkIndex;
-            }
-            ++handIndex;
-        }
-        return multiHandLandmarksStr.toString();
+    static double getEuclideanDistanceAB(double a_x, double a_y, double b_x, double b_y) {
+        double dx = a_x - b_x;
+        double dy = a_y - b_y;
+        return Math.sqrt(dx * dx + dy * dy);
     }
 
     // Unicode emoji to String
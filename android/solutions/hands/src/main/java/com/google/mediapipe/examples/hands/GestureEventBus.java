@@ -0,0 +1,329 @@
+package com.google.mediapipe.examples.hands;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Publish/subscribe stream of gesture changes for consumers outside the capture flow, like a remote
+ * shutter or analytics.
+ *
+ * <p>One producer, the {@link GestureAnalyzer} worker, writes events into a ring of preallocated
+ * slots. Every subscriber reads the ring at its own cursor. The producer never waits for anyone:
+ * it overwrites the oldest slot. A subscriber that fell more than a ring behind loses events
+ * according to its {@link OverflowPolicy}. A slow consumer therefore costs only itself, never
+ * the frame path. Each slot is guarded by its sequence number, seqlock style. A reader keeps an
+ * event only if the slot held the same sequence before and after it copied the fields, so torn
+ * events are never delivered.
+ *
+ * <p>Publishing and polling are lock-free and allocation-free. Subscribing and unsubscribing
+ * take a lock and copy the subscriber array.
+ */
+public class GestureEventBus {
+
+    /** One gesture change, a reusable holder filled by {@link Subscription#poll}. */
+    public static final class Event {
+        HandGesture gesture = HandGesture.UNDEFINED;
+        int hand;
+        float confidence;
+        long timestampUs;
+        long frameId;
+        long sequence;
+
+        // Stable gesture of the hand from this frame on, UNDEFINED once the hand is gone
+        public HandGesture getGesture() {
+            return gesture;
+        }
+
+        // Slot of the hand in the frame, below MultiHandFrame.MAX_HANDS
+        public int getHand() {
+            return hand;
+        }
+
+        // Share of the stabilizer window that voted for the gesture, between 0 and 1
+        public float getConfidence() {
+            return confidence;
+        }
+
+        // Camera timestamp of the frame the change was seen in
+        public long getTimestampUs() {
+            return timestampUs;
+        }
+
+        // Number of the analyzed frame, increasing by one per frame
+        public long getFrameId() {
+            return frameId;
+        }
+
+        // Position in the stream, gaps show events a subscriber lost
+        public long getSequence() {
+            return sequence;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "#%d %s hand %d %.2f frame %d at %d us",
+                    sequence, gesture, hand, confidence, frameId, timestampUs);
+        }
+    }
+
+    /** What a subscriber gets after falling more than a ring behind. */
+    public enum OverflowPolicy {
+        // Every event still in the ring, in order; the older ones are lost
+        DROP_OLDEST,
+        // Only the newest event of each hand in the ring, for consumers that want the current state
+        COALESCE
+    }
+
+    public interface Listener {
+        // Called on the subscription's executor, the event is only valid during the call
+        void onGestureEvent(Event event);
+    }
+
+    // Longs per slot: sequence, timestamp, frame id, packed gesture, hand and confidence
+    private static final int FIELDS = 4;
+    private static final long WRITING = -1;
+    private static final HandGesture[] GESTURES = HandGesture.values();
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray slots;
+    // Events published so far, the sequence of the next one
+    private final AtomicLong published = new AtomicLong();
+    private volatile Subscription[] subscriptions = new Subscription[0];
+
+    /** @param capacity events kept for slow subscribers, rounded up to a power of two */
+    public GestureEventBus(int capacity) {
+        if (capacity < 1 || capacity > 1 << 20) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^20, got " + capacity);
+        }
+        int rounded = 1;
+        while (rounded < capacity) {
+            rounded <<= 1;
+        }
+        this.capacity = rounded;
+        this.mask = rounded - 1;
+        slots = new AtomicLongArray(rounded * FIELDS);
+        for (int slot = 0; slot < rounded; slot++) {
+            slots.set(slot * FIELDS, WRITING);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    /**
+     * Appends an event and wakes the subscribers that have an executor. Only one thread may
+     * publish.
+     */
+    public void publish(HandGesture gesture, int hand, float confidence, long timestampUs, long frameId) {
+        if (hand < 0 || hand >= MultiHandFrame.MAX_HANDS) {
+            throw new IllegalArgumentException("Hand " + hand + " out of range");
+        }
+        long sequence = published.get();
+        int base = (int) (sequence & mask) * FIELDS;
+        // Readers that see WRITING, or another sequence, discard what they copied
+        slots.set(base, WRITING);
+        slots.set(base + 1, timestampUs);
+        slots.set(base + 2, frameId);
+        slots.set(base + 3, (long) gesture.ordinal() << 40 | (long) hand << 32
+                | (Float.floatToRawIntBits(confidence) & 0xFFFFFFFFL));
+        slots.set(base, sequence);
+        published.lazySet(sequence + 1);
+        for (Subscription subscription : subscriptions) {
+            subscription.wake();
+        }
+    }
+
+    /** A subscriber that polls on its own, starting with the next published event. */
+    public Subscription subscribe(OverflowPolicy policy) {
+        return add(new Subscription(policy, null, null));
+    }
+
+    /**
+     * A subscriber whose {@code listener} is run on {@code executor} whenever events are waiting.
+     * At most one drain is queued at a time, so a busy executor sees one task however many events
+     * arrive.
+     */
+    public Subscription subscribe(OverflowPolicy policy, Executor executor, Listener listener) {
+        return add(new Subscription(policy, executor, listener));
+    }
+
+    private synchronized Subscription add(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        Subscription[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = subscription;
+        subscriptions = next;
+        return subscription;
+    }
+
+    private synchronized void remove(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] next = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                subscriptions = next;
+                return;
+            }
+        }
+    }
+
+    // Copies event sequence into out; false if the slot no longer, or not yet, holds it
+    private boolean read(long sequence, Event out) {
+        int base = (int) (sequence & mask) * FIELDS;
+        if (slots.get(base) != sequence) {
+            return false;
+        }
+        long timestampUs = slots.get(base + 1);
+        long frameId = slots.get(base + 2);
+        long packed = slots.get(base + 3);
+        if (slots.get(base) != sequence) {
+            return false;
+        }
+        out.sequence = sequence;
+        out.timestampUs = timestampUs;
+        out.frameId = frameId;
+        out.gesture = GESTURES[(int) (packed >>> 40)];
+        out.hand = (int) (packed >>> 32) & 0xFF;
+        out.confidence = Float.intBitsToFloat((int) packed);
+        return true;
+    }
+
+    /**
+     * One subscriber's cursor into the ring. {@link #poll} must only be called from one thread at
+     * a time, which for executor subscriptions is the executor's.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final OverflowPolicy policy;
+        private final Executor executor;
+        private final Listener listener;
+        private final AtomicBoolean drainQueued = new AtomicBoolean();
+        private final Runnable drainTask = this::drain;
+        private final Event drainEvent = new Event();
+        private volatile boolean closed;
+
+        // Consumer thread only
+        private long cursor;
+        // Coalesced events still to deliver, ascending sequences
+        private final long[] coalesced = new long[MultiHandFrame.MAX_HANDS];
+        private int coalescedNext;
+        private int coalescedCount;
+        private final Event scratch = new Event();
+
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong lost = new AtomicLong();
+
+        private Subscription(OverflowPolicy policy, Executor executor, Listener listener) {
+            this.policy = policy;
+            this.executor = executor;
+            this.listener = listener;
+            cursor = published.get();
+        }
+
+        /** Copies the next event into {@code out}; false if there is none. Never blocks. */
+        public boolean poll(Event out) {
+            while (true) {
+                if (coalescedNext < coalescedCount) {
+                    if (read(coalesced[coalescedNext++], out)) {
+                        delivered.incrementAndGet();
+                        return true;
+                    }
+                    lost.incrementAndGet();
+                    continue;
+                }
+                long head = published.get();
+                if (cursor >= head) {
+                    return false;
+                }
+                if (head - cursor > capacity) {
+                    overflow(head);
+                    continue;
+                }
+                boolean read = read(cursor, out);
+                cursor++;
+                if (read) {
+                    delivered.incrementAndGet();
+                    return true;
+                }
+                // Being overwritten since head was read, waiting for it would make polling block
+                lost.incrementAndGet();
+            }
+        }
+
+        /** Events waiting for this subscriber, including those it will lose. */
+        public long getBacklog() {
+            return Math.max(0, published.get() - cursor) + coalescedCount - coalescedNext;
+        }
+
+        public long getDelivered() {
+            return delivered.get();
+        }
+
+        /** Events overwritten before they were read or folded into a newer one. */
+        public long getLost() {
+            return lost.get();
+        }
+
+        public OverflowPolicy getPolicy() {
+            return policy;
+        }
+
+        /** Stops delivery; events already queued for the executor are dropped. */
+        @Override
+        public void close() {
+            closed = true;
+            remove(this);
+        }
+
+        private void overflow(long head) {
+            long oldest = head - capacity;
+            if (policy == OverflowPolicy.DROP_OLDEST) {
+                lost.addAndGet(oldest - cursor);
+                cursor = oldest;
+                return;
+            }
+            // Newest event per hand, scanning back from the head; the rest is lost
+            long[] newest = coalesced;
+            Arrays.fill(newest, -1);
+            for (long sequence = head - 1; sequence >= oldest; sequence--) {
+                if (read(sequence, scratch) && newest[scratch.hand] < 0) {
+                    newest[scratch.hand] = sequence;
+                }
+            }
+            int count = 0;
+            for (long sequence : newest) {
+                if (sequence >= 0) {
+                    newest[count++] = sequence;
+                }
+            }
+            Arrays.sort(newest, 0, count);
+            lost.addAndGet(head - cursor - count);
+            coalescedNext = 0;
+            coalescedCount = count;
+            cursor = head;
+        }
+
+        private void wake() {
+            if (executor != null && !closed && drainQueued.compareAndSet(false, true)) {
+                executor.execute(drainTask);
+            }
+        }
+
+        private void drain() {
+            drainQueued.set(false);
+            while (!closed && poll(drainEvent)) {
+                listener.onGestureEvent(drainEvent);
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams {@link GestureEventBus} events to controller apps over a loopback TCP socket.
+ *
+ * <p>One selector thread serves every client with non-blocking channels. It is the bus
+ * subscriber: a publish wakes the selector. The thread then encodes every waiting event into each
+ * client's buffer and flushes each client with one write per wakeup, so a burst of events costs
+ * one syscall per client. A client that does not read fast enough has events dropped once its
+ * buffer is full. The client sees this as a gap in the sequence numbers. Neither the selector
+ * nor the analyzer ever waits on a client.
+ *
+ * <p>Every frame is a big-endian 4 byte payload length followed by the payload, whose first byte
+ * is the type. A client first gets a {@link #TYPE_HELLO} with the protocol version and the gesture
+ * names by ordinal, then a {@link #TYPE_EVENT} per event:
+ *
+ * <pre>
+ * byte type, byte gesture ordinal, byte hand, byte 0, float confidence,
+ * long sequence, long frame id, long camera timestamp us, long server System.nanoTime()
+ * </pre>
+ *
+ * The server time is only comparable with clients on the same host.
+ */
+public class GestureEventServer implements Closeable {
+
+    public static final int PROTOCOL_VERSION = 1;
+    public static final byte TYPE_HELLO = 0;
+    public static final byte TYPE_EVENT = 1;
+    public static final int EVENT_PAYLOAD_BYTES = 40;
+    public static final int LENGTH_BYTES = 4;
+
+    private static final int CLIENT_BUFFER_BYTES = 16 * 1024;
+    private static final long CLOSE_TIMEOUT_MS = 500;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final int maxClients;
+    private final int port;
+    private final GestureEventBus.Subscription subscription;
+    // Drain handed over by the bus, run on the selector thread
+    private final AtomicReference<Runnable> pendingDrain = new AtomicReference<>();
+    private final ByteBuffer hello;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile Exception failure;
+
+    // Selector thread only
+    private final List<Client> clients = new ArrayList<>();
+    private final ByteBuffer discard = ByteBuffer.allocate(256);
+
+    private volatile int clientCount;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private static final class Client {
+        final SocketChannel channel;
+        final SelectionKey key;
+        // Bytes not yet written, in put mode
+        final ByteBuffer out = ByteBuffer.allocateDirect(CLIENT_BUFFER_BYTES);
+
+        Client(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Binds to {@code port} on the loopback interface, 0 for any free port, and starts serving.
+     * Only apps on the device, or forwarded with {@code adb forward}, can connect.
+     */
+    public GestureEventServer(GestureEventBus bus, int port, int maxClients) throws IOException {
+        this.maxClients = maxClients;
+        hello = encodeHello();
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            this.port = server.socket().getLocalPort();
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        Executor wakeSelector = drain -> {
+            pendingDrain.set(drain);
+            selector.wakeup();
+        };
+        subscription = bus.subscribe(GestureEventBus.OverflowPolicy.DROP_OLDEST, wakeSelector, this::encode);
+        thread = new Thread(this::serve, "GestureEventServer");
+        thread.start();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    /** Why the selector thread stopped on its own, or null while it runs or after {@link #close()}. */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    public String describe() {
+        return String.format(Locale.ROOT, "gesture server :%d, clients %d, accepted %d, events sent %d, dropped %d, lost %d%s",
+                getPort(), clientCount, accepted.get(), sent.get(), dropped.get(), subscription.getLost(),
+                failure == null ? "" : ", stopped: " + failure);
+    }
+
+    /**
+     * Disconnects every client and frees the port. Waits for the selector thread to close the
+     * sockets, which takes milliseconds, so a new server can bind the port right after.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        subscription.close();
+        selector.wakeup();
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        try {
+            // A channel registered with a selector only lets go of its port once the selector does
+            thread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serve() {
+        try {
+            while (!closed) {
+                selector.select();
+                Runnable drain = pendingDrain.getAndSet(null);
+                if (drain != null) {
+                    drain.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Client client = (Client) key.attachment();
+                        if (key.isReadable()) {
+                            read(client);
+                        }
+                    }
+                }
+                // Writable keys need no handling of their own, every client with bytes left is flushed
+                for (int i = clients.size() - 1; i >= 0; i--) {
+                    flush(clients.get(i));
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) {
+                failure = e;
+                subscription.close();
+            }
+        } finally {
+            for (int i = clients.size() - 1; i >= 0; i--) {
+                disconnect(clients.get(i));
+            }
+            closeQuietly(server);
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            if (clients.size() >= maxClients) {
+                closeQuietly(channel);
+                continue;
+            }
+            Client client;
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                client = new Client(channel, channel.register(selector, SelectionKey.OP_READ));
+            } catch (IOException e) {
+                // Only this client is lost
+                closeQuietly(channel);
+                continue;
+            }
+            client.key.attach(client);
+            client.out.put(hello.duplicate());
+            clients.add(client);
+            clientCount = clients.size();
+            accepted.incrementAndGet();
+        }
+    }
+
+    // Clients send nothing, reading only notices when they hang up
+    private void read(Client client) {
+        try {
+            int count;
+            do {
+                discard.clear();
+                count = client.channel.read(discard);
+            } while (count > 0);
+            if (count < 0) {
+                disconnect(client);
+            }
+        } catch (IOException e) {
+            disconnect(client);
+        }
+    }
+
+    private void flush(Client client) {
+        ByteBuffer out = client.out;
+        if (out.position() == 0 || !client.key.isValid()) {
+            return;
+        }
+        out.flip();
+        try {
+            client.channel.write(out);
+        } catch (IOException e) {
+            disconnect(client);
+            return;
+        }
+        out.compact();
+        // Wait for room in the socket only while something is left
+        client.key.interestOps(out.position() > 0
+                ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                : SelectionKey.OP_READ);
+    }
+
+    private void disconnect(Client client) {
+        client.key.cancel();
+        closeQuietly(client.channel);
+        clients.remove(client);
+        clientCount = clients.size();
+    }
+
+    // Runs on the selector thread inside the subscription's drain
+    private void encode(GestureEventBus.Event event) {
+        long nowNanos = System.nanoTime();
+        for (int i = 0; i < clients.size(); i++) {
+            ByteBuffer out = clients.get(i).out;
+            if (out.remaining() < LENGTH_BYTES + EVENT_PAYLOAD_BYTES) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            out.putInt(EVENT_PAYLOAD_BYTES)
+                    .put(TYPE_EVENT)
+                    .put((byte) event.getGesture().ordinal())
+                    .put((byte) event.getHand())
+                    .put((byte) 0)
+                    .putFloat(event.getConfidence())
+                    .putLong(event.getSequence())
+                    .putLong(event.getFrameId())
+                    .putLong(event.getTimestampUs())
+                    .putLong(nowNanos);
+            sent.incrementAndGet();
+        }
+    }
+
+    // byte type, byte version, short count, then per gesture a short length and its UTF-8 name
+    private static ByteBuffer encodeHello() {
+        HandGesture[] gestures = HandGesture.values();
+        byte[][] names = new byte[gestures.length][];
+        int payload = 4;
+        for (int i = 0; i < gestures.length; i++) {
+            names[i] = gestures[i].name().getBytes(StandardCharsets.UTF_8);
+            payload += 2 + names[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH_BYTES + payload);
+        buffer.putInt(payload).put(TYPE_HELLO).put((byte) PROTOCOL_VERSION).putShort((short) gestures.length);
+        for (byte[] name : names) {
+            buffer.putShort((short) name.length).put(name);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Nothing left to do with it
+        }
+    }
+}
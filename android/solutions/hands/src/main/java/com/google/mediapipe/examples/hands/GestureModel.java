@@ -0,0 +1,161 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A learned classifier over {@link LandmarkFeatures} vectors, either {@link KnnGestureModel} or
+ * {@link LinearGestureModel}. Labels are free-form strings; the app maps the ones that name a
+ * {@link HandGesture} onto the rule-based gestures.
+ *
+ * <p>File format, little-endian:
+ *
+ * <pre>
+ * header:  int magic 'GCGM' | short version | byte type | byte reserved | int feature size
+ *          int label count | per label: short byte length, UTF-8 bytes
+ * body:    kNN:    int k | float max distance | int samples | int labels[samples] | float matrix[samples x features]
+ *          linear: float weights[labels x features] | float bias[labels]
+ * </pre>
+ *
+ * <p>Models keep scratch space for classification and are not thread-safe, every thread needs its
+ * own instance.
+ */
+public abstract class GestureModel {
+
+    static final int MAGIC = 0x4D474347; // "GCGM" read as little-endian bytes
+    static final short VERSION = 1;
+    static final byte TYPE_KNN = 1;
+    static final byte TYPE_LINEAR = 2;
+
+    /** Output of {@link #classify}, reused from call to call. */
+    public static final class Prediction {
+        // Index into the model's labels, -1 if nothing matched
+        public int label = -1;
+        // Between 0 and 1
+        public float confidence;
+
+        void set(int label, float confidence) {
+            this.label = label;
+            this.confidence = confidence;
+        }
+    }
+
+    final String[] labels;
+    final int featureSize;
+
+    GestureModel(String[] labels, int featureSize) {
+        // load() could not read a model without labels back, nor classify with one
+        if (labels.length < 1) {
+            throw new IllegalArgumentException("A gesture model needs at least one label");
+        }
+        this.labels = labels;
+        this.featureSize = featureSize;
+    }
+
+    /** Classifies one feature vector of {@link #getFeatureSize()} floats. Allocates nothing. */
+    public abstract void classify(float[] features, Prediction out);
+
+    abstract byte type();
+
+    abstract int bodyBytes();
+
+    abstract void writeBody(ByteBuffer out);
+
+    public int getFeatureSize() {
+        return featureSize;
+    }
+
+    public int getLabelCount() {
+        return labels.length;
+    }
+
+    public String getLabel(int index) {
+        return labels[index];
+    }
+
+    public void write(File output) throws IOException {
+        byte[][] encoded = new byte[labels.length][];
+        int headerBytes = 4 + 2 + 1 + 1 + 4 + 4;
+        for (int i = 0; i < labels.length; i++) {
+            encoded[i] = labels[i].getBytes(StandardCharsets.UTF_8);
+            headerBytes += 2 + encoded[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(headerBytes + bodyBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putShort(VERSION).put(type()).put((byte) 0)
+                .putInt(featureSize).putInt(labels.length);
+        for (byte[] label : encoded) {
+            buffer.putShort((short) label.length).put(label);
+        }
+        writeBody(buffer);
+        buffer.flip();
+        try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /** Loads a model through a memory-mapped buffer; the matrices are bulk-copied out of it. */
+    public static GestureModel load(File input) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(input, "r")) {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+                    throw new IOException("Not a gesture model: " + input);
+                }
+                short version = buffer.getShort();
+                byte type = buffer.get();
+                buffer.get();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported gesture model version " + version + ": " + input);
+                }
+                int featureSize = buffer.getInt();
+                int labelCount = buffer.getInt();
+                if (featureSize != LandmarkFeatures.SIZE || labelCount < 1 || labelCount > Short.MAX_VALUE) {
+                    throw new IOException("Gesture model has " + featureSize + " features and "
+                            + labelCount + " labels: " + input);
+                }
+                String[] labels = new String[labelCount];
+                for (int i = 0; i < labelCount; i++) {
+                    byte[] label = new byte[buffer.getShort() & 0xFFFF];
+                    buffer.get(label);
+                    labels[i] = new String(label, StandardCharsets.UTF_8);
+                }
+                switch (type) {
+                    case TYPE_KNN:
+                        return KnnGestureModel.read(labels, featureSize, buffer);
+                    case TYPE_LINEAR:
+                        return LinearGestureModel.read(labels, featureSize, buffer);
+                    default:
+                        throw new IOException("Unknown gesture model type " + type + ": " + input);
+                }
+            } catch (RuntimeException e) {
+                // BufferUnderflowException and friends from a truncated file
+                throw new IOException("Corrupt gesture model: " + input, e);
+            }
+        }
+    }
+
+    static float[] getFloats(ByteBuffer buffer, int count) {
+        float[] values = new float[count];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    static void putFloats(ByteBuffer buffer, float[] values) {
+        buffer.asFloatBuffer().put(values);
+        buffer.position(buffer.position() + values.length * 4);
+    }
+}
@@ -0,0 +1,263 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Gesture definitions compiled into a lookup table over the {@link FingerState} mask.
+ *
+ * <p>Definitions are plain text, one rule per line, first matching rule wins:
+ *
+ * <pre>
+ * # gesture  thumb index middle ring pinky  predicates...
+ * OK         *     0     1      1    1      near(4,8)
+ * </pre>
+ *
+ * <p>Finger columns are {@code 1} (extended), {@code 0} (curled) or {@code *} (don't care).
+ * Predicates may contain spaces, as in {@code near(4, 8)}.
+ * {@code near(a,b)} and {@code far(a,b)} compare the distance between two landmarks against
+ * {@link #WORLD_NEAR_DISTANCE} or {@link #IMAGE_NEAR_DISTANCE}, depending on the landmarks passed
+ * to {@link #classify}. Gesture names must be {@link HandGesture} constants.
+ *
+ * <p>Compiling resolves every one of the 32 masks up front. A mask whose first matching rule has no
+ * predicates maps straight to its gesture, so the common case is one array read; only masks with
+ * predicate rules keep the short list of candidate rules to check in order.
+ */
+public final class GestureRules {
+
+    // Thresholds of near() and far(), in meters for world landmarks and in normalized image units
+    public static final float WORLD_NEAR_DISTANCE = 0.03f;
+    public static final float IMAGE_NEAR_DISTANCE = 0.1f;
+
+    /** Built-in definitions, the same rules as assets/gestures.txt ships with. */
+    public static final String DEFAULT_DEFINITIONS =
+            "VICTORY 0 1 1 0 0\n"
+                    + "HORNS   0 1 0 0 1\n"
+                    + "LOVE    1 1 0 0 1\n"
+                    + "INDEX   0 1 0 0 0\n"
+                    + "OK      * 0 1 1 1 near(4,8)\n"
+                    + "MIDDLE  * 0 1 0 0\n"
+                    + "FIST    0 0 0 0 0\n";
+
+    private static final HandGesture[] GESTURES = HandGesture.values();
+    private static final int NUM_MASKS = 1 << FingerState.NUM_FINGERS;
+
+    // Per rule
+    private final HandGesture[] gestures;
+    // Per rule, landmark pairs as (a, b) and whether the pair has to be near
+    private final int[][] predicatePairs;
+    private final boolean[][] predicateNear;
+
+    // Per mask: gesture ordinal if resolved, otherwise -1 and the candidate rules in chains
+    private final byte[] table = new byte[NUM_MASKS];
+    private final int[][] chains = new int[NUM_MASKS][];
+
+    private GestureRules(List<Rule> rules) {
+        int count = rules.size();
+        gestures = new HandGesture[count];
+        predicatePairs = new int[count][];
+        predicateNear = new boolean[count][];
+        for (int i = 0; i < count; i++) {
+            Rule rule = rules.get(i);
+            gestures[i] = rule.gesture;
+            predicatePairs[i] = rule.pairs;
+            predicateNear[i] = rule.near;
+        }
+
+        List<Integer> candidates = new ArrayList<>();
+        for (int mask = 0; mask < NUM_MASKS; mask++) {
+            candidates.clear();
+            for (int i = 0; i < count; i++) {
+                Rule rule = rules.get(i);
+                if ((mask & rule.care) != rule.pattern) {
+                    continue;
+                }
+                candidates.add(i);
+                if (rule.near.length == 0) {
+                    break;
+                }
+            }
+            if (candidates.isEmpty()) {
+                table[mask] = (byte) HandGesture.UNDEFINED.ordinal();
+            } else if (candidates.size() == 1 && rules.get(candidates.get(0)).near.length == 0) {
+                table[mask] = (byte) rules.get(candidates.get(0)).gesture.ordinal();
+            } else {
+                table[mask] = -1;
+                int[] chain = new int[candidates.size()];
+                for (int i = 0; i < chain.length; i++) {
+                    chain[i] = candidates.get(i);
+                }
+                chains[mask] = chain;
+            }
+        }
+    }
+
+    public static GestureRules defaults() {
+        try {
+            return parse(new StringReader(DEFAULT_DEFINITIONS));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Parses and compiles a definition file.
+     *
+     * @throws IllegalArgumentException naming the line of the first malformed rule
+     */
+    public static GestureRules parse(Reader definitions) throws IOException {
+        BufferedReader reader = new BufferedReader(definitions);
+        List<Rule> rules = new ArrayList<>();
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                rules.add(Rule.parse(tokens(line)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return new GestureRules(rules);
+    }
+
+    // Splits a rule at whitespace, except inside a predicate, so near( 4, 8 ) is one token
+    private static String[] tokens(String line) {
+        String compact = line.replaceAll("\\s*\\(\\s*", "(")
+                .replaceAll("\\s*,\\s*", ",")
+                .replaceAll("\\s*\\)", ")");
+        return compact.split("\\s+");
+    }
+
+    /**
+     * Classifies a hand from its finger mask. {@code hand} is only read for masks with predicate
+     * rules; {@code world} selects the distance thresholds. Allocates nothing.
+     */
+    public HandGesture classify(int fingerMask, HandFrame hand, boolean world) {
+        int mask = fingerMask & FingerState.ALL_FINGERS;
+        int entry = table[mask];
+        if (entry >= 0) {
+            return GESTURES[entry];
+        }
+        float limit = world ? WORLD_NEAR_DISTANCE : IMAGE_NEAR_DISTANCE;
+        for (int rule : chains[mask]) {
+            if (matches(rule, hand, world, limit * limit)) {
+                return gestures[rule];
+            }
+        }
+        return HandGesture.UNDEFINED;
+    }
+
+    // True if every predicate of the rule holds
+    private boolean matches(int rule, HandFrame hand, boolean world, float limitSquared) {
+        int[] pairs = predicatePairs[rule];
+        boolean[] near = predicateNear[rule];
+        for (int p = 0; p < near.length; p++) {
+            int a = pairs[2 * p];
+            int b = pairs[2 * p + 1];
+            float dx = hand.x(a) - hand.x(b);
+            float dy = hand.y(a) - hand.y(b);
+            // Image z is relative depth on a different scale, only world distances are 3D
+            float dz = world ? hand.z(a) - hand.z(b) : 0f;
+            if ((dx * dx + dy * dy + dz * dz < limitSquared) != near[p]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getRuleCount() {
+        return gestures.length;
+    }
+
+    private static final class Rule {
+        final HandGesture gesture;
+        // Bits of the fingers the rule cares about, and their required state
+        final int care;
+        final int pattern;
+        final int[] pairs;
+        final boolean[] near;
+
+        private Rule(HandGesture gesture, int care, int pattern, int[] pairs, boolean[] near) {
+            this.gesture = gesture;
+            this.care = care;
+            this.pattern = pattern;
+            this.pairs = pairs;
+            this.near = near;
+        }
+
+        static Rule parse(String[] tokens) {
+            if (tokens.length < 1 + FingerState.NUM_FINGERS) {
+                throw new IllegalArgumentException("Expected a gesture and " + FingerState.NUM_FINGERS + " finger states");
+            }
+            HandGesture gesture;
+            try {
+                gesture = HandGesture.valueOf(tokens[0].toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown gesture " + tokens[0]);
+            }
+            int care = 0;
+            int pattern = 0;
+            for (int f = 0; f < FingerState.NUM_FINGERS; f++) {
+                switch (tokens[1 + f]) {
+                    case "1":
+                        pattern |= 1 << f;
+                        care |= 1 << f;
+                        break;
+                    case "0":
+                        care |= 1 << f;
+                        break;
+                    case "*":
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Finger state must be 0, 1 or *, got " + tokens[1 + f]);
+                }
+            }
+            int predicateCount = tokens.length - 1 - FingerState.NUM_FINGERS;
+            int[] pairs = new int[2 * predicateCount];
+            boolean[] near = new boolean[predicateCount];
+            for (int p = 0; p < predicateCount; p++) {
+                String predicate = tokens[1 + FingerState.NUM_FINGERS + p];
+                int open = predicate.indexOf('(');
+                int comma = predicate.indexOf(',');
+                if (open < 0 || comma < open || !predicate.endsWith(")")) {
+                    throw new IllegalArgumentException("Expected near(a,b) or far(a,b), got " + predicate);
+                }
+                String name = predicate.substring(0, open);
+                if (!"near".equals(name) && !"far".equals(name)) {
+                    throw new IllegalArgumentException("Unknown predicate " + name);
+                }
+                near[p] = "near".equals(name);
+                pairs[2 * p] = landmark(predicate.substring(open + 1, comma));
+                pairs[2 * p + 1] = landmark(predicate.substring(comma + 1, predicate.length() - 1));
+            }
+            return new Rule(gesture, care, pattern, pairs, near);
+        }
+
+        private static int landmark(String token) {
+            int index;
+            try {
+                index = Integer.parseInt(token.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Landmark index must be a number, got " + token);
+            }
+            if (index < 0 || index >= HandFrame.NUM_LANDMARKS) {
+                throw new IllegalArgumentException("Landmark index out of range: " + index);
+            }
+            return index;
+        }
+    }
+}
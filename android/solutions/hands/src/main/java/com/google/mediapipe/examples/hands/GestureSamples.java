@@ -0,0 +1,120 @@
+package com.google.mediapipe.examples.hands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Labelled {@link LandmarkFeatures} vectors collected for training, stored row by row in one
+ * growable {@code float[]}. Builds either kind of {@link GestureModel}.
+ */
+public class GestureSamples {
+
+    private final List<String> labels = new ArrayList<>();
+    private float[] matrix = new float[64 * LandmarkFeatures.SIZE];
+    private int[] sampleLabels = new int[64];
+    private int count;
+
+    /** Adds a copy of {@code features} under {@code label}. */
+    public void add(String label, float[] features) {
+        int index = labels.indexOf(label);
+        if (index < 0) {
+            index = labels.size();
+            labels.add(label);
+        }
+        if (count == sampleLabels.length) {
+            sampleLabels = Arrays.copyOf(sampleLabels, count * 2);
+            matrix = Arrays.copyOf(matrix, count * 2 * LandmarkFeatures.SIZE);
+        }
+        System.arraycopy(features, 0, matrix, count * LandmarkFeatures.SIZE, LandmarkFeatures.SIZE);
+        sampleLabels[count++] = index;
+    }
+
+    /** Extracts and adds the features of {@code hand}, returns false for a degenerate hand. */
+    public boolean add(String label, HandFrame hand, float[] scratch) {
+        if (!LandmarkFeatures.extract(hand, scratch)) {
+            return false;
+        }
+        add(label, scratch);
+        return true;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void clear() {
+        labels.clear();
+        count = 0;
+    }
+
+    /**
+     * @param maxDistance neighbours further away than this do not vote, in palm sizes summed over
+     *                    the feature vector; {@link Float#POSITIVE_INFINITY} for no limit
+     * @throws IllegalArgumentException if there are no samples
+     */
+    public KnnGestureModel toKnn(int k, float maxDistance) {
+        requireSamples();
+        return new KnnGestureModel(labels.toArray(new String[0]), LandmarkFeatures.SIZE, k, maxDistance,
+                Arrays.copyOf(sampleLabels, count), Arrays.copyOf(matrix, count * LandmarkFeatures.SIZE));
+    }
+
+    /**
+     * Trains softmax regression with plain SGD, deterministic for a given seed.
+     *
+     * @throws IllegalArgumentException if there are no samples
+     */
+    public LinearGestureModel trainLinear(int epochs, float learningRate, long seed) {
+        requireSamples();
+        int labelCount = labels.size();
+        int size = LandmarkFeatures.SIZE;
+        float[] weights = new float[labelCount * size];
+        float[] bias = new float[labelCount];
+        float[] probabilities = new float[labelCount];
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            for (int i = count - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            for (int sample : order) {
+                int base = sample * size;
+                float max = Float.NEGATIVE_INFINITY;
+                for (int label = 0; label < labelCount; label++) {
+                    float score = bias[label];
+                    for (int j = 0; j < size; j++) {
+                        score += weights[label * size + j] * matrix[base + j];
+                    }
+                    probabilities[label] = score;
+                    max = Math.max(max, score);
+                }
+                float sum = 0f;
+                for (int label = 0; label < labelCount; label++) {
+                    probabilities[label] = (float) Math.exp(probabilities[label] - max);
+                    sum += probabilities[label];
+                }
+                for (int label = 0; label < labelCount; label++) {
+                    float gradient = probabilities[label] / sum - (label == sampleLabels[sample] ? 1f : 0f);
+                    bias[label] -= learningRate * gradient;
+                    for (int j = 0; j < size; j++) {
+                        weights[label * size + j] -= learningRate * gradient * matrix[base + j];
+                    }
+                }
+            }
+        }
+        return new LinearGestureModel(labels.toArray(new String[0]), size, weights, bias);
+    }
+
+    private void requireSamples() {
+        if (count == 0) {
+            throw new IllegalArgumentException("No samples to build a gesture model from");
+        }
+    }
+}
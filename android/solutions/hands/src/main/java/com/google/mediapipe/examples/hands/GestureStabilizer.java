@@ -0,0 +1,77 @@
+package com.google.mediapipe.examples.hands;
+
+import java.util.Arrays;
+
+/**
+ * Temporal smoothing of per-frame classifications.
+ *
+ * <p>Keeps the last {@code window} raw gestures in a ring buffer together with a vote count per
+ * gesture. A gesture becomes stable once it has at least {@code enterVotes} of the votes and stays
+ * stable until it falls below {@code exitVotes} (hysteresis), so single-frame flickers neither start
+ * nor cancel a capture. {@link #push(HandGesture)} is O(1) and allocates nothing.
+ */
+public class GestureStabilizer {
+
+    public static final int DEFAULT_WINDOW = 5;
+    public static final int DEFAULT_ENTER_VOTES = 4;
+    public static final int DEFAULT_EXIT_VOTES = 2;
+
+    private static final HandGesture[] GESTURES = HandGesture.values();
+
+    private final byte[] ring;
+    private final int[] votes = new int[GESTURES.length];
+    private final int enterVotes;
+    private final int exitVotes;
+    private int head;
+    private int size;
+    private HandGesture stable = HandGesture.UNDEFINED;
+
+    public GestureStabilizer() {
+        this(DEFAULT_WINDOW, DEFAULT_ENTER_VOTES, DEFAULT_EXIT_VOTES);
+    }
+
+    public GestureStabilizer(int window, int enterVotes, int exitVotes) {
+        if (window < 1 || enterVotes < 1 || enterVotes > window || exitVotes < 1 || exitVotes > enterVotes) {
+            throw new IllegalArgumentException(
+                    "Expected 1 <= exitVotes <= enterVotes <= window, got window=" + window
+                            + ", enterVotes=" + enterVotes + ", exitVotes=" + exitVotes);
+        }
+        this.ring = new byte[window];
+        this.enterVotes = enterVotes;
+        this.exitVotes = exitVotes;
+    }
+
+    /** Adds the classification of the newest frame and returns the stable gesture. */
+    public HandGesture push(HandGesture gesture) {
+        if (size == ring.length) {
+            votes[ring[head]]--;
+        } else {
+            size++;
+        }
+        ring[head] = (byte) gesture.ordinal();
+        votes[gesture.ordinal()]++;
+        head = head + 1 == ring.length ? 0 : head + 1;
+
+        if (stable != HandGesture.UNDEFINED && votes[stable.ordinal()] >= exitVotes) {
+            return stable;
+        }
+        stable = votes[gesture.ordinal()] >= enterVotes ? gesture : HandGesture.UNDEFINED;
+        return stable;
+    }
+
+    public HandGesture getStable() {
+        return stable;
+    }
+
+    /** Share of the window that voted for the stable gesture, between 0 and 1. */
+    public float getConfidence() {
+        return (float) votes[stable.ordinal()] / ring.length;
+    }
+
+    public void reset() {
+        head = 0;
+        size = 0;
+        Arrays.fill(votes, 0);
+        stable = HandGesture.UNDEFINED;
+    }
+}
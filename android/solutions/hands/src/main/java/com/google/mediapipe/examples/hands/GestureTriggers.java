@@ -0,0 +1,74 @@
+package com.google.mediapipe.examples.hands;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@link TriggerRule} configured in {@link PrefScreen}.
+ *
+ * <p>The rule is only rebuilt when one of its preferences changes, so the per-frame checks never
+ * read SharedPreferences or parse the stored hex strings.
+ */
+public class GestureTriggers extends TriggerRule implements SharedPreferences.OnSharedPreferenceChangeListener {
+    private static final String TAG = "GestureTriggers";
+    public static final String PREF_KEY = "emoji_pref";
+    public static final String MAX_HANDS_PREF_KEY = "max_hands_pref";
+    public static final String ALL_HANDS_PREF_KEY = "all_hands_pref";
+
+    /**
+     * Loads the current selection and keeps it in sync. SharedPreferences only holds a weak
+     * reference to the listener, so the caller has to keep this object reachable.
+     */
+    public void attach(SharedPreferences sharedPrefs) {
+        sharedPrefs.registerOnSharedPreferenceChangeListener(this);
+        reload(sharedPrefs);
+    }
+
+    public void detach(SharedPreferences sharedPrefs) {
+        sharedPrefs.unregisterOnSharedPreferenceChangeListener(this);
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPrefs, String key) {
+        if (PREF_KEY.equals(key) || MAX_HANDS_PREF_KEY.equals(key) || ALL_HANDS_PREF_KEY.equals(key)) {
+            reload(sharedPrefs);
+        }
+    }
+
+    private void reload(SharedPreferences sharedPrefs) {
+        setMask(maskOf(sharedPrefs.getStringSet(PREF_KEY, null)));
+        setAllHands(sharedPrefs.getBoolean(ALL_HANDS_PREF_KEY, false));
+        try {
+            setMaxHands(Integer.parseInt(sharedPrefs.getString(MAX_HANDS_PREF_KEY, "1")));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Ignoring malformed hand count preference", e);
+            setMaxHands(1);
+        }
+    }
+
+    // Preference values are the emoji code points as hex strings, e.g. "0x270C"
+    static int maskOf(Set<String> selectedGesturesHex) {
+        int result = 0;
+        if (selectedGesturesHex == null) {
+            return result;
+        }
+        for (String hex : selectedGesturesHex) {
+            int codePoint;
+            try {
+                codePoint = Integer.parseInt(hex.replaceFirst("0x", ""), 16);
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Ignoring malformed gesture preference: " + hex);
+                continue;
+            }
+            for (Map.Entry<HandGesture, Integer> entry : GestureDetect.gestureEmojis.entrySet()) {
+                if (entry.getValue() == codePoint) {
+                    result |= 1 << entry.getKey().ordinal();
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,274 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Snapshots the frame the preview surface just drew, camera image and optionally the hand overlay.
+ *
+ * <p>Photos are taken from pixels the GPU already has, with no second camera use case: a request
+ * is served by the next frame {@link HandsResultGlRenderer} draws. On GLES 3 the pixels are read
+ * asynchronously into one of two pixel pack buffers, and mapped on a later frame once a fence
+ * says the copy is done, so the GL thread never waits for the GPU. Two buffers let consecutive
+ * frames be grabbed while the previous read is still in flight. GLES 2 contexts fall back to a
+ * synchronous {@code glReadPixels}.
+ *
+ * <p>{@link #request} and {@link #close} may be called from any thread, everything else only on
+ * the GL thread with the context current.
+ */
+public class GlFrameGrabber {
+  private static final String TAG = "GlFrameGrabber";
+  private static final int BYTES_PER_PIXEL = 4;
+  private static final int SLOTS = 2;
+
+  /** Receives one grabbed frame. */
+  public interface Callback {
+    /**
+     * Called on the GL thread. {@code rgba} holds {@code height} rows of {@code width} RGBA pixels,
+     * bottom row first as GL reads them, and is only valid during the call.
+     *
+     * @param timestampUs timestamp of the camera frame the pixels show
+     */
+    void onFrameGrabbed(ByteBuffer rgba, int width, int height, long timestampUs);
+
+    /** Called on any thread if the frame could not be grabbed. */
+    void onGrabFailed(Exception error);
+  }
+
+  private final boolean pixelBuffers;
+  private final ConcurrentLinkedQueue<Callback> requests = new ConcurrentLinkedQueue<>();
+  private volatile boolean includeOverlay;
+  private volatile boolean closed;
+
+  // GL thread only
+  private final int[] viewport = new int[4];
+  private Callback current;
+  private final int[] pbo = new int[SLOTS];
+  private final int[] pboBytes = new int[SLOTS];
+  private final long[] fences = new long[SLOTS];
+  private final int[] slotWidth = new int[SLOTS];
+  private final int[] slotHeight = new int[SLOTS];
+  private final long[] slotTimestampUs = new long[SLOTS];
+  private int nextSlot;
+  private ByteBuffer readBuffer;
+
+  // Reads in flight, guarded by this so close() can fail them
+  private final Callback[] slotCallbacks = new Callback[SLOTS];
+
+  /** @param glMajorVersion major GLES version of the preview's context */
+  public GlFrameGrabber(int glMajorVersion) {
+    this.pixelBuffers = glMajorVersion >= 3;
+  }
+
+  /** Whether grabbed frames show the hand overlay; it is then drawn even while capturing. */
+  public void setIncludeOverlay(boolean includeOverlay) {
+    this.includeOverlay = includeOverlay;
+  }
+
+  public boolean includesOverlay() {
+    return includeOverlay;
+  }
+
+  /**
+   * Asks for the next drawn frame. Returns false, without calling {@code callback}, once the
+   * grabber is closed.
+   */
+  public boolean request(Callback callback) {
+    if (closed) {
+      return false;
+    }
+    requests.add(callback);
+    // Lost the race with close(), which may have drained the queue already
+    if (closed && requests.remove(callback)) {
+      return false;
+    }
+    return true;
+  }
+
+  /** Fails pending requests and reads in flight; later requests are refused. */
+  public void close() {
+    closed = true;
+    Exception error = new IllegalStateException("Preview closed");
+    Callback callback;
+    while ((callback = requests.poll()) != null) {
+      callback.onGrabFailed(error);
+    }
+    for (int slot = 0; slot < SLOTS; slot++) {
+      callback = takeSlot(slot);
+      if (callback != null) {
+        callback.onGrabFailed(error);
+      }
+    }
+  }
+
+  /** Creates the pixel buffers, call once the context is current. */
+  public void setup() {
+    if (pixelBuffers) {
+      GLES30.glGenBuffers(SLOTS, pbo, 0);
+    }
+  }
+
+  /** Returns true if the frame being drawn will be grabbed by {@link #grab}. */
+  public boolean beginFrame() {
+    if (current == null) {
+      current = requests.poll();
+    }
+    return current != null;
+  }
+
+  /** Reads the current framebuffer for the request taken by {@link #beginFrame()}. */
+  public void grab(long timestampUs) {
+    Callback callback = current;
+    if (callback == null) {
+      return;
+    }
+    current = null;
+    GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, viewport, 0);
+    int x = viewport[0];
+    int y = viewport[1];
+    int width = viewport[2];
+    int height = viewport[3];
+    int bytes = width * height * BYTES_PER_PIXEL;
+    if (!pixelBuffers) {
+      if (readBuffer == null || readBuffer.capacity() < bytes) {
+        readBuffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+      }
+      readBuffer.clear();
+      GLES20.glReadPixels(x, y, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, readBuffer);
+      readBuffer.limit(bytes);
+      deliver(callback, readBuffer, width, height, timestampUs);
+      return;
+    }
+    int slot = nextSlot;
+    if (fences[slot] != 0) {
+      // Both reads still in flight, wait for the older one to free its buffer
+      finish(slot, true);
+    }
+    GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, pbo[slot]);
+    if (pboBytes[slot] < bytes) {
+      GLES30.glBufferData(GLES30.GL_PIXEL_PACK_BUFFER, bytes, null, GLES30.GL_STREAM_READ);
+      pboBytes[slot] = bytes;
+    }
+    GLES30.glReadPixels(x, y, width, height, GLES30.GL_RGBA, GLES30.GL_UNSIGNED_BYTE, 0);
+    GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+    fences[slot] = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    slotWidth[slot] = width;
+    slotHeight[slot] = height;
+    slotTimestampUs[slot] = timestampUs;
+    synchronized (this) {
+      slotCallbacks[slot] = callback;
+    }
+    if (closed) {
+      // close() ran before the slot was filled
+      callback = takeSlot(slot);
+      if (callback != null) {
+        callback.onGrabFailed(new IllegalStateException("Preview closed"));
+      }
+    }
+    nextSlot = (slot + 1) % SLOTS;
+  }
+
+  /** Delivers reads started on earlier frames that the GPU has finished. */
+  public void endFrame() {
+    if (!pixelBuffers) {
+      return;
+    }
+    // Oldest first, the slot after the one just used
+    for (int i = 0; i < SLOTS; i++) {
+      int slot = (nextSlot + i) % SLOTS;
+      if (fences[slot] != 0) {
+        finish(slot, false);
+      }
+    }
+  }
+
+  /** Deletes the pixel buffers and fails reads in flight, call on the GL thread. */
+  public void release() {
+    for (int slot = 0; slot < SLOTS; slot++) {
+      if (fences[slot] != 0) {
+        GLES30.glDeleteSync(fences[slot]);
+        fences[slot] = 0;
+      }
+      Callback callback = takeSlot(slot);
+      if (callback != null) {
+        callback.onGrabFailed(new IllegalStateException("Preview released"));
+      }
+    }
+    if (pixelBuffers) {
+      GLES30.glDeleteBuffers(SLOTS, pbo, 0);
+    }
+    Arrays.fill(pboBytes, 0);
+    readBuffer = null;
+  }
+
+  // Maps the slot and delivers it once its fence signalled, or right away if block is set
+  private void finish(int slot, boolean block) {
+    int status =
+        GLES30.glClientWaitSync(
+            fences[slot], block ? GLES30.GL_SYNC_FLUSH_COMMANDS_BIT : 0, block ? GLES30.GL_TIMEOUT_IGNORED : 0);
+    if (status == GLES30.GL_TIMEOUT_EXPIRED) {
+      return;
+    }
+    GLES30.glDeleteSync(fences[slot]);
+    fences[slot] = 0;
+    Callback callback = takeSlot(slot);
+    if (callback == null) {
+      // Failed by close() already, the buffer is free again
+      return;
+    }
+    int bytes = slotWidth[slot] * slotHeight[slot] * BYTES_PER_PIXEL;
+    GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, pbo[slot]);
+    Buffer mapped =
+        GLES30.glMapBufferRange(GLES30.GL_PIXEL_PACK_BUFFER, 0, bytes, GLES30.GL_MAP_READ_BIT);
+    try {
+      if (mapped == null) {
+        callback.onGrabFailed(
+            new IllegalStateException("Cannot map pixel buffer, GL error " + GLES20.glGetError()));
+        return;
+      }
+      ByteBuffer pixels = ((ByteBuffer) mapped).order(ByteOrder.nativeOrder());
+      deliver(callback, pixels, slotWidth[slot], slotHeight[slot], slotTimestampUs[slot]);
+    } finally {
+      if (mapped != null) {
+        GLES30.glUnmapBuffer(GLES30.GL_PIXEL_PACK_BUFFER);
+      }
+      GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+    }
+  }
+
+  private static void deliver(
+      Callback callback, ByteBuffer pixels, int width, int height, long timestampUs) {
+    try {
+      callback.onFrameGrabbed(pixels, width, height, timestampUs);
+    } catch (RuntimeException e) {
+      // Never let a receiver take the GL thread down
+      Log.e(TAG, "Frame receiver failed", e);
+    }
+  }
+
+  private synchronized Callback takeSlot(int slot) {
+    Callback callback = slotCallbacks[slot];
+    slotCallbacks[slot] = null;
+    return callback;
+  }
+}
@@ -0,0 +1,75 @@
+package com.google.mediapipe.examples.hands;
+
+// Primitive copy of the landmarks of a single hand, reused from frame to frame
+
+/**
+ * Holds the 21 landmarks of one hand as plain floats.
+ *
+ * <p>Coordinates are stored interleaved (x, y, z) in a single {@code float[63]}, so a
+ * {@code HandsResult} can be copied in once per frame and every later stage reads primitives
+ * instead of protobuf objects. The class has no Android or MediaPipe dependencies.
+ */
+public final class HandFrame {
+
+    public static final int NUM_LANDMARKS = 21;
+    public static final int STRIDE = 3;
+
+    private final float[] coords = new float[NUM_LANDMARKS * STRIDE];
+    private boolean present;
+    private boolean leftHand;
+
+    public float x(int landmark) {
+        return coords[landmark * STRIDE];
+    }
+
+    public float y(int landmark) {
+        return coords[landmark * STRIDE + 1];
+    }
+
+    public float z(int landmark) {
+        return coords[landmark * STRIDE + 2];
+    }
+
+    public void set(int landmark, float x, float y, float z) {
+        int i = landmark * STRIDE;
+        coords[i] = x;
+        coords[i + 1] = y;
+        coords[i + 2] = z;
+    }
+
+    // Marks the frame as holding a complete hand, call after all landmarks have been set
+    public void setPresent(boolean present) {
+        this.present = present;
+    }
+
+    public boolean isPresent() {
+        return present;
+    }
+
+    // Handedness as reported by MediaPipe's multiHandedness()
+    public void setLeftHand(boolean leftHand) {
+        this.leftHand = leftHand;
+    }
+
+    public boolean isLeftHand() {
+        return leftHand;
+    }
+
+    public void clear() {
+        present = false;
+    }
+
+    public void copyFrom(HandFrame other) {
+        System.arraycopy(other.coords, 0, coords, 0, coords.length);
+        present = other.present;
+        leftHand = other.leftHand;
+    }
+
+    /**
+     * Direct access to the interleaved backing array, for bulk readers such as the renderers.
+     * Callers must not keep the reference beyond the current frame.
+     */
+    public float[] coords() {
+        return coords;
+    }
+}
@@ -0,0 +1,66 @@
+package com.google.mediapipe.examples.hands;
+
+/**
+ * Vertex math for the hand overlays drawn by {@link HandsResultGlRenderer} and {@link
+ * HandsResultImageView}.
+ *
+ * <p>Everything here works on {@link HandFrame} and caller-owned float arrays and has no Android
+ * dependencies, so it can be benchmarked on a plain JVM.
+ */
+final class HandOverlayGeometry {
+  // Same topology as Hands.HAND_CONNECTIONS, flattened as (start, end) landmark index pairs.
+  static final int[] HAND_CONNECTIONS = {
+    // Palm
+    0, 1, 0, 5, 9, 13, 13, 17, 5, 9, 0, 17,
+    // Thumb
+    1, 2, 2, 3, 3, 4,
+    // Index finger
+    5, 6, 6, 7, 7, 8,
+    // Middle finger
+    9, 10, 10, 11, 11, 12,
+    // Ring finger
+    13, 14, 14, 15, 15, 16,
+    // Pinky
+    17, 18, 18, 19, 19, 20
+  };
+  static final int NUM_CONNECTIONS = HAND_CONNECTIONS.length / 2;
+
+  // Size of the array expected by squareVertices.
+  static final int SQUARE_FLOATS = 4 * 2;
+
+  private HandOverlayGeometry() {}
+
+  /**
+   * Writes the four corners of the hand's bounding box into {@code out} as (x, y) pairs, in the
+   * order top-left, top-right, bottom-right, bottom-left.
+   */
+  static void squareVertices(HandFrame hand, float[] out) {
+    float[] coords = hand.coords();
+    float minX = coords[0];
+    float maxX = coords[0];
+    float minY = coords[1];
+    float maxY = coords[1];
+    for (int i = HandFrame.STRIDE; i < coords.length; i += HandFrame.STRIDE) {
+      float x = coords[i];
+      float y = coords[i + 1];
+      if (x < minX) {
+        minX = x;
+      } else if (x > maxX) {
+        maxX = x;
+      }
+      if (y < minY) {
+        minY = y;
+      } else if (y > maxY) {
+        maxY = y;
+      }
+    }
+    out[0] = minX;
+    out[1] = minY;
+    out[2] = maxX;
+    out[3] = minY;
+    out[4] = maxX;
+    out[5] = maxY;
+    out[6] = minX;
+    out[7] = maxY;
+  }
+}
@@ -0,0 +1,139 @@
+package com.google.mediapipe.examples.hands;
+
+/**
+ * Smoothed, velocity-predicted bounding box of one hand across frames.
+ *
+ * <p>The box is tracked as center and size, each with an alpha-beta filter: the measured box of
+ * every frame corrects the prediction by {@code alpha} and the velocity by {@code beta}. Boxes are
+ * in the normalized image coordinates of {@link MultiHandFrame#hand(int)}, written as
+ * (left, top, right, bottom). Pure Java and allocation-free, one instance per hand slot.
+ */
+public class HandRoiTracker {
+
+    public static final float DEFAULT_ALPHA = 0.5f;
+    public static final float DEFAULT_BETA = 0.1f;
+    // A hand moving slower than this, in box sizes per second, counts as held still
+    public static final float DEFAULT_STABLE_SPEED = 1.5f;
+    // Updates needed before the velocity is trusted
+    static final int MIN_UPDATES = 3;
+    // Longer gaps restart the filter instead of predicting across them
+    static final long MAX_GAP_US = 500_000L;
+
+    private static final int CX = 0;
+    private static final int CY = 1;
+    private static final int W = 2;
+    private static final int H = 3;
+
+    private final float alpha;
+    private final float beta;
+    private final float stableSpeed;
+    private final float[] state = new float[4];
+    private final float[] velocity = new float[4];
+    private final float[] measured = new float[4];
+    private final float[] square = new float[HandOverlayGeometry.SQUARE_FLOATS];
+    private long lastTimestampUs;
+    private int updates;
+
+    public HandRoiTracker() {
+        this(DEFAULT_ALPHA, DEFAULT_BETA, DEFAULT_STABLE_SPEED);
+    }
+
+    public HandRoiTracker(float alpha, float beta, float stableSpeed) {
+        if (!(alpha > 0f && alpha <= 1f) || !(beta >= 0f && beta <= alpha)) {
+            throw new IllegalArgumentException("Expected 0 < alpha <= 1 and 0 <= beta <= alpha, got alpha="
+                    + alpha + ", beta=" + beta);
+        }
+        this.alpha = alpha;
+        this.beta = beta;
+        this.stableSpeed = stableSpeed;
+    }
+
+    /** Adds the hand seen at {@code timestampUs}; a missing hand resets the tracker. */
+    public void update(HandFrame hand, long timestampUs) {
+        if (!hand.isPresent()) {
+            reset();
+            return;
+        }
+        HandOverlayGeometry.squareVertices(hand, square);
+        measured[CX] = (square[0] + square[2]) * 0.5f;
+        measured[CY] = (square[1] + square[5]) * 0.5f;
+        measured[W] = square[2] - square[0];
+        measured[H] = square[5] - square[1];
+
+        long gapUs = timestampUs - lastTimestampUs;
+        if (updates == 0 || gapUs < 0 || gapUs > MAX_GAP_US) {
+            System.arraycopy(measured, 0, state, 0, state.length);
+            for (int i = 0; i < velocity.length; i++) {
+                velocity[i] = 0f;
+            }
+            updates = 1;
+        } else if (gapUs == 0) {
+            // Same timestamp, e.g. a frame without timing: smooth the position, keep the velocity
+            for (int i = 0; i < state.length; i++) {
+                state[i] += alpha * (measured[i] - state[i]);
+            }
+            updates++;
+        } else {
+            float dt = gapUs * 1e-6f;
+            for (int i = 0; i < state.length; i++) {
+                float predicted = state[i] + velocity[i] * dt;
+                float residual = measured[i] - predicted;
+                state[i] = predicted + alpha * residual;
+                velocity[i] += beta * residual / dt;
+            }
+            updates++;
+        }
+        lastTimestampUs = timestampUs;
+    }
+
+    public void reset() {
+        updates = 0;
+    }
+
+    public boolean isTracking() {
+        return updates > 0;
+    }
+
+    /** Writes the smoothed box of the last update into {@code out}; false if not tracking. */
+    public boolean getBox(float[] out) {
+        return predict(lastTimestampUs, out);
+    }
+
+    /**
+     * Writes the box extrapolated to {@code timestampUs} into {@code out}, for cropping a frame that
+     * arrives after the last result.
+     *
+     * @return false if not tracking, {@code out} is not written then
+     */
+    public boolean predict(long timestampUs, float[] out) {
+        if (updates == 0) {
+            return false;
+        }
+        float dt = Math.max(0, Math.min(timestampUs - lastTimestampUs, MAX_GAP_US)) * 1e-6f;
+        float cx = state[CX] + velocity[CX] * dt;
+        float cy = state[CY] + velocity[CY] * dt;
+        float halfW = Math.max(0f, state[W] + velocity[W] * dt) * 0.5f;
+        float halfH = Math.max(0f, state[H] + velocity[H] * dt) * 0.5f;
+        out[0] = cx - halfW;
+        out[1] = cy - halfH;
+        out[2] = cx + halfW;
+        out[3] = cy + halfH;
+        return true;
+    }
+
+    /** Center speed in box sizes per second, 0 until the velocity is trusted. */
+    public float getSpeed() {
+        if (updates < MIN_UPDATES) {
+            return 0f;
+        }
+        float size = Math.max(Math.max(state[W], state[H]), 1e-6f);
+        float vx = velocity[CX];
+        float vy = velocity[CY];
+        return (float) Math.sqrt(vx * vx + vy * vy) / size;
+    }
+
+    /** True once the hand has been tracked for a few frames and is held still enough to classify. */
+    public boolean isStable() {
+        return updates >= MIN_UPDATES && getSpeed() < stableSpeed;
+    }
+}
@@ -0,0 +1,118 @@
+package com.google.mediapipe.examples.hands;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import com.google.mediapipe.solutions.hands.Hands;
+import com.google.mediapipe.solutions.hands.HandsOptions;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the MediaPipe {@link Hands} graph for the whole process, so an activity restart does not
+ * rebuild it.
+ *
+ * <p>Building the graph loads the native library, the models and a GL context. This is the
+ * largest part of a cold start. {@link #acquire} builds it on a background thread, so the caller
+ * can inflate its views and initialize the camera meanwhile. {@link #park} keeps the graph after
+ * the activity is destroyed. The next activity asking for equal options gets it back right away.
+ * A parked graph is closed when other options are asked for, or when memory is trimmed while the
+ * app is in the background.
+ *
+ * <p>All methods may be called from any thread. The futures complete on the builder thread.
+ */
+public final class HandsHolder {
+    private static final String TAG = "HandsHolder";
+
+    // Builds and closes graphs, one at a time
+    private static final ExecutorService builder = Executors.newSingleThreadExecutor(r -> new Thread(r, "HandsHolder"));
+
+    private static Hands parked;
+    private static HandsOptions parkedOptions;
+    private static boolean trimRegistered;
+
+    private HandsHolder() {
+    }
+
+    /**
+     * Returns the parked graph if it was built with equal {@code options}, otherwise starts
+     * building one. The caller owns the result until it is given back with {@link #park}.
+     */
+    public static synchronized CompletableFuture<Hands> acquire(Context context, HandsOptions options) {
+        Context app = context.getApplicationContext();
+        registerTrim(app);
+        Hands previous = parked;
+        HandsOptions previousOptions = parkedOptions;
+        parked = null;
+        parkedOptions = null;
+        if (previous != null && options.equals(previousOptions)) {
+            Log.i(TAG, "Reusing the parked graph");
+            return CompletableFuture.completedFuture(previous);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            if (previous != null) {
+                previous.close();
+            }
+            long startNanos = System.nanoTime();
+            Hands hands = new Hands(app, options);
+            Log.i(TAG, "Built the graph in " + (System.nanoTime() - startNanos) / 1_000_000L + " ms");
+            return hands;
+        }, builder);
+    }
+
+    /**
+     * Keeps {@code hands} for the next {@link #acquire}. The caller must have stopped sending
+     * frames to it. Any graph parked before is closed.
+     */
+    public static synchronized void park(Hands hands, HandsOptions options) {
+        // Drop whatever is still in the graph instead of calling into the old activity
+        hands.setResultListener(result -> { });
+        hands.setErrorListener((message, e) -> Log.e(TAG, "Parked graph error: " + message));
+        Hands previous = parked;
+        parked = hands;
+        parkedOptions = options;
+        if (previous != null) {
+            builder.execute(previous::close);
+        }
+    }
+
+    /** Closes the parked graph, if any; a graph in use is not affected. */
+    public static synchronized void closeParked() {
+        Hands previous = parked;
+        parked = null;
+        parkedOptions = null;
+        if (previous != null) {
+            Log.i(TAG, "Closing the parked graph");
+            builder.execute(previous::close);
+        }
+    }
+
+    private static void registerTrim(Context app) {
+        if (trimRegistered) {
+            return;
+        }
+        trimRegistered = true;
+        app.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                // Only once the app is in the background, a restart in the foreground reuses it
+                if (level >= TRIM_MEMORY_BACKGROUND) {
+                    closeParked();
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                closeParked();
+            }
+        });
+    }
+}
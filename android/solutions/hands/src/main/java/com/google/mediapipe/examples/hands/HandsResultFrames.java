@@ -0,0 +1,100 @@
+package com.google.mediapipe.examples.hands;
+
+import com.google.mediapipe.formats.proto.ClassificationProto;
+import com.google.mediapipe.formats.proto.LandmarkProto;
+import com.google.mediapipe.solutions.hands.HandsResult;
+
+import java.util.List;
+
+// Copies MediaPipe landmark protos into reusable HandFrame instances
+
+public final class HandsResultFrames {
+
+    private HandsResultFrames() {
+    }
+
+    /**
+     * Copies the first detected hand into {@code frame}.
+     *
+     * @return true if a hand was present, otherwise the frame is cleared
+     */
+    public static boolean copyFirstHand(List<LandmarkProto.NormalizedLandmarkList> multiHandLandmarks, HandFrame frame) {
+        if (multiHandLandmarks.isEmpty()) {
+            frame.clear();
+            return false;
+        }
+        copy(multiHandLandmarks.get(0), frame);
+        return frame.isPresent();
+    }
+
+    /**
+     * Copies up to {@link MultiHandFrame#MAX_HANDS} hands, their world landmarks and handedness
+     * into {@code frame}, keeping the indices of {@code multiHandLandmarks()}.
+     */
+    public static void copyHands(HandsResult result, MultiHandFrame frame) {
+        List<LandmarkProto.NormalizedLandmarkList> multiHandLandmarks = result.multiHandLandmarks();
+        List<LandmarkProto.LandmarkList> multiHandWorldLandmarks = result.multiHandWorldLandmarks();
+        List<ClassificationProto.Classification> multiHandedness = result.multiHandedness();
+        int count = Math.min(multiHandLandmarks.size(), MultiHandFrame.MAX_HANDS);
+        for (int i = 0; i < count; i++) {
+            HandFrame hand = frame.hand(i);
+            copy(multiHandLandmarks.get(i), hand);
+            hand.setLeftHand(i < multiHandedness.size() && isLeft(multiHandedness.get(i)));
+            HandFrame worldHand = frame.worldHand(i);
+            if (i < multiHandWorldLandmarks.size()) {
+                copy(multiHandWorldLandmarks.get(i), worldHand);
+            } else {
+                worldHand.clear();
+            }
+            worldHand.setLeftHand(hand.isLeftHand());
+        }
+        frame.setHandCount(count);
+    }
+
+    public static boolean isLeft(ClassificationProto.Classification handedness) {
+        return "Left".equals(handedness.getLabel());
+    }
+
+    public static void copy(LandmarkProto.NormalizedLandmarkList landmarks, HandFrame frame) {
+        if (landmarks.getLandmarkCount() < HandFrame.NUM_LANDMARKS) {
+            frame.clear();
+            return;
+        }
+        // getLandmark(i) reads the backing list directly, no iterator or wrapper list is created
+        for (int i = 0; i < HandFrame.NUM_LANDMARKS; i++) {
+            LandmarkProto.NormalizedLandmark landmark = landmarks.getLandmark(i);
+            frame.set(i, landmark.getX(), landmark.getY(), landmark.getZ());
+        }
+        frame.setPresent(true);
+    }
+
+    public static void copy(LandmarkProto.LandmarkList landmarks, HandFrame frame) {
+        if (landmarks.getLandmarkCount() < HandFrame.NUM_LANDMARKS) {
+            frame.clear();
+            return;
+        }
+        for (int i = 0; i < HandFrame.NUM_LANDMARKS; i++) {
+            LandmarkProto.Landmark landmark = landmarks.getLandmark(i);
+            frame.set(i, landmark.getX(), landmark.getY(), landmark.getZ());
+        }
+        frame.setPresent(true);
+    }
+
+    static String getMultiHandLandmarksDebugString(List<LandmarkProto.NormalizedLandmarkList> multiHandLandmarks) {
+        if (multiHandLandmarks.isEmpty()) {
+            return "No hand landmarks";
+        }
+        StringBuilder multiHandLandmarksStr = new StringBuilder("Number of hands detected: " + multiHandLandmarks.size() + "\n");
+        int handIndex = 0;
+        for (LandmarkProto.NormalizedLandmarkList landmarks : multiHandLandmarks) {
+            multiHandLandmarksStr.append("\t#Hand landmarks for hand[").append(handIndex).append("]: ").append(landmarks.getLandmarkCount()).append("\n");
+            int landmarkIndex = 0;
+            for (LandmarkProto.NormalizedLandmark landmark : landmarks.getLandmarkList()) {
+                multiHandLandmarksStr.append("\t\tLandmark [").append(landmarkIndex).append("]: (").append(landmark.getX()).append(", ").append(landmark.getY()).append(", ").append(landmark.getZ()).append(")\n");
+                ++landmarkIndex;
+            }
+            ++handIndex;
+        }
+        return multiHandLandmarksStr.toString();
+    }
+}
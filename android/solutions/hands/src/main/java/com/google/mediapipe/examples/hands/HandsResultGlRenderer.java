@@ -15,40 +15,91 @@
 package com.google.mediapipe.examples.hands;
 
 import android.opengl.GLES20;
-import android.util.Pair;
-import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
 import com.google.mediapipe.solutioncore.ResultGlRenderer;
-import com.google.mediapipe.solutions.hands.Hands;
 import com.google.mediapipe.solutions.hands.HandsResult;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.BooleanSupplier;
 
-/** A custom implementation of {@link ResultGlRenderer} to render {@link HandsResult}. */
+/**
+ * A custom implementation of {@link ResultGlRenderer} to render {@link HandsResult}.
+ *
+ * <p>The overlay of all hands is packed into reusable {@link OverlayVertexBatch}es, uploaded into
+ * one persistent VBO and drawn with at most one call per primitive type and handedness. An optional
+ * {@link GlFrameGrabber} snapshots the drawn frame, before or after the overlay. The overlay is
+ * hidden while a capture is in progress, unless it is burnt into the grabbed frame.
+ */
 public class HandsResultGlRenderer implements ResultGlRenderer<HandsResult> {
   private static final String TAG = "HandsResultGlRenderer";
 
   private static final float[] LEFT_HAND_CONNECTION_COLOR = new float[] {0.75f, 0.75f, 0.75f, 1f};
   private static final float[] RIGHT_HAND_CONNECTION_COLOR = new float[] {0.75f, 0.75f, 0.75f, 1f};
+  private static final float[] LEFT_HAND_LANDMARK_COLOR = new float[] {1f, 0.2f, 0.2f, 1f};
+  private static final float[] RIGHT_HAND_LANDMARK_COLOR = new float[] {0.2f, 1f, 0.2f, 1f};
   private static final float CONNECTION_THICKNESS = 5.0f;
+  private static final float LANDMARK_POINT_SIZE = 12.0f; // Pixels
+  // The app shows a bounding box per hand; the full skeleton is kept for debugging.
+  private static final boolean DRAW_SKELETON = false;
+  // Hands the vertex buffer is sized for up front, it grows if more show up.
+  private static final int INITIAL_HANDS = 2;
+
   private static final String VERTEX_SHADER =
       "uniform mat4 uProjectionMatrix;\n"
+          + "uniform float uPointSize;\n"
           + "attribute vec4 vPosition;\n"
           + "void main() {\n"
           + "  gl_Position = uProjectionMatrix * vPosition;\n"
+          + "  gl_PointSize = uPointSize;\n"
           + "}";
   private static final String FRAGMENT_SHADER =
       "precision mediump float;\n"
           + "uniform vec4 uColor;\n"
+          + "uniform bool uRoundPoint;\n"
           + "void main() {\n"
+          + "  if (uRoundPoint && length(gl_PointCoord - vec2(0.5)) > 0.5) {\n"
+          + "    discard;\n"
+          + "  }\n"
           + "  gl_FragColor = uColor;\n"
           + "}";
+  private static final int LEFT = 0;
+  private static final int RIGHT = 1;
+
   private int program;
   private int positionHandle;
   private int projectionMatrixHandle;
   private int colorHandle;
+  private int pointSizeHandle;
+  private int roundPointHandle;
+
+  // Per-frame geometry, indexed by LEFT/RIGHT. Only touched on the GL thread.
+  private final HandFrame hand = new HandFrame();
+  private final OverlayVertexBatch[] lineBatches = {
+    new OverlayVertexBatch(INITIAL_HANDS * OverlayVertexBatch.CONNECTION_VERTICES),
+    new OverlayVertexBatch(INITIAL_HANDS * OverlayVertexBatch.CONNECTION_VERTICES)
+  };
+  private final OverlayVertexBatch[] pointBatches = {
+    new OverlayVertexBatch(INITIAL_HANDS * OverlayVertexBatch.POINT_VERTICES),
+    new OverlayVertexBatch(INITIAL_HANDS * OverlayVertexBatch.POINT_VERTICES)
+  };
+
+  // Persistent vertex buffer object and the direct buffer used to stage uploads into it.
+  private final int[] vbo = new int[1];
+  private int vboCapacityFloats;
+  private FloatBuffer stagingBuffer;
+
+  private final GlFrameGrabber frameGrabber;
+  private final BooleanSupplier captureInProgress;
+
+  public HandsResultGlRenderer() {
+    this(null, () -> false);
+  }
+
+  /** @param captureInProgress read on the GL thread for every frame */
+  public HandsResultGlRenderer(GlFrameGrabber frameGrabber, BooleanSupplier captureInProgress) {
+    this.frameGrabber = frameGrabber;
+    this.captureInProgress = captureInProgress;
+  }
 
   private int loadShader(int type, String shaderCode) {
     int shader = GLES20.glCreateShader(type);
@@ -68,153 +119,143 @@ public class HandsResultGlRenderer implements ResultGlRenderer<HandsResult> {
     positionHandle = GLES20.glGetAttribLocation(program, "vPosition");
     projectionMatrixHandle = GLES20.glGetUniformLocation(program, "uProjectionMatrix");
     colorHandle = GLES20.glGetUniformLocation(program, "uColor");
+    pointSizeHandle = GLES20.glGetUniformLocation(program, "uPointSize");
+    roundPointHandle = GLES20.glGetUniformLocation(program, "uRoundPoint");
+
+    GLES20.glGenBuffers(1, vbo, 0);
+    ensureVboCapacity(
+        2
+            * INITIAL_HANDS
+            * (OverlayVertexBatch.CONNECTION_VERTICES + OverlayVertexBatch.POINT_VERTICES)
+            * OverlayVertexBatch.FLOATS_PER_VERTEX);
+    if (frameGrabber != null) {
+      frameGrabber.setup();
+    }
   }
 
   @Override
   public void renderResult(HandsResult result, float[] projectionMatrix) {
-    if (result == null || MainActivity.captureFlag) {
+    if (result == null) {
       return;
     }
+    // The camera image is already drawn, grab it with or without the overlay on top
+    boolean grabbing = frameGrabber != null && frameGrabber.beginFrame();
+    boolean burnIn = grabbing && frameGrabber.includesOverlay();
+    if (grabbing && !burnIn) {
+      frameGrabber.grab(result.timestamp());
+    }
+    if ((burnIn || !captureInProgress.getAsBoolean()) && packHands(result)) {
+      drawOverlay(projectionMatrix);
+    }
+    if (burnIn) {
+      frameGrabber.grab(result.timestamp());
+    }
+    if (frameGrabber != null) {
+      frameGrabber.endFrame();
+    }
+  }
+
+  private void drawOverlay(float[] projectionMatrix) {
+    upload();
+
     GLES20.glUseProgram(program);
     GLES20.glUniformMatrix4fv(projectionMatrixHandle, 1, false, projectionMatrix, 0);
     GLES20.glLineWidth(CONNECTION_THICKNESS);
+    GLES20.glUniform1f(pointSizeHandle, LANDMARK_POINT_SIZE);
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
+    GLES20.glEnableVertexAttribArray(positionHandle);
+    GLES20.glVertexAttribPointer(
+        positionHandle, OverlayVertexBatch.FLOATS_PER_VERTEX, GLES20.GL_FLOAT, false, 0, 0);
+
+    // Same order as upload(): left lines, right lines, left points, right points.
+    GLES20.glUniform1i(roundPointHandle, 0);
+    int first = drawBatch(GLES20.GL_LINES, lineBatches[LEFT], LEFT_HAND_CONNECTION_COLOR, 0);
+    first = drawBatch(GLES20.GL_LINES, lineBatches[RIGHT], RIGHT_HAND_CONNECTION_COLOR, first);
+    GLES20.glUniform1i(roundPointHandle, 1);
+    first = drawBatch(GLES20.GL_POINTS, pointBatches[LEFT], LEFT_HAND_LANDMARK_COLOR, first);
+    drawBatch(GLES20.GL_POINTS, pointBatches[RIGHT], RIGHT_HAND_LANDMARK_COLOR, first);
 
+    // The surface view draws the camera frame from client-side arrays, leave no VBO bound.
+    GLES20.glDisableVertexAttribArray(positionHandle);
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+  }
+
+  /** Packs every detected hand into the batches, returns false if there is nothing to draw. */
+  private boolean packHands(HandsResult result) {
+    for (int side = LEFT; side <= RIGHT; side++) {
+      lineBatches[side].reset();
+      pointBatches[side].reset();
+    }
+    boolean anyHand = false;
     int numHands = result.multiHandLandmarks().size();
     for (int i = 0; i < numHands; ++i) {
-      boolean isLeftHand = result.multiHandedness().get(i).getLabel().equals("Left");
-      drawSquare(
-          result.multiHandLandmarks().get(i).getLandmarkList(),
-          isLeftHand ? LEFT_HAND_CONNECTION_COLOR : RIGHT_HAND_CONNECTION_COLOR);
+      HandsResultFrames.copy(result.multiHandLandmarks().get(i), hand);
+      if (!hand.isPresent()) {
+        continue;
+      }
+      anyHand = true;
+      int side = result.multiHandedness().get(i).getLabel().equals("Left") ? LEFT : RIGHT;
+      if (DRAW_SKELETON) {
+        lineBatches[side].addConnections(hand);
+        pointBatches[side].addPoints(hand);
+      } else {
+        lineBatches[side].addSquare(hand);
+      }
     }
+    return anyHand;
   }
 
-  private List<Pair<Float,Float>> getSquareVertex(List<NormalizedLandmark> handLandmarkList){
-    float max_X = handLandmarkList.get(0).getX();
-    float min_X = handLandmarkList.get(0).getX();
-    float max_Y = handLandmarkList.get(0).getX();
-    float min_Y = handLandmarkList.get(0).getX();
-
-
-    List<Pair<Float,Float>> vertex=new ArrayList<Pair<Float,Float>>();
-
-    for (NormalizedLandmark landmark : handLandmarkList) {
-      if (max_X < landmark.getX())
-        max_X = landmark.getX();
-      if (min_X > landmark.getX())
-        min_X = landmark.getX();
+  private void upload() {
+    int totalFloats =
+        lineBatches[LEFT].floatCount()
+            + lineBatches[RIGHT].floatCount()
+            + pointBatches[LEFT].floatCount()
+            + pointBatches[RIGHT].floatCount();
+    ensureVboCapacity(totalFloats);
+    stagingBuffer.clear();
+    stagingBuffer.put(lineBatches[LEFT].array(), 0, lineBatches[LEFT].floatCount());
+    stagingBuffer.put(lineBatches[RIGHT].array(), 0, lineBatches[RIGHT].floatCount());
+    stagingBuffer.put(pointBatches[LEFT].array(), 0, pointBatches[LEFT].floatCount());
+    stagingBuffer.put(pointBatches[RIGHT].array(), 0, pointBatches[RIGHT].floatCount());
+    stagingBuffer.position(0);
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
+    GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, totalFloats * 4, stagingBuffer);
+  }
 
-      if (max_Y < landmark.getY())
-        max_Y = landmark.getY();
-      if (min_Y > landmark.getY())
-        min_Y = landmark.getY();
+  // (Re)allocates the VBO storage and staging buffer; only happens when the hand count grows.
+  private void ensureVboCapacity(int floats) {
+    if (floats <= vboCapacityFloats) {
+      return;
     }
-
-    vertex.add(new Pair<Float,Float>(min_X,min_Y));
-    vertex.add(new Pair<Float,Float>(max_X,min_Y));
-    vertex.add(new Pair<Float,Float>(max_X,max_Y));
-    vertex.add(new Pair<Float,Float>(min_X,max_Y));
-
-    return vertex;
+    int capacity = Math.max(floats, vboCapacityFloats * 2);
+    stagingBuffer =
+        ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
+    GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, capacity * 4, null, GLES20.GL_DYNAMIC_DRAW);
+    GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    vboCapacityFloats = capacity;
   }
 
-
-  private void drawSquare(List<NormalizedLandmark> handLandmarkList, float[] colorArray) {
-
-    List<Pair<Float,Float>> squareVertex=getSquareVertex(handLandmarkList);
-
-    GLES20.glUniform4fv(colorHandle, 1, colorArray, 0);
-    for (int i = 0; i < squareVertex.size(); i++) {
-      Pair<Float,Float> start = squareVertex.get(i);
-      Pair<Float,Float> end = squareVertex.get((i+1)%4);
-      float[] vertex = {start.first, start.second, end.first, end.second};
-      FloatBuffer vertexBuffer =
-              ByteBuffer.allocateDirect(vertex.length * 4)
-                      .order(ByteOrder.nativeOrder())
-                      .asFloatBuffer()
-                      .put(vertex);
-      vertexBuffer.position(0);
-      GLES20.glEnableVertexAttribArray(positionHandle);
-      GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-      GLES20.glDrawArrays(GLES20.GL_LINES, 0, 2);
+  private int drawBatch(int mode, OverlayVertexBatch batch, float[] colorArray, int first) {
+    int count = batch.vertexCount();
+    if (count > 0) {
+      GLES20.glUniform4fv(colorHandle, 1, colorArray, 0);
+      GLES20.glDrawArrays(mode, first, count);
     }
+    return first + count;
   }
 
-
   /**
-   * Deletes the shader program.
+   * Deletes the shader program, the vertex buffer and the frame grabber's buffers.
    *
    * <p>This is only necessary if one wants to release the program while keeping the context around.
    */
   public void release() {
-    GLES20.glDeleteProgram(program);
-  }
-  /*
-  private void drawConnections(List<NormalizedLandmark> handLandmarkList, float[] colorArray) {
-    GLES20.glUniform4fv(colorHandle, 1, colorArray, 0);
-    for (Hands.Connection c : Hands.HAND_CONNECTIONS) {
-      NormalizedLandmark start = handLandmarkList.get(c.start());
-      NormalizedLandmark end = handLandmarkList.get(c.end());
-      float[] vertex = {start.getX(), start.getY(), end.getX(), end.getY()};
-      FloatBuffer vertexBuffer =
-          ByteBuffer.allocateDirect(vertex.length * 4)
-              .order(ByteOrder.nativeOrder())
-              .asFloatBuffer()
-              .put(vertex);
-      vertexBuffer.position(0);
-      GLES20.glEnableVertexAttribArray(positionHandle);
-      GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-      GLES20.glDrawArrays(GLES20.GL_LINES, 0, 2);
+    if (frameGrabber != null) {
+      frameGrabber.release();
     }
+    GLES20.glDeleteProgram(program);
+    GLES20.glDeleteBuffers(1, vbo, 0);
+    vboCapacityFloats = 0;
   }
-
-
-  private void drawCircle(float x, float y, float[] colorArray) {
-    GLES20.glUniform4fv(colorHandle, 1, colorArray, 0);
-    int vertexCount = NUM_SEGMENTS + 2;
-    float[] vertices = new float[vertexCount * 3];
-    vertices[0] = x;
-    vertices[1] = y;
-    vertices[2] = 0;
-    for (int i = 1; i < vertexCount; i++) {
-      float angle = 2.0f * i * (float) Math.PI / NUM_SEGMENTS;
-      int currentIndex = 3 * i;
-      vertices[currentIndex] = x + (float) (LANDMARK_RADIUS * Math.cos(angle));
-      vertices[currentIndex + 1] = y + (float) (LANDMARK_RADIUS * Math.sin(angle));
-      vertices[currentIndex + 2] = 0;
-    }
-    FloatBuffer vertexBuffer =
-        ByteBuffer.allocateDirect(vertices.length * 4)
-            .order(ByteOrder.nativeOrder())
-            .asFloatBuffer()
-            .put(vertices);
-    vertexBuffer.position(0);
-    GLES20.glEnableVertexAttribArray(positionHandle);
-    GLES20.glVertexAttribPointer(positionHandle, 3, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-    GLES20.glDrawArrays(GLES20.GL_TRIANGLE_FAN, 0, vertexCount);
-  }
-
-  private void drawHollowCircle(float x, float y, float[] colorArray) {
-    GLES20.glUniform4fv(colorHandle, 1, colorArray, 0);
-    int vertexCount = NUM_SEGMENTS + 1;
-    float[] vertices = new float[vertexCount * 3];
-    for (int i = 0; i < vertexCount; i++) {
-      float angle = 2.0f * i * (float) Math.PI / NUM_SEGMENTS;
-      int currentIndex = 3 * i;
-      vertices[currentIndex] = x + (float) (HOLLOW_CIRCLE_RADIUS * Math.cos(angle));
-      vertices[currentIndex + 1] = y + (float) (HOLLOW_CIRCLE_RADIUS * Math.sin(angle));
-      vertices[currentIndex + 2] = 0;
-    }
-    FloatBuffer vertexBuffer =
-        ByteBuffer.allocateDirect(vertices.length * 4)
-            .order(ByteOrder.nativeOrder())
-            .asFloatBuffer()
-            .put(vertices);
-    vertexBuffer.position(0);
-    GLES20.glEnableVertexAttribArray(positionHandle);
-    GLES20.glVertexAttribPointer(positionHandle, 3, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-    GLES20.glDrawArrays(GLES20.GL_LINE_STRIP, 0, vertexCount);
-  }
-*/
-
-
 }
@@ -20,20 +20,10 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.opengl.GLES20;
-import android.util.Pair;
 
 import androidx.appcompat.widget.AppCompatImageView;
-import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
-import com.google.mediapipe.solutions.hands.Hands;
 import com.google.mediapipe.solutions.hands.HandsResult;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.List;
-
 /** An ImageView implementation for displaying {@link HandsResult}. */
 public class HandsResultImageView extends AppCompatImageView {
   private static final String TAG = "HandsResultImageView";
@@ -42,6 +32,8 @@ public class HandsResultImageView extends AppCompatImageView {
   private static final int RIGHT_HAND_CONNECTION_COLOR = Color.parseColor("#c1c1c1");
   private static final int CONNECTION_THICKNESS = 1; // Pixels
   private Bitmap latest;
+  private final HandFrame hand = new HandFrame();
+  private final float[] squareVertex = new float[HandOverlayGeometry.SQUARE_FLOATS];
 
   public HandsResultImageView(Context context) {
     super(context);
@@ -67,8 +59,12 @@ public class HandsResultImageView extends AppCompatImageView {
     canvas.drawBitmap(bmInput, new Matrix(), null);
     int numHands = result.multiHandLandmarks().size();
     for (int i = 0; i < numHands; ++i) {
+      HandsResultFrames.copy(result.multiHandLandmarks().get(i), hand);
+      if (!hand.isPresent()) {
+        continue;
+      }
       drawLandmarksOnCanvas(
-          result.multiHandLandmarks().get(i).getLandmarkList(),
+          hand,
           result.multiHandedness().get(i).getLabel().equals("Left"),
           canvas,
           width,
@@ -84,57 +80,27 @@ public class HandsResultImageView extends AppCompatImageView {
     }
   }
 
-  private List<Pair<Float,Float>> getSquareVertex(List<NormalizedLandmark> handLandmarkList){
-    float max_X = handLandmarkList.get(0).getX();
-    float min_X = handLandmarkList.get(0).getX();
-    float max_Y = handLandmarkList.get(0).getX();
-    float min_Y = handLandmarkList.get(0).getX();
-
-
-    List<Pair<Float,Float>> vertex=new ArrayList<Pair<Float,Float>>();
-
-    for (NormalizedLandmark landmark : handLandmarkList) {
-      if (max_X < landmark.getX())
-        max_X = landmark.getX();
-      if (min_X > landmark.getX())
-        min_X = landmark.getX();
-
-      if (max_Y < landmark.getY())
-        max_Y = landmark.getY();
-      if (min_Y > landmark.getY())
-        min_Y = landmark.getY();
-    }
-
-    vertex.add(new Pair<Float,Float>(min_X,min_Y));
-    vertex.add(new Pair<Float,Float>(max_X,min_Y));
-    vertex.add(new Pair<Float,Float>(max_X,max_Y));
-    vertex.add(new Pair<Float,Float>(min_X,max_Y));
-
-    return vertex;
-  }
-
-
   private void drawLandmarksOnCanvas(
-      List<NormalizedLandmark> handLandmarkList,
+      HandFrame hand,
       boolean isLeftHand,
       Canvas canvas,
       int width,
       int height) {
 
-    List<Pair<Float,Float>> squareVertex=getSquareVertex(handLandmarkList);
+    HandOverlayGeometry.squareVertices(hand, squareVertex);
+    Paint connectionPaint = new Paint();
+    connectionPaint.setColor(
+            isLeftHand ? LEFT_HAND_CONNECTION_COLOR : RIGHT_HAND_CONNECTION_COLOR);
+    connectionPaint.setStrokeWidth(CONNECTION_THICKNESS);
     // Draw connections.
-    for (int i = 0; i < squareVertex.size(); i++) {
-      Paint connectionPaint = new Paint();
-      connectionPaint.setColor(
-              isLeftHand ? LEFT_HAND_CONNECTION_COLOR : RIGHT_HAND_CONNECTION_COLOR);
-      connectionPaint.setStrokeWidth(CONNECTION_THICKNESS);
-      Pair<Float,Float> start = squareVertex.get(i);
-      Pair<Float,Float> end = squareVertex.get((i+1)%4);
+    for (int i = 0; i < 4; i++) {
+      int start = 2 * i;
+      int end = 2 * ((i + 1) % 4);
       canvas.drawLine(
-              start.first * width,
-              start.second * height,
-              end.first * width,
-              end.second * height,
+              squareVertex[start] * width,
+              squareVertex[start + 1] * height,
+              squareVertex[end] * width,
+              squareVertex[end + 1] * height,
               connectionPaint);
     }
   }
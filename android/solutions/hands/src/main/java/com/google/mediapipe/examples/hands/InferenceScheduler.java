@@ -0,0 +1,166 @@
+package com.google.mediapipe.examples.hands;
+
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decides which camera frames are sent to the hand tracker.
+ *
+ * <p>Runs at the {@link Mode#ACTIVE} rate while hands are in view, drops to the {@link Mode#IDLE}
+ * rate once no hand has been seen for a while and to the {@link Mode#CAPTURE} rate while a
+ * countdown or capture is running, when results are ignored anyway. Frames that are not sent never
+ * reach the GPU or the graph.
+ *
+ * <p>{@link #shouldSend(long)} is called from the camera thread and {@link #onResult(boolean,
+ * long)} from the result thread; counters can be read from any thread.
+ */
+public class InferenceScheduler {
+
+    public enum Mode {
+        ACTIVE,
+        IDLE,
+        CAPTURE
+    }
+
+    /** Minimum time between two sent frames per mode. */
+    public static final class Policy {
+        // Interval that sends no frames at all
+        public static final long PAUSE = -1;
+
+        // Every frame, as without a scheduler
+        public static final Policy FULL_RATE = new Policy(0, Long.MAX_VALUE, 0, 0);
+        // Idle at 4 fps after 3 s without a hand, the preview keeps running at 10 fps during captures
+        public static final Policy BALANCED = new Policy(0, 3000, 250, 100);
+        // Idle at 1 fps after 2 s without a hand, no inference during captures
+        public static final Policy POWER_SAVING = new Policy(0, 2000, 1000, PAUSE);
+
+        final long activeIntervalNanos;
+        final long idleAfterNanos;
+        final long idleIntervalNanos;
+        final long captureIntervalNanos;
+
+        public Policy(long activeIntervalMs, long idleAfterMs, long idleIntervalMs, long captureIntervalMs) {
+            this.activeIntervalNanos = toNanos(activeIntervalMs);
+            this.idleAfterNanos = toNanos(idleAfterMs);
+            this.idleIntervalNanos = toNanos(idleIntervalMs);
+            this.captureIntervalNanos = toNanos(captureIntervalMs);
+        }
+
+        /** Preset by preference value: "full", "balanced" or "saver". Unknown names are balanced. */
+        public static Policy forName(String name) {
+            if ("full".equals(name)) {
+                return FULL_RATE;
+            } else if ("saver".equals(name)) {
+                return POWER_SAVING;
+            }
+            return BALANCED;
+        }
+
+        long intervalNanos(Mode mode) {
+            switch (mode) {
+                case IDLE:
+                    return idleIntervalNanos;
+                case CAPTURE:
+                    return captureIntervalNanos;
+                default:
+                    return activeIntervalNanos;
+            }
+        }
+
+        private static long toNanos(long ms) {
+            if (ms < 0) {
+                return PAUSE;
+            }
+            return ms >= Long.MAX_VALUE / 1_000_000L ? Long.MAX_VALUE : ms * 1_000_000L;
+        }
+    }
+
+    private final BooleanSupplier captureInProgress;
+    private volatile Policy policy;
+    private volatile long lastHandNanos;
+    private volatile Mode mode = Mode.ACTIVE;
+
+    // Camera thread only
+    private long lastSentNanos;
+    private boolean sentAny;
+
+    // Single writer each, volatile so the overlay can read them
+    private volatile long framesOffered;
+    private volatile long framesSent;
+    private final long[] skipped = new long[Mode.values().length];
+    private volatile long skippedTotal;
+
+    public InferenceScheduler(Policy policy, BooleanSupplier captureInProgress) {
+        this.policy = policy;
+        this.captureInProgress = captureInProgress;
+        this.lastHandNanos = System.nanoTime();
+    }
+
+    public void setPolicy(Policy policy) {
+        this.policy = policy;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /** Returns true if the frame arriving at {@code nowNanos} should be sent to the tracker. */
+    public boolean shouldSend(long nowNanos) {
+        framesOffered++;
+        Policy current = policy;
+        Mode now;
+        if (captureInProgress.getAsBoolean()) {
+            now = Mode.CAPTURE;
+        } else if (nowNanos - lastHandNanos > current.idleAfterNanos) {
+            now = Mode.IDLE;
+        } else {
+            now = Mode.ACTIVE;
+        }
+        mode = now;
+        long interval = current.intervalNanos(now);
+        if (interval == Policy.PAUSE || (sentAny && nowNanos - lastSentNanos < interval)) {
+            skipped[now.ordinal()]++;
+            skippedTotal++;
+            return false;
+        }
+        sentAny = true;
+        lastSentNanos = nowNanos;
+        framesSent++;
+        return true;
+    }
+
+    /** Reports whether the result of a sent frame contained a hand. */
+    public void onResult(boolean handPresent, long nowNanos) {
+        if (handPresent) {
+            lastHandNanos = nowNanos;
+        }
+    }
+
+    // Mode of the last frame offered
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getFramesOffered() {
+        return framesOffered;
+    }
+
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    public long getFramesSkipped() {
+        return skippedTotal;
+    }
+
+    // Reads of the per-mode counts may be one frame stale, the volatile total is exact
+    public long getFramesSkipped(Mode mode) {
+        return skipped[mode.ordinal()];
+    }
+
+    public String describe() {
+        return String.format(Locale.ROOT, "inference %s, sent %d of %d, skipped active %d idle %d capture %d",
+                mode, framesSent, framesOffered,
+                getFramesSkipped(Mode.ACTIVE), getFramesSkipped(Mode.IDLE), getFramesSkipped(Mode.CAPTURE));
+    }
+}
@@ -0,0 +1,483 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Baseline JPEG encoder that takes the image a few rows at a time.
+ *
+ * <p>{@code Bitmap.compress} needs the whole image as one bitmap. This encoder only holds one MCU
+ * row ({@link #MCU_ROWS} rows of pixels) and writes every finished MCU row to the output stream, so
+ * a photo can be decoded, annotated and encoded band by band with a few hundred KB of memory. The
+ * output is YCbCr 4:2:0 with the standard tables of ITU T.81 Annex K, quality scaled as by libjpeg.
+ *
+ * <p>Rows are ARGB ints as returned by {@code Bitmap.getPixels}; alpha is ignored. Not
+ * thread-safe.
+ */
+public class JpegBandEncoder {
+
+    // Rows of pixels encoded together, rows can be fed in any count
+    public static final int MCU_ROWS = 16;
+
+    private static final int[] ZIGZAG = {
+            0, 1, 5, 6, 14, 15, 27, 28,
+            2, 4, 7, 13, 16, 26, 29, 42,
+            3, 8, 12, 17, 25, 30, 41, 43,
+            9, 11, 18, 24, 31, 40, 44, 53,
+            10, 19, 23, 32, 39, 45, 52, 54,
+            20, 22, 33, 38, 46, 51, 55, 60,
+            21, 34, 37, 47, 50, 56, 59, 61,
+            35, 36, 48, 49, 57, 58, 62, 63
+    };
+
+    // Annex K.1, in natural order
+    private static final int[] LUMINANCE_QUANT = {
+            16, 11, 10, 16, 24, 40, 51, 61,
+            12, 12, 14, 19, 26, 58, 60, 55,
+            14, 13, 16, 24, 40, 57, 69, 56,
+            14, 17, 22, 29, 51, 87, 80, 62,
+            18, 22, 37, 56, 68, 109, 103, 77,
+            24, 35, 55, 64, 81, 104, 113, 92,
+            49, 64, 78, 87, 103, 121, 120, 101,
+            72, 92, 95, 98, 112, 100, 103, 99
+    };
+    private static final int[] CHROMINANCE_QUANT = {
+            17, 18, 24, 47, 99, 99, 99, 99,
+            18, 21, 26, 66, 99, 99, 99, 99,
+            24, 26, 56, 99, 99, 99, 99, 99,
+            47, 66, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99
+    };
+
+    // Annex K.3, code counts per length 1..16 and symbols
+    private static final int[] DC_LUMINANCE_BITS = {0, 1, 5, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] DC_CHROMINANCE_BITS = {0, 3, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0};
+    private static final int[] DC_VALUES = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+    private static final int[] AC_LUMINANCE_BITS = {0, 2, 1, 3, 3, 2, 4, 3, 5, 5, 4, 4, 0, 0, 1, 0x7d};
+    private static final int[] AC_LUMINANCE_VALUES = {
+            0x01, 0x02, 0x03, 0x00, 0x04, 0x11, 0x05, 0x12, 0x21, 0x31, 0x41, 0x06, 0x13, 0x51, 0x61, 0x07,
+            0x22, 0x71, 0x14, 0x32, 0x81, 0x91, 0xa1, 0x08, 0x23, 0x42, 0xb1, 0xc1, 0x15, 0x52, 0xd1, 0xf0,
+            0x24, 0x33, 0x62, 0x72, 0x82, 0x09, 0x0a, 0x16, 0x17, 0x18, 0x19, 0x1a, 0x25, 0x26, 0x27, 0x28,
+            0x29, 0x2a, 0x34, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3a, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48, 0x49,
+            0x4a, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5a, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69,
+            0x6a, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7a, 0x83, 0x84, 0x85, 0x86, 0x87, 0x88, 0x89,
+            0x8a, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9a, 0xa2, 0xa3, 0xa4, 0xa5, 0xa6, 0xa7,
+            0xa8, 0xa9, 0xaa, 0xb2, 0xb3, 0xb4, 0xb5, 0xb6, 0xb7, 0xb8, 0xb9, 0xba, 0xc2, 0xc3, 0xc4, 0xc5,
+            0xc6, 0xc7, 0xc8, 0xc9, 0xca, 0xd2, 0xd3, 0xd4, 0xd5, 0xd6, 0xd7, 0xd8, 0xd9, 0xda, 0xe1, 0xe2,
+            0xe3, 0xe4, 0xe5, 0xe6, 0xe7, 0xe8, 0xe9, 0xea, 0xf1, 0xf2, 0xf3, 0xf4, 0xf5, 0xf6, 0xf7, 0xf8,
+            0xf9, 0xfa
+    };
+    private static final int[] AC_CHROMINANCE_BITS = {0, 2, 1, 2, 4, 4, 3, 4, 7, 5, 4, 4, 0, 1, 2, 0x77};
+    private static final int[] AC_CHROMINANCE_VALUES = {
+            0x00, 0x01, 0x02, 0x03, 0x11, 0x04, 0x05, 0x21, 0x31, 0x06, 0x12, 0x41, 0x51, 0x07, 0x61, 0x71,
+            0x13, 0x22, 0x32, 0x81, 0x08, 0x14, 0x42, 0x91, 0xa1, 0xb1, 0xc1, 0x09, 0x23, 0x33, 0x52, 0xf0,
+            0x15, 0x62, 0x72, 0xd1, 0x0a, 0x16, 0x24, 0x34, 0xe1, 0x25, 0xf1, 0x17, 0x18, 0x19, 0x1a, 0x26,
+            0x27, 0x28, 0x29, 0x2a, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3a, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48,
+            0x49, 0x4a, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5a, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68,
+            0x69, 0x6a, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7a, 0x82, 0x83, 0x84, 0x85, 0x86, 0x87,
+            0x88, 0x89, 0x8a, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9a, 0xa2, 0xa3, 0xa4, 0xa5,
+            0xa6, 0xa7, 0xa8, 0xa9, 0xaa, 0xb2, 0xb3, 0xb4, 0xb5, 0xb6, 0xb7, 0xb8, 0xb9, 0xba, 0xc2, 0xc3,
+            0xc4, 0xc5, 0xc6, 0xc7, 0xc8, 0xc9, 0xca, 0xd2, 0xd3, 0xd4, 0xd5, 0xd6, 0xd7, 0xd8, 0xd9, 0xda,
+            0xe2, 0xe3, 0xe4, 0xe5, 0xe6, 0xe7, 0xe8, 0xe9, 0xea, 0xf2, 0xf3, 0xf4, 0xf5, 0xf6, 0xf7, 0xf8,
+            0xf9, 0xfa
+    };
+
+    // Scale factors of the AAN DCT per row and column
+    private static final double[] AAN_SCALE = {
+            1.0, 1.387039845, 1.306562965, 1.175875602, 1.0, 0.785694958, 0.541196100, 0.275899379
+    };
+
+    private static final int[] DC_LUMINANCE_CODES = new int[12];
+    private static final int[] DC_LUMINANCE_LENGTHS = new int[12];
+    private static final int[] DC_CHROMINANCE_CODES = new int[12];
+    private static final int[] DC_CHROMINANCE_LENGTHS = new int[12];
+    private static final int[] AC_LUMINANCE_CODES = new int[256];
+    private static final int[] AC_LUMINANCE_LENGTHS = new int[256];
+    private static final int[] AC_CHROMINANCE_CODES = new int[256];
+    private static final int[] AC_CHROMINANCE_LENGTHS = new int[256];
+
+    static {
+        buildCodes(DC_LUMINANCE_BITS, DC_VALUES, DC_LUMINANCE_CODES, DC_LUMINANCE_LENGTHS);
+        buildCodes(DC_CHROMINANCE_BITS, DC_VALUES, DC_CHROMINANCE_CODES, DC_CHROMINANCE_LENGTHS);
+        buildCodes(AC_LUMINANCE_BITS, AC_LUMINANCE_VALUES, AC_LUMINANCE_CODES, AC_LUMINANCE_LENGTHS);
+        buildCodes(AC_CHROMINANCE_BITS, AC_CHROMINANCE_VALUES, AC_CHROMINANCE_CODES, AC_CHROMINANCE_LENGTHS);
+    }
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    // Quantization tables in zigzag order as written, and the matching DCT divisors in natural order
+    private final int[] luminanceQuant = new int[64];
+    private final int[] chrominanceQuant = new int[64];
+    private final float[] luminanceDivisors = new float[64];
+    private final float[] chrominanceDivisors = new float[64];
+
+    // One MCU row of ARGB pixels, padded to whole MCUs
+    private final int paddedWidth;
+    private final int[] rows;
+    private int bufferedRows;
+    private int rowsReceived;
+
+    private final float[] block = new float[64];
+    private final int[] quantized = new int[64];
+    private int previousY;
+    private int previousCb;
+    private int previousCr;
+
+    // Entropy coder output
+    private final byte[] buffer = new byte[16 * 1024];
+    private int bufferLength;
+    private int bitBuffer;
+    private int bitCount;
+    private boolean finished;
+
+    /**
+     * Writes the JPEG headers to {@code out} and prepares to take {@code height} rows.
+     *
+     * @param quality 1 to 100 as for {@code Bitmap.compress}
+     */
+    public JpegBandEncoder(OutputStream out, int width, int height, int quality) throws IOException {
+        if (width <= 0 || height <= 0 || width > 0xffff || height > 0xffff) {
+            throw new IllegalArgumentException("Unsupported JPEG size " + width + "x" + height);
+        }
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        paddedWidth = (width + MCU_ROWS - 1) / MCU_ROWS * MCU_ROWS;
+        rows = new int[paddedWidth * MCU_ROWS];
+        initQuantTables(Math.max(1, Math.min(quality, 100)));
+        writeHeaders();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRowsReceived() {
+        return rowsReceived;
+    }
+
+    /**
+     * Adds the next {@code count} rows, {@link #getWidth()} ARGB pixels each, starting at
+     * {@code offset} with {@code stride} ints from one row to the next. Every completed MCU row is
+     * encoded and written right away.
+     */
+    public void writeRows(int[] pixels, int offset, int stride, int count) throws IOException {
+        if (finished || rowsReceived + count > height) {
+            throw new IllegalStateException("Expected " + (height - rowsReceived) + " more rows, got " + count);
+        }
+        for (int r = 0; r < count; r++) {
+            int dst = bufferedRows * paddedWidth;
+            System.arraycopy(pixels, offset + r * stride, rows, dst, width);
+            // Repeat the last column into the padding, edges encode without ringing
+            int last = rows[dst + width - 1];
+            for (int x = width; x < paddedWidth; x++) {
+                rows[dst + x] = last;
+            }
+            bufferedRows++;
+            rowsReceived++;
+            if (bufferedRows == MCU_ROWS) {
+                encodeMcuRow();
+            }
+        }
+    }
+
+    /** Encodes the last rows and writes the end of image marker; does not close the stream. */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (rowsReceived != height) {
+            throw new IllegalStateException("Expected " + height + " rows, got " + rowsReceived);
+        }
+        if (bufferedRows > 0) {
+            // Repeat the last row into the padding of the final MCU row
+            int last = (bufferedRows - 1) * paddedWidth;
+            for (int r = bufferedRows; r < MCU_ROWS; r++) {
+                System.arraycopy(rows, last, rows, r * paddedWidth, paddedWidth);
+            }
+            encodeMcuRow();
+        }
+        // Pad the last byte with ones
+        if (bitCount > 0) {
+            writeBits(0xff, 8 - bitCount);
+        }
+        flushBuffer();
+        out.write(0xff);
+        out.write(0xd9);
+        out.flush();
+        finished = true;
+    }
+
+    private void encodeMcuRow() throws IOException {
+        for (int x = 0; x < paddedWidth; x += MCU_ROWS) {
+            previousY = encodeLuminance(x, 0, previousY);
+            previousY = encodeLuminance(x + 8, 0, previousY);
+            previousY = encodeLuminance(x, 8, previousY);
+            previousY = encodeLuminance(x + 8, 8, previousY);
+            previousCb = encodeChrominance(x, true, previousCb);
+            previousCr = encodeChrominance(x, false, previousCr);
+        }
+        bufferedRows = 0;
+        flushBuffer();
+    }
+
+    private int encodeLuminance(int left, int top, int previousDc) throws IOException {
+        for (int y = 0; y < 8; y++) {
+            int src = (top + y) * paddedWidth + left;
+            for (int x = 0; x < 8; x++) {
+                int argb = rows[src + x];
+                int r = (argb >> 16) & 0xff;
+                int g = (argb >> 8) & 0xff;
+                int b = argb & 0xff;
+                block[y * 8 + x] = 0.299f * r + 0.587f * g + 0.114f * b - 128f;
+            }
+        }
+        return encodeBlock(luminanceDivisors, previousDc,
+                DC_LUMINANCE_CODES, DC_LUMINANCE_LENGTHS, AC_LUMINANCE_CODES, AC_LUMINANCE_LENGTHS);
+    }
+
+    // One chrominance block of a 16x16 MCU, every sample the mean of 2x2 pixels
+    private int encodeChrominance(int left, boolean blue, int previousDc) throws IOException {
+        for (int y = 0; y < 8; y++) {
+            int src = 2 * y * paddedWidth + left;
+            for (int x = 0; x < 8; x++) {
+                int p = src + 2 * x;
+                int r = 0;
+                int g = 0;
+                int b = 0;
+                for (int i = 0; i < 4; i++) {
+                    int argb = rows[p + (i >> 1) * paddedWidth + (i & 1)];
+                    r += (argb >> 16) & 0xff;
+                    g += (argb >> 8) & 0xff;
+                    b += argb & 0xff;
+                }
+                block[y * 8 + x] = blue
+                        ? 0.25f * (-0.168736f * r - 0.331264f * g + 0.5f * b)
+                        : 0.25f * (0.5f * r - 0.418688f * g - 0.081312f * b);
+            }
+        }
+        return encodeBlock(chrominanceDivisors, previousDc,
+                DC_CHROMINANCE_CODES, DC_CHROMINANCE_LENGTHS, AC_CHROMINANCE_CODES, AC_CHROMINANCE_LENGTHS);
+    }
+
+    // Transforms, quantizes and entropy codes the block, returns its DC value
+    private int encodeBlock(float[] divisors, int previousDc,
+                            int[] dcCodes, int[] dcLengths, int[] acCodes, int[] acLengths) throws IOException {
+        forwardDct(block);
+        for (int i = 0; i < 64; i++) {
+            quantized[ZIGZAG[i]] = Math.round(block[i] * divisors[i]);
+        }
+
+        int dc = quantized[0];
+        int diff = dc - previousDc;
+        int category = category(diff);
+        writeBits(dcCodes[category], dcLengths[category]);
+        if (category > 0) {
+            writeBits(diff < 0 ? diff - 1 : diff, category);
+        }
+
+        int run = 0;
+        for (int i = 1; i < 64; i++) {
+            int value = quantized[i];
+            if (value == 0) {
+                run++;
+                continue;
+            }
+            while (run >= 16) {
+                writeBits(acCodes[0xf0], acLengths[0xf0]);
+                run -= 16;
+            }
+            category = category(value);
+            int symbol = (run << 4) | category;
+            writeBits(acCodes[symbol], acLengths[symbol]);
+            writeBits(value < 0 ? value - 1 : value, category);
+            run = 0;
+        }
+        if (run > 0) {
+            writeBits(acCodes[0], acLengths[0]);
+        }
+        return dc;
+    }
+
+    // Number of bits of the magnitude of value
+    private static int category(int value) {
+        return 32 - Integer.numberOfLeadingZeros(Math.abs(value));
+    }
+
+    private void writeBits(int value, int length) throws IOException {
+        bitBuffer = (bitBuffer << length) | (value & ((1 << length) - 1));
+        bitCount += length;
+        while (bitCount >= 8) {
+            int b = (bitBuffer >> (bitCount - 8)) & 0xff;
+            if (bufferLength + 2 > buffer.length) {
+                flushBuffer();
+            }
+            buffer[bufferLength++] = (byte) b;
+            if (b == 0xff) {
+                // Byte stuffing, 0xff in entropy data is followed by 0
+                buffer[bufferLength++] = 0;
+            }
+            bitCount -= 8;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, bufferLength);
+        bufferLength = 0;
+    }
+
+    // AAN forward DCT in place, output scaled by AAN_SCALE as folded into the divisors
+    private static void forwardDct(float[] data) {
+        for (int pass = 0; pass < 2; pass++) {
+            // Rows first, then columns
+            int step = pass == 0 ? 1 : 8;
+            int next = pass == 0 ? 8 : 1;
+            for (int i = 0, base = 0; i < 8; i++, base += next) {
+                float d0 = data[base];
+                float d1 = data[base + step];
+                float d2 = data[base + 2 * step];
+                float d3 = data[base + 3 * step];
+                float d4 = data[base + 4 * step];
+                float d5 = data[base + 5 * step];
+                float d6 = data[base + 6 * step];
+                float d7 = data[base + 7 * step];
+
+                float tmp0 = d0 + d7;
+                float tmp7 = d0 - d7;
+                float tmp1 = d1 + d6;
+                float tmp6 = d1 - d6;
+                float tmp2 = d2 + d5;
+                float tmp5 = d2 - d5;
+                float tmp3 = d3 + d4;
+                float tmp4 = d3 - d4;
+
+                // Even part
+                float tmp10 = tmp0 + tmp3;
+                float tmp13 = tmp0 - tmp3;
+                float tmp11 = tmp1 + tmp2;
+                float tmp12 = tmp1 - tmp2;
+                data[base] = tmp10 + tmp11;
+                data[base + 4 * step] = tmp10 - tmp11;
+                float z1 = (tmp12 + tmp13) * 0.707106781f;
+                data[base + 2 * step] = tmp13 + z1;
+                data[base + 6 * step] = tmp13 - z1;
+
+                // Odd part
+                tmp10 = tmp4 + tmp5;
+                tmp11 = tmp5 + tmp6;
+                tmp12 = tmp6 + tmp7;
+                float z5 = (tmp10 - tmp12) * 0.382683433f;
+                float z2 = 0.541196100f * tmp10 + z5;
+                float z4 = 1.306562965f * tmp12 + z5;
+                float z3 = tmp11 * 0.707106781f;
+                float z11 = tmp7 + z3;
+                float z13 = tmp7 - z3;
+                data[base + 5 * step] = z13 + z2;
+                data[base + 3 * step] = z13 - z2;
+                data[base + step] = z11 + z4;
+                data[base + 7 * step] = z11 - z4;
+            }
+        }
+    }
+
+    private void initQuantTables(int quality) {
+        int scale = quality < 50 ? 5000 / quality : 200 - 2 * quality;
+        for (int i = 0; i < 64; i++) {
+            luminanceQuant[ZIGZAG[i]] = clampQuant((LUMINANCE_QUANT[i] * scale + 50) / 100);
+            chrominanceQuant[ZIGZAG[i]] = clampQuant((CHROMINANCE_QUANT[i] * scale + 50) / 100);
+        }
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                int i = row * 8 + col;
+                double aan = AAN_SCALE[row] * AAN_SCALE[col] * 8.0;
+                luminanceDivisors[i] = (float) (1.0 / (luminanceQuant[ZIGZAG[i]] * aan));
+                chrominanceDivisors[i] = (float) (1.0 / (chrominanceQuant[ZIGZAG[i]] * aan));
+            }
+        }
+    }
+
+    private static int clampQuant(int value) {
+        return Math.max(1, Math.min(value, 255));
+    }
+
+    private static void buildCodes(int[] bits, int[] values, int[] codes, int[] lengths) {
+        int code = 0;
+        int k = 0;
+        for (int length = 1; length <= 16; length++) {
+            for (int i = 0; i < bits[length - 1]; i++) {
+                codes[values[k]] = code;
+                lengths[values[k]] = length;
+                k++;
+                code++;
+            }
+            code <<= 1;
+        }
+    }
+
+    private void writeHeaders() throws IOException {
+        // SOI and JFIF APP0, 1:1 aspect ratio
+        writeBytes(0xff, 0xd8,
+                0xff, 0xe0, 0, 16, 'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0);
+
+        // DQT, both tables
+        writeBytes(0xff, 0xdb, 0, 2 + 2 * 65);
+        writeByte(0);
+        for (int q : luminanceQuant) {
+            writeByte(q);
+        }
+        writeByte(1);
+        for (int q : chrominanceQuant) {
+            writeByte(q);
+        }
+
+        // SOF0: 8 bit, Y sampled 2x2, Cb and Cr 1x1
+        writeBytes(0xff, 0xc0, 0, 17, 8,
+                height >> 8, height & 0xff, width >> 8, width & 0xff, 3,
+                1, 0x22, 0, 2, 0x11, 1, 3, 0x11, 1);
+
+        // DHT, all four tables
+        int length = 2;
+        length += 17 + DC_VALUES.length;
+        length += 17 + AC_LUMINANCE_VALUES.length;
+        length += 17 + DC_VALUES.length;
+        length += 17 + AC_CHROMINANCE_VALUES.length;
+        writeBytes(0xff, 0xc4, length >> 8, length & 0xff);
+        writeHuffmanTable(0x00, DC_LUMINANCE_BITS, DC_VALUES);
+        writeHuffmanTable(0x10, AC_LUMINANCE_BITS, AC_LUMINANCE_VALUES);
+        writeHuffmanTable(0x01, DC_CHROMINANCE_BITS, DC_VALUES);
+        writeHuffmanTable(0x11, AC_CHROMINANCE_BITS, AC_CHROMINANCE_VALUES);
+
+        // SOS, Y with tables 0, Cb and Cr with tables 1, full spectral range
+        writeBytes(0xff, 0xda, 0, 12, 3, 1, 0x00, 2, 0x11, 3, 0x11, 0, 63, 0);
+        flushBuffer();
+    }
+
+    private void writeHuffmanTable(int classAndId, int[] bits, int[] values) {
+        writeByte(classAndId);
+        for (int count : bits) {
+            writeByte(count);
+        }
+        for (int value : values) {
+            writeByte(value);
+        }
+    }
+
+    // Header bytes, only called while the buffer is far from full
+    private void writeBytes(int... bytes) {
+        for (int b : bytes) {
+            writeByte(b);
+        }
+    }
+
+    private void writeByte(int b) {
+        buffer[bufferLength++] = (byte) b;
+    }
+}
@@ -0,0 +1,150 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Brute-force k-nearest-neighbour classifier over labelled samples stored row by row in one
+ * contiguous {@code float[]}.
+ *
+ * <p>The squared distance to a sample is accumulated one landmark at a time and abandoned as soon
+ * as it exceeds the current k-th best, so most samples of other gestures are rejected after a few
+ * landmarks. Neighbours vote with weight {@code 1 / (1 + squared distance)}; the confidence is the
+ * winner's share of the votes, scaled down when fewer than k samples lie within the maximum
+ * distance.
+ */
+public final class KnnGestureModel extends GestureModel {
+
+    // Far more neighbours than any useful vote, keeps a corrupt k from sizing the scratch arrays
+    public static final int MAX_K = 256;
+
+    private final int k;
+    private final float maxDistanceSquared;
+    private final int sampleCount;
+    private final int[] sampleLabels;
+    private final float[] samples;
+
+    // Scratch, see GestureModel
+    private final float[] bestDistances;
+    private final int[] bestLabels;
+    private final float[] votes;
+
+    KnnGestureModel(String[] labels, int featureSize, int k, float maxDistance, int[] sampleLabels, float[] samples) {
+        super(labels, featureSize);
+        if (k < 1 || k > MAX_K || samples.length != sampleLabels.length * featureSize) {
+            throw new IllegalArgumentException("Expected k in [1, " + MAX_K + "] and " + sampleLabels.length + " x "
+                    + featureSize + " sample values, got k=" + k + " and " + samples.length);
+        }
+        for (int label : sampleLabels) {
+            if (label < 0 || label >= labels.length) {
+                throw new IllegalArgumentException("Sample label out of range: " + label);
+            }
+        }
+        this.k = k;
+        this.maxDistanceSquared = maxDistance * maxDistance;
+        this.sampleCount = sampleLabels.length;
+        this.sampleLabels = sampleLabels;
+        this.samples = samples;
+        this.bestDistances = new float[k];
+        this.bestLabels = new int[k];
+        this.votes = new float[labels.length];
+    }
+
+    @Override
+    public void classify(float[] features, Prediction out) {
+        int found = 0;
+        float limit = maxDistanceSquared;
+        for (int s = 0, base = 0; s < sampleCount; s++, base += featureSize) {
+            float distance = 0f;
+            int j = 0;
+            while (j < featureSize && distance < limit) {
+                int end = Math.min(j + HandFrame.STRIDE, featureSize);
+                for (; j < end; j++) {
+                    float diff = features[j] - samples[base + j];
+                    distance += diff * diff;
+                }
+            }
+            if (distance >= limit) {
+                continue;
+            }
+            // Insertion into the sorted k best
+            int i = found < k ? found++ : k - 1;
+            while (i > 0 && bestDistances[i - 1] > distance) {
+                bestDistances[i] = bestDistances[i - 1];
+                bestLabels[i] = bestLabels[i - 1];
+                i--;
+            }
+            bestDistances[i] = distance;
+            bestLabels[i] = sampleLabels[s];
+            if (found == k) {
+                limit = bestDistances[k - 1];
+            }
+        }
+        if (found == 0) {
+            out.set(-1, 0f);
+            return;
+        }
+
+        Arrays.fill(votes, 0f);
+        float total = 0f;
+        for (int i = 0; i < found; i++) {
+            float weight = 1f / (1f + bestDistances[i]);
+            votes[bestLabels[i]] += weight;
+            total += weight;
+        }
+        int winner = 0;
+        for (int label = 1; label < votes.length; label++) {
+            if (votes[label] > votes[winner]) {
+                winner = label;
+            }
+        }
+        out.set(winner, votes[winner] / total * found / k);
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    @Override
+    byte type() {
+        return TYPE_KNN;
+    }
+
+    @Override
+    int bodyBytes() {
+        return 4 + 4 + 4 + sampleCount * 4 + samples.length * 4;
+    }
+
+    @Override
+    void writeBody(ByteBuffer out) {
+        out.putInt(k).putFloat((float) Math.sqrt(maxDistanceSquared)).putInt(sampleCount);
+        for (int label : sampleLabels) {
+            out.putInt(label);
+        }
+        putFloats(out, samples);
+    }
+
+    static KnnGestureModel read(String[] labels, int featureSize, ByteBuffer in) throws IOException {
+        int k = in.getInt();
+        float maxDistance = in.getFloat();
+        int sampleCount = in.getInt();
+        if (sampleCount < 0 || (long) sampleCount * (featureSize + 1) * 4 > in.remaining()) {
+            throw new IOException("Gesture model is truncated, expected " + sampleCount + " samples");
+        }
+        int[] sampleLabels = new int[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            sampleLabels[i] = in.getInt();
+        }
+        float[] samples = getFloats(in, sampleCount * featureSize);
+        try {
+            return new KnnGestureModel(labels, featureSize, k, maxDistance, sampleLabels, samples);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid gesture model: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.google.mediapipe.examples.hands;
+
+/**
+ * Flattens a hand into the feature vector used by {@link GestureModel}.
+ *
+ * <p>Landmarks 1 to 20 are taken relative to the wrist and divided by the palm size (wrist to
+ * middle finger MCP), so the vector does not depend on where the hand is or how far it is from the
+ * camera. Left hands are mirrored in x, so one model serves both hands.
+ *
+ * <p>Fingertips come first and the knuckles last: tips differ the most between gestures, so
+ * {@link KnnGestureModel}'s partial distances pass the k-th best early.
+ */
+public final class LandmarkFeatures {
+
+    public static final int SIZE = (HandFrame.NUM_LANDMARKS - 1) * HandFrame.STRIDE;
+
+    // Middle finger MCP
+    private static final int PALM_LANDMARK = 9;
+    private static final float MIN_PALM_SIZE = 1e-6f;
+    // Feature order: tips, DIP, PIP and MCP joints, each thumb to pinky
+    private static final int[] ORDER = {
+            4, 8, 12, 16, 20,
+            3, 7, 11, 15, 19,
+            2, 6, 10, 14, 18,
+            1, 5, 9, 13, 17
+    };
+
+    private LandmarkFeatures() {
+    }
+
+    /**
+     * Writes the features of {@code hand} into {@code out}.
+     *
+     * @return false if the hand is missing or degenerate, {@code out} is not written then
+     */
+    public static boolean extract(HandFrame hand, float[] out) {
+        if (!hand.isPresent()) {
+            return false;
+        }
+        float[] c = hand.coords();
+        float ox = c[0];
+        float oy = c[1];
+        float oz = c[2];
+        int palm = PALM_LANDMARK * HandFrame.STRIDE;
+        float px = c[palm] - ox;
+        float py = c[palm + 1] - oy;
+        float pz = c[palm + 2] - oz;
+        float palmSize = (float) Math.sqrt(px * px + py * py + pz * pz);
+        if (!(palmSize > MIN_PALM_SIZE)) {
+            return false;
+        }
+        float scale = 1f / palmSize;
+        float scaleX = hand.isLeftHand() ? -scale : scale;
+        for (int l = 0, o = 0; l < ORDER.length; l++, o += HandFrame.STRIDE) {
+            int i = ORDER[l] * HandFrame.STRIDE;
+            out[o] = (c[i] - ox) * scaleX;
+            out[o + 1] = (c[i + 1] - oy) * scale;
+            out[o + 2] = (c[i + 2] - oz) * scale;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,97 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes {@link MultiHandFrame}s to a compact binary recording that {@link LandmarkReplay} can
+ * play back without a camera.
+ *
+ * <p>Format, little-endian:
+ *
+ * <pre>
+ * header:  int magic 'GCLM' | short version | short landmarks per hand | long start wall time (ms)
+ * frame:   long timestamp (us) | byte hand count
+ *          per hand: byte handedness (1 = left) | byte flags (1 = world landmarks present)
+ *                    landmarks x 3 floats normalized | landmarks x 3 floats world
+ * </pre>
+ *
+ * Frames are staged in a direct buffer and written to the {@link FileChannel} in large chunks, so
+ * {@link #writeFrame(long, MultiHandFrame)} does no I/O for most frames and never allocates.
+ */
+public class LandmarkRecorder implements Closeable {
+
+    static final int MAGIC = 0x4D4C4347; // "GCLM" read as little-endian bytes
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 4 + 2 + 2 + 8;
+    static final int FRAME_HEADER_BYTES = 8 + 1;
+    static final int HAND_BYTES = 1 + 1 + 2 * HandFrame.NUM_LANDMARKS * HandFrame.STRIDE * 4;
+    static final int MAX_FRAME_BYTES = FRAME_HEADER_BYTES + MultiHandFrame.MAX_HANDS * HAND_BYTES;
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private long frameCount;
+
+    public LandmarkRecorder(File output) throws IOException {
+        file = new RandomAccessFile(output, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        buffer.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) HandFrame.NUM_LANDMARKS)
+                .putLong(System.currentTimeMillis());
+    }
+
+    public synchronized void writeFrame(long timestampUs, MultiHandFrame frame) throws IOException {
+        if (buffer.remaining() < MAX_FRAME_BYTES) {
+            drain();
+        }
+        int handCount = frame.handCount();
+        buffer.putLong(timestampUs).put((byte) handCount);
+        for (int i = 0; i < handCount; i++) {
+            HandFrame hand = frame.hand(i);
+            HandFrame world = frame.worldHand(i);
+            buffer.put((byte) (hand.isLeftHand() ? 1 : 0));
+            buffer.put((byte) (world.isPresent() ? 1 : 0));
+            putCoords(hand.coords());
+            putCoords(world.coords());
+        }
+        frameCount++;
+    }
+
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            drain();
+            channel.force(false);
+        } finally {
+            file.close();
+        }
+    }
+
+    private void putCoords(float[] coords) {
+        for (float value : coords) {
+            buffer.putFloat(value);
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
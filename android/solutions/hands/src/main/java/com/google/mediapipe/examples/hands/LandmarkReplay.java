@@ -0,0 +1,105 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a recording written by {@link LandmarkRecorder} through a memory-mapped buffer.
+ *
+ * <p>Frames are decoded straight from the mapping into a caller-owned {@link MultiHandFrame}, so
+ * replaying allocates nothing per frame and is bounded by memory bandwidth, not by file I/O.
+ */
+public class LandmarkReplay implements Closeable {
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final long startTimeMs;
+    private long timestampUs;
+
+    public LandmarkReplay(File input) throws IOException {
+        file = new RandomAccessFile(input, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < LandmarkRecorder.HEADER_BYTES
+                    || buffer.getInt() != LandmarkRecorder.MAGIC) {
+                throw new IOException("Not a landmark recording: " + input);
+            }
+            short version = buffer.getShort();
+            short landmarks = buffer.getShort();
+            if (version != LandmarkRecorder.VERSION || landmarks != HandFrame.NUM_LANDMARKS) {
+                throw new IOException("Unsupported recording version " + version + " with "
+                        + landmarks + " landmarks: " + input);
+            }
+            startTimeMs = buffer.getLong();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Decodes the next frame into {@code frame}.
+     *
+     * @return false at the end of the recording; a truncated last frame is treated as the end
+     */
+    public boolean next(MultiHandFrame frame) {
+        if (buffer.remaining() < LandmarkRecorder.FRAME_HEADER_BYTES) {
+            return false;
+        }
+        int start = buffer.position();
+        long timestamp = buffer.getLong();
+        int handCount = buffer.get() & 0xFF;
+        if (handCount > MultiHandFrame.MAX_HANDS
+                || buffer.remaining() < handCount * LandmarkRecorder.HAND_BYTES) {
+            buffer.position(start);
+            return false;
+        }
+        for (int i = 0; i < handCount; i++) {
+            HandFrame hand = frame.hand(i);
+            HandFrame world = frame.worldHand(i);
+            boolean left = buffer.get() == 1;
+            boolean hasWorld = buffer.get() == 1;
+            getCoords(hand.coords());
+            getCoords(world.coords());
+            hand.setLeftHand(left);
+            hand.setPresent(true);
+            world.setLeftHand(left);
+            world.setPresent(hasWorld);
+        }
+        frame.setHandCount(handCount);
+        frame.setTimestampUs(timestamp);
+        timestampUs = timestamp;
+        return true;
+    }
+
+    // Timestamp of the frame last returned by next(), in microseconds
+    public long getTimestampUs() {
+        return timestampUs;
+    }
+
+    public long getStartTimeMs() {
+        return startTimeMs;
+    }
+
+    public void rewind() {
+        buffer.position(LandmarkRecorder.HEADER_BYTES);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void getCoords(float[] coords) {
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = buffer.getFloat();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Softmax regression: one weight row and bias per label, the confidence is the winner's softmax
+ * probability. Costs one dot product per label.
+ */
+public final class LinearGestureModel extends GestureModel {
+
+    private final float[] weights;
+    private final float[] bias;
+    private final float[] scores;
+
+    LinearGestureModel(String[] labels, int featureSize, float[] weights, float[] bias) {
+        super(labels, featureSize);
+        if (weights.length != labels.length * featureSize || bias.length != labels.length) {
+            throw new IllegalArgumentException("Expected " + labels.length + " x " + featureSize
+                    + " weights and " + labels.length + " biases, got " + weights.length + " and " + bias.length);
+        }
+        this.weights = weights;
+        this.bias = bias;
+        this.scores = new float[labels.length];
+    }
+
+    @Override
+    public void classify(float[] features, Prediction out) {
+        int winner = 0;
+        for (int label = 0, row = 0; label < scores.length; label++, row += featureSize) {
+            float score = bias[label];
+            for (int j = 0; j < featureSize; j++) {
+                score += weights[row + j] * features[j];
+            }
+            scores[label] = score;
+            if (score > scores[winner]) {
+                winner = label;
+            }
+        }
+        float sum = 0f;
+        for (float score : scores) {
+            sum += (float) Math.exp(score - scores[winner]);
+        }
+        out.set(winner, 1f / sum);
+    }
+
+    @Override
+    byte type() {
+        return TYPE_LINEAR;
+    }
+
+    @Override
+    int bodyBytes() {
+        return (weights.length + bias.length) * 4;
+    }
+
+    @Override
+    void writeBody(ByteBuffer out) {
+        putFloats(out, weights);
+        putFloats(out, bias);
+    }
+
+    static LinearGestureModel read(String[] labels, int featureSize, ByteBuffer in) throws IOException {
+        if ((long) labels.length * (featureSize + 1) * 4 > in.remaining()) {
+            throw new IOException("Gesture model is truncated, expected " + labels.length + " weight rows");
+        }
+        float[] weights = getFloats(in, labels.length * featureSize);
+        float[] bias = getFloats(in, labels.length);
+        return new LinearGestureModel(labels, featureSize, weights, bias);
+    }
+}
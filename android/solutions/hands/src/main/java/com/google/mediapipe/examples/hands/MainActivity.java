@@ -15,20 +15,21 @@
 package com.google.mediapipe.examples.hands;
 
 import android.annotation.SuppressLint;
-import android.content.ContentResolver;
 import android.content.ContentValues;
-import android.content.SharedPreferences;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.CountDownTimer;
 import android.preference.PreferenceManager;
 import android.provider.MediaStore;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.Display;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.FrameLayout;
@@ -38,9 +39,14 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.camera.core.Camera;
 import androidx.camera.core.CameraSelector;
+import androidx.camera.core.DisplayOrientedMeteringPointFactory;
+import androidx.camera.core.FocusMeteringAction;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.MeteringPointFactory;
 import androidx.camera.core.Preview;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.core.content.ContextCompat;
@@ -53,8 +59,6 @@ import android.widget.ImageView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.mediapipe.components.CameraXPreviewHelper;
-import com.google.mediapipe.formats.proto.LandmarkProto.Landmark;
-import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
 import com.google.mediapipe.solutioncore.CameraInput;
 import com.google.mediapipe.solutioncore.SolutionGlSurfaceView;
 import com.google.mediapipe.solutions.hands.HandLandmark;
@@ -62,13 +66,19 @@ import com.google.mediapipe.solutions.hands.Hands;
 import com.google.mediapipe.solutions.hands.HandsOptions;
 import com.google.mediapipe.solutions.hands.HandsResult;
 
-import java.io.FileNotFoundException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.lang.reflect.Field;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
-import java.util.Set;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 /**
@@ -78,8 +88,6 @@ public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
     // Run the pipeline and the model inference on GPU or CPU.
     private static final boolean RUN_ON_GPU = true;
-    // Denotes activation of the counter previous to the shot
-    public static boolean captureFlag = false;
     // Counter var for previous to the shot
     public int counter;
     // Last Gesture registered
@@ -89,19 +97,125 @@ public class MainActivity extends AppCompatActivity {
     // init settings screen
     public PrefScreen prefFragment = new PrefScreen();
     private Hands hands;
+    private HandsOptions handsOptions;
+    // Graph being built or taken over from HandsHolder, see onHandsReady
+    private CompletableFuture<Hands> handsFuture;
+    private boolean resumed;
     private InputSource inputSource = InputSource.UNKNOWN;
     // the selfie camera will be shown on start-up
-    private CameraInput.CameraFacing cameraFaceMediapipe = CameraInput.CameraFacing.FRONT;
-    private int cameraFaceCameraX = CameraSelector.LENS_FACING_FRONT;
+    private CameraSession cameraSession;
     // Live camera demo UI and camera components.
     private CameraInput cameraInput;
     private SolutionGlSurfaceView<HandsResult> glSurfaceView;
     // Gesture pausing between recognition and shot
     private TextView timer;
-    private ListenableFuture<ProcessCameraProvider> cameraProviderFuture;
+    // Null when photos are grabbed from the preview instead
     private ImageCapture imageCapture;
+    private static final String CAPTURE_SOURCE_PREF_KEY = "capture_source_pref";
+    private static final String CAPTURE_OVERLAY_PREF_KEY = "capture_overlay_pref";
+    private boolean capturePreviewFrames;
+    private boolean captureOverlay;
+    // Snapshots frames drawn by glSurfaceView, recreated with the pipeline
+    private GlFrameGrabber frameGrabber;
 
     private String curGesture = HandGesture.UNDEFINED.toString();
+    private final StringBuilder gestureText = new StringBuilder();
+    // Classifies results off the UI thread
+    private GestureAnalyzer gestureAnalyzer;
+    // Gestures selected in the settings, kept in sync with the preferences
+    private final GestureTriggers gestureTriggers = new GestureTriggers();
+    private static final String RECORD_PREF_KEY = "record_pref";
+    // Set while the landmark recording debug option is on
+    private volatile LandmarkRecorder landmarkRecorder;
+    // Per-stage latency of the pipeline, dumped to logcat on pause
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics();
+    private static final String METRICS_OVERLAY_PREF_KEY = "metrics_overlay_pref";
+    private static final long METRICS_OVERLAY_INTERVAL_MS = 1000;
+    private TextView metricsOverlay;
+    private final Runnable metricsOverlayTask = this::updateMetricsOverlay;
+    // Start of the running countdown, 0 for captures started with the button
+    private long triggerNanos;
+    // Per-frame logging, rate limited and only formatted when enabled
+    private final Diagnostics diagnostics = new Diagnostics(
+            TAG, BuildConfig.DEBUG ? Diagnostics.DEBUG : Diagnostics.INFO, (priority, tag, message) -> Log.println(priority, tag, message));
+    private static final String LANDMARK_LOG_PREF_KEY = "landmark_log_pref";
+    private static final String GESTURE_RULES_ASSET = "gestures.txt";
+    // Optional learned classifier in the app files folder, see GestureSamples for training
+    private static final String GESTURE_MODEL_FILE = "gesture_model.bin";
+    private static final float GESTURE_MODEL_MIN_CONFIDENCE = 0.6f;
+    private static final String INFERENCE_POLICY_PREF_KEY = "inference_policy_pref";
+    private static final long COUNTDOWN_MS = 3000;
+    private static final long COOLDOWN_MS = 2000;
+    private static final String COUNTDOWN_RELEASE_PREF_KEY = "countdown_release_pref";
+    // The countdown is cancelled once the gesture has not been seen for this long, if enabled
+    private static final long COUNTDOWN_RELEASE_MS = 700;
+    // Countdown, capture and cooldown, driven by sequencerTask on the main thread
+    private final CaptureSequencer captureSequencer = new CaptureSequencer(COUNTDOWN_MS, COOLDOWN_MS,
+            new CaptureSequencer.Listener() {
+                @Override
+                public void onStateChanged(CaptureSequencer.State from, CaptureSequencer.State to) {
+                    onCaptureStateChanged(from, to);
+                }
+
+                @Override
+                public void onCountdownTick(int secondsLeft) {
+                    showCountdown(secondsLeft);
+                }
+
+                @Override
+                public void onCapture(HandGesture gesture) {
+                    startCapture(gesture);
+                }
+            });
+    private final Runnable sequencerTask = this::runSequencer;
+    // Throttles the frames sent to Hands, no inference while results would be ignored
+    // Captures keep tracking at the normal rate, to see whether the gesture is still held and to
+    // draw the frames preview captures are taken from
+    private final InferenceScheduler inferenceScheduler =
+            new InferenceScheduler(InferenceScheduler.Policy.BALANCED, () -> !captureSequencer.needsResults());
+    // Both are only used from the result thread
+    private final Diagnostics.Channel resultLog = diagnostics.channel("Camera activation", Diagnostics.DEBUG, 5000);
+    private final Diagnostics.Channel wristLog = diagnostics.channel("Wrist", Diagnostics.DEBUG, 500);
+    // Stable gesture changes for consumers outside the capture flow
+    private static final int GESTURE_EVENT_CAPACITY = 64;
+    private final GestureEventBus gestureEvents = new GestureEventBus(GESTURE_EVENT_CAPACITY);
+    private final Diagnostics.Channel gestureEventLog = diagnostics.channel("Gesture event", Diagnostics.DEBUG, 0);
+    private GestureEventBus.Subscription gestureEventLogSubscription;
+    // Streams gestureEvents to controller apps on the device
+    private static final String GESTURE_SERVER_PREF_KEY = "gesture_server_pref";
+    private static final int GESTURE_SERVER_PORT = 28470;
+    private static final int GESTURE_SERVER_MAX_CLIENTS = 4;
+    private GestureEventServer gestureServer;
+    private long resultCount;
+    // Buffers of annotated photos, at most one full-resolution photo stays idle between picks
+    private final BitmapPool bitmapPool = new BitmapPool(Runtime.getRuntime().maxMemory() / 4);
+    // Labels picked photos, photos over an eighth of the heap are processed in 1 MB bands
+    private PhotoAnnotator photoAnnotator;
+    private static final long PHOTO_BAND_BYTES = 1024 * 1024;
+    // Encodes and writes photos off the UI thread, at most a few at a time
+    private PhotoSaveQueue photoSaveQueue;
+    private static final int PHOTO_SAVE_QUEUE_CAPACITY = 4;
+    private static final String JPEG_QUALITY_PREF_KEY = "jpeg_quality_pref";
+    // ImageCapture results, kept off the main thread
+    private final ExecutorService captureCallbacks =
+            Executors.newSingleThreadExecutor(r -> new Thread(r, "CaptureCallbacks"));
+    private final float[] handBox = new float[4];
+    private static final String BURST_SHOTS_PREF_KEY = "burst_shots_pref";
+    private static final String BURST_INTERVAL_PREF_KEY = "burst_interval_pref";
+    // Shots the camera may still be exposing while the next one is requested
+    private static final int BURST_MAX_IN_FLIGHT = 2;
+    // The burst ends once the gesture has not been seen for this long
+    private static final long BURST_RELEASE_MS = 500;
+    private static final long BURST_POLL_MS = 20;
+    private int burstShots = 1;
+    private long burstIntervalMs = 250;
+    // Running burst, only touched on the main thread
+    private BurstController burst;
+    private String burstName;
+    private final Runnable burstTask = this::runBurst;
+    // Picked photo and its label, bmp_save only holds the downsampled preview
+    private Uri pickedPhoto;
+    private PhotoAnnotator.Label pickedLabel;
 
 
     @Override
@@ -109,6 +223,7 @@ public class MainActivity extends AppCompatActivity {
         if (getSupportFragmentManager().getBackStackEntryCount() > 0) {
             findViewById(R.id.ParentLayout).setVisibility(View.VISIBLE);
             getSupportFragmentManager().popBackStack(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+            applyPreferences();
         } else {
             super.onBackPressed();
         }
@@ -133,16 +248,28 @@ public class MainActivity extends AppCompatActivity {
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
+    pipelineMetrics.reach(PipelineMetrics.Milestone.CREATED);
+    gestureTriggers.attach(PreferenceManager.getDefaultSharedPreferences(this));
+    // Start the graph and CameraX before inflating anything, both take longer than the views
+    handsOptions = buildHandsOptions();
+    handsFuture = HandsHolder.acquire(this, handsOptions);
+    ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(this);
+    cameraSession = new CameraSession(
+            this, cameraProviderFuture, getExecutor(), pipelineMetrics, CameraSelector.LENS_FACING_FRONT);
     setContentView(R.layout.activity_main);
     Objects.requireNonNull(getSupportActionBar()).hide();
+    loadGestureRules();
     setupLiveDemoUiComponents();
 
     assignViews();
+    photoAnnotator = new PhotoAnnotator(
+            getContentResolver(), bitmapPool, Runtime.getRuntime().maxMemory() / 8, PHOTO_BAND_BYTES);
+    photoSaveQueue = new PhotoSaveQueue(PHOTO_SAVE_QUEUE_CAPACITY, getExecutor(), pipelineMetrics);
 
     _btn_map_depot.setOnClickListener(new Button.OnClickListener() {
       @Override
       public void onClick(View v) {
-          if(!captureFlag) {
+          if(!captureSequencer.isBusy()) {
               Intent intent = new Intent();
               /* 开启Pictures画面Type设定为image */
               intent.setType("image/*");
@@ -163,12 +290,32 @@ public class MainActivity extends AppCompatActivity {
         _btn_save_img.setVisibility(View.INVISIBLE);
         _btn_save_cen.setVisibility(View.INVISIBLE);
         _btn_map_depot.setVisibility(View.INVISIBLE);
-        captureFlag = false;
+        captureSequencer.arm();
 
         long unixTime = System.currentTimeMillis() / 1000;
         String timestamp = Long.toString(unixTime);
-        MediaStore.Images.Media.insertImage(getContentResolver(), bmp_save, timestamp, "description");
-        Toast.makeText(MainActivity.this, "Photo has been saved successfully to " + MediaStore.Images.Media.EXTERNAL_CONTENT_URI.getPath(), Toast.LENGTH_SHORT).show();
+        bitmapPool.release(bmp_save);
+        bmp_save = null;
+        Uri photo = pickedPhoto;
+        PhotoAnnotator.Label label = pickedLabel;
+        boolean queued = photoSaveQueue.offer(
+                quality -> photoAnnotator.saveToMediaStore(photo, label, timestamp, quality),
+                new PhotoSaveQueue.Callback<Uri>() {
+                  @Override
+                  public void onSaved(Uri result) {
+                    Toast.makeText(MainActivity.this, "Photo has been saved successfully to " + MediaStore.Images.Media.EXTERNAL_CONTENT_URI.getPath(), Toast.LENGTH_SHORT).show();
+                  }
+
+                  @Override
+                  public void onFailed(Exception error) {
+                    bitmapPool.clear();
+                    Log.e(TAG, "Cannot save " + photo, error);
+                    Toast.makeText(MainActivity.this, "The photo could not be saved", Toast.LENGTH_SHORT).show();
+                  }
+                });
+        if (!queued) {
+          Toast.makeText(MainActivity.this, "Still saving earlier photos, try again", Toast.LENGTH_SHORT).show();
+        }
       }
     });
 
@@ -180,7 +327,9 @@ public class MainActivity extends AppCompatActivity {
             _btn_save_img.setVisibility(View.INVISIBLE);
             _btn_save_cen.setVisibility(View.INVISIBLE);
             _btn_map_depot.setVisibility(View.INVISIBLE);
-            captureFlag = false;
+            captureSequencer.arm();
+            bitmapPool.release(bmp_save);
+            bmp_save = null;
         }
     });
   }
@@ -193,25 +342,134 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        if (inputSource == InputSource.CAMERA) {
-            // Restarts the camera and the opengl surface rendering.
-            cameraInput = new CameraInput(this);
-
-            cameraInput.setNewFrameListener(textureFrame -> hands.send(textureFrame));
-            glSurfaceView.post(this::startCamera);
-            glSurfaceView.setVisibility(View.VISIBLE);
+        resumed = true;
+        // Until the graph is ready, or while it is rebuilt, there is no pipeline and inputSource is
+        // UNKNOWN; onHandsReady starts the camera then
+        if (inputSource == InputSource.CAMERA && hands != null) {
+            startCameraInput();
         }
+        applyPreferences();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        resumed = false;
+        // Frees the port before a restarted activity resumes, applyPreferences starts it again
+        setGestureServerEnabled(false);
+        // The camera is detached below, a burst would only collect failed shots
+        stopBurst();
         if (inputSource == InputSource.CAMERA) {
             glSurfaceView.setVisibility(View.GONE);
+            stopCameraInput();
+        }
+        if (metricsOverlay != null) {
+            metricsOverlay.removeCallbacks(metricsOverlayTask);
+        }
+        Log.i(TAG, "Pipeline latency in ms\n" + pipelineMetrics.dump() + "\n" + inferenceScheduler.describe()
+                + "\n" + photoSaveQueue.describe());
+    }
+
+    // Restarts the camera and the opengl surface rendering, the graph keeps running
+    private void startCameraInput() {
+        CameraInput input = new CameraInput(this);
+        cameraInput = input;
+        setFrameListener();
+        glSurfaceView.post(() -> {
+            // Skipped if stopped or restarted before the view got to it
+            if (cameraInput == input) {
+                startCamera();
+            }
+        });
+        glSurfaceView.setVisibility(View.VISIBLE);
+    }
+
+    private void stopCameraInput() {
+        cameraSession.detach();
+        if (cameraInput != null) {
+            cameraInput.setNewFrameListener(null);
             cameraInput.close();
+            cameraInput = null;
+        }
+    }
+
+    private void setFrameListener() {
+        cameraInput.setNewFrameListener(textureFrame -> {
+            cameraSession.onFrame();
+            if (!inferenceScheduler.shouldSend(System.nanoTime())) {
+                // Skipped frames have to be handed back to the camera's texture pool
+                textureFrame.release();
+                return;
+            }
+            pipelineMetrics.frameIn(textureFrame.getTimestamp());
+            hands.send(textureFrame);
+        });
+    }
+
+    // Options from the settings screen that apply without a restart, on resume and when leaving the settings
+    private void applyPreferences() {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        inferenceScheduler.setPolicy(InferenceScheduler.Policy.forName(sharedPrefs.getString(INFERENCE_POLICY_PREF_KEY, null)));
+        wristLog.setEnabled(sharedPrefs.getBoolean(LANDMARK_LOG_PREF_KEY, false));
+        gestureEventLog.setEnabled(sharedPrefs.getBoolean(LANDMARK_LOG_PREF_KEY, false));
+        showMetricsOverlay(sharedPrefs.getBoolean(METRICS_OVERLAY_PREF_KEY, false));
+        capturePreviewFrames = "preview".equals(sharedPrefs.getString(CAPTURE_SOURCE_PREF_KEY, "camera"));
+        captureOverlay = sharedPrefs.getBoolean(CAPTURE_OVERLAY_PREF_KEY, false);
+        if (frameGrabber != null) {
+            frameGrabber.setIncludeOverlay(captureOverlay);
+        }
+        captureSequencer.setReleaseMs(sharedPrefs.getBoolean(COUNTDOWN_RELEASE_PREF_KEY, false) ? COUNTDOWN_RELEASE_MS : 0);
+        burstShots = Integer.parseInt(sharedPrefs.getString(BURST_SHOTS_PREF_KEY, "1"));
+        burstIntervalMs = Long.parseLong(sharedPrefs.getString(BURST_INTERVAL_PREF_KEY, "250"));
+        photoSaveQueue.setJpegQuality(Integer.parseInt(
+                sharedPrefs.getString(JPEG_QUALITY_PREF_KEY, Integer.toString(PhotoSaveQueue.DEFAULT_JPEG_QUALITY))));
+        setGestureServerEnabled(sharedPrefs.getBoolean(GESTURE_SERVER_PREF_KEY, false));
+        // Without a graph there is nothing to record yet, setupStreamingModePipeline starts it then
+        if (!sharedPrefs.getBoolean(RECORD_PREF_KEY, false)) {
+            stopLandmarkRecording();
+        } else if (hands != null) {
+            startLandmarkRecording();
+        }
+        rebuildHandsIfNeeded();
+    }
+
+    private void setGestureServerEnabled(boolean enabled) {
+        if (enabled && gestureServer == null) {
+            try {
+                gestureServer = new GestureEventServer(gestureEvents, GESTURE_SERVER_PORT, GESTURE_SERVER_MAX_CLIENTS);
+                Log.i(TAG, "Serving gesture events on 127.0.0.1:" + gestureServer.getPort());
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot serve gesture events on port " + GESTURE_SERVER_PORT, e);
+                Toast.makeText(this, "Gesture events cannot be served, port " + GESTURE_SERVER_PORT + " is taken",
+                        Toast.LENGTH_SHORT).show();
+            }
+        } else if (!enabled && gestureServer != null) {
+            gestureServer.close();
+            gestureServer = null;
         }
     }
 
+    // Shows the latency percentiles on top of the preview, refreshed once a second
+    private void showMetricsOverlay(boolean show) {
+        if (metricsOverlay == null) {
+            return;
+        }
+        metricsOverlay.removeCallbacks(metricsOverlayTask);
+        if (show) {
+            metricsOverlay.setVisibility(View.VISIBLE);
+            updateMetricsOverlay();
+        } else {
+            metricsOverlay.setVisibility(View.GONE);
+        }
+    }
+
+    private void updateMetricsOverlay() {
+        metricsOverlay.setText(pipelineMetrics.dump() + "\n" + inferenceScheduler.describe() + "\n" + photoSaveQueue.describe()
+                + (gestureServer != null ? "\n" + gestureServer.describe() : ""));
+        metricsOverlay.bringToFront();
+        metricsOverlay.postDelayed(metricsOverlayTask, METRICS_OVERLAY_INTERVAL_MS);
+    }
+
 
   /** Sets up the UI components for the live demo with camera input. */
   private void setupLiveDemoUiComponents() {
@@ -220,79 +478,97 @@ public class MainActivity extends AppCompatActivity {
       btn.setOnClickListener(new View.OnClickListener() {
           @Override
           public void onClick(View v) {
-              if(!captureFlag)
+              if(!captureSequencer.isBusy())
               replaceFragment(prefFragment);
           }
       });
 
       timer = (TextView) findViewById(R.id.timer);
+      metricsOverlay = findViewById(R.id.metricsOverlay);
 
 
       FloatingActionButton cameraFaceButton = findViewById(R.id.cameraFaceButton);
       cameraFaceButton.setOnClickListener(
               v -> {
-                  if (cameraFaceMediapipe == CameraInput.CameraFacing.FRONT) {
-                      cameraFaceMediapipe = CameraInput.CameraFacing.BACK;
-                      cameraFaceCameraX = CameraSelector.LENS_FACING_BACK;
-                  } else {
-                      cameraFaceMediapipe = CameraInput.CameraFacing.FRONT;
-                      cameraFaceCameraX = CameraSelector.LENS_FACING_FRONT;
+                  int facing = cameraSession.getLensFacing() == CameraSelector.LENS_FACING_FRONT
+                          ? CameraSelector.LENS_FACING_BACK
+                          : CameraSelector.LENS_FACING_FRONT;
+                  if (!resumed || inputSource != InputSource.CAMERA) {
+                      cameraSession.setLensFacing(facing);
+                  } else if (!cameraSession.switchFacing(facing)) {
+                      // Not attached yet or the lenses differ too much, reopen only the camera,
+                      // the graph and the surface stay
+                      cameraSession.setLensFacing(facing);
+                      stopCameraInput();
+                      startCameraInput();
                   }
-                  cameraInput.close();
-                  this.onResume();
               });
 
       FloatingActionButton takePictureButton = findViewById(R.id.takePictureButton);
       takePictureButton.setOnClickListener(button -> capturePhoto());
 
       stopCurrentPipeline();
-      setupStreamingModePipeline(InputSource.CAMERA);
+      handsFuture.whenCompleteAsync(this::onHandsReady, getExecutor());
   }
 
-    ///////////////////////////////
-    //// SETTINGS: GESTURE SELECTION ////
-    /////////////////////////////
+    private void onHandsReady(Hands readyHands, Throwable error) {
+        if (isDestroyed()) {
+            // onDestroy parks the graph
+            return;
+        }
+        if (error != null) {
+            Log.e(TAG, "Cannot start MediaPipe Hands", error);
+            Toast.makeText(this, "Hand tracking could not be started", Toast.LENGTH_LONG).show();
+            return;
+        }
+        pipelineMetrics.reach(PipelineMetrics.Milestone.HANDS_READY);
+        setupStreamingModePipeline(InputSource.CAMERA, readyHands);
+        // The hand count may have changed while the graph was built
+        rebuildHandsIfNeeded();
+    }
 
+    private HandsOptions buildHandsOptions() {
+        return HandsOptions.builder()
+                .setStaticImageMode(false)
+                .setMaxNumHands(gestureTriggers.getMaxHands())
+                .setRunOnGpu(RUN_ON_GPU)
+                .build();
+    }
 
-    // Unicode emoji to String
-    private String getEmoji(int unicode) {
-        return new String(Character.toChars(unicode));
+    // The graph tracks a fixed number of hands, another count from the settings needs a new graph
+    private void rebuildHandsIfNeeded() {
+        if (hands == null || handsOptions.maxNumHands() == gestureTriggers.getMaxHands()) {
+            return;
+        }
+        stopCurrentPipeline();
+        handsOptions = buildHandsOptions();
+        // HandsHolder closes the graph parked above, it was built with other options
+        handsFuture = HandsHolder.acquire(this, handsOptions);
+        handsFuture.whenCompleteAsync(this::onHandsReady, getExecutor());
     }
 
+    ///////////////////////////////
+    //// SETTINGS: GESTURE SELECTION ////
+    /////////////////////////////
+
 
     /**
      * Sets up core workflow for streaming mode.
      */
-    private void setupStreamingModePipeline(InputSource inputSource) {
+    private void setupStreamingModePipeline(InputSource inputSource, Hands readyHands) {
         this.inputSource = inputSource;
-        // Initializes a new MediaPipe Hands solution instance in the streaming mode.
-        hands =
-                new Hands(
-                        this,
-                        HandsOptions.builder()
-                                .setStaticImageMode(false)
-                                .setMaxNumHands(1)
-                                .setRunOnGpu(RUN_ON_GPU)
-                                .build());
+        // A MediaPipe Hands solution instance in the streaming mode, built in the background
+        hands = readyHands;
         hands.setErrorListener((message, e) -> Log.e(TAG, "MediaPipe Hands error:" + message));
 
-        if (inputSource == InputSource.CAMERA) {
-            cameraInput = new CameraInput(this);
-            cameraInput.setNewFrameListener(textureFrame -> hands.send(textureFrame));
-        }
-
         // Initializes a new Gl surface view with a user-defined HandsResultGlRenderer.
         glSurfaceView =
                 new SolutionGlSurfaceView<>(this, hands.getGlContext(), hands.getGlMajorVersion());
-        glSurfaceView.setSolutionResultRenderer(new HandsResultGlRenderer());
+        frameGrabber = new GlFrameGrabber(hands.getGlMajorVersion());
+        frameGrabber.setIncludeOverlay(captureOverlay);
+        glSurfaceView.setSolutionResultRenderer(new HandsResultGlRenderer(frameGrabber, captureSequencer::isBusy));
         glSurfaceView.setRenderInputImage(true);
 
-        // The runnable to start camera after the gl surface view is attached.
-        // For video input source, videoInput.start() will be called when the video uri is available.
-        if (inputSource == InputSource.CAMERA) {
-            glSurfaceView.post(this::startCamera);
-        }
-
         // Updates the preview layout.
         FrameLayout constraintLayout = findViewById(R.id.preview_display_layout);
         constraintLayout.removeAllViewsInLayout();
@@ -300,184 +576,569 @@ public class MainActivity extends AppCompatActivity {
         glSurfaceView.setVisibility(View.VISIBLE);
         constraintLayout.requestLayout();
 
-        hands.setResultListener(handsResult -> {
+        // Starts the camera once the gl surface view is attached, onResume does it if not resumed yet.
+        // For video input source, videoInput.start() will be called when the video uri is available.
+        if (inputSource == InputSource.CAMERA && resumed) {
+            startCameraInput();
+        }
+
+        if (gestureAnalyzer != null) {
+            gestureAnalyzer.setEventBus(null);
+            gestureAnalyzer.close();
+        }
+        GestureAnalyzer analyzer = new GestureAnalyzer(
+                getExecutor(),
+                gestureTriggers,
+                captureSequencer::isBusy,
+                pipelineMetrics,
+                new GestureAnalyzer.Listener() {
+                    @Override
+                    public void onGesturesChanged(HandGesture[] gestures, int handCount) {
+                        showGestures(gestures, handCount);
+                    }
+
+                    @Override
+                    public void onGestureTriggered(HandGesture gesture) {
+                        startCountdown(gesture);
+                    }
+                });
+        analyzer.setModel(loadGestureModel(), GESTURE_MODEL_MIN_CONFIDENCE);
+        analyzer.setEventBus(gestureEvents);
+        if (gestureEventLogSubscription == null) {
+            gestureEventLogSubscription = gestureEvents.subscribe(
+                    GestureEventBus.OverflowPolicy.DROP_OLDEST, getExecutor(), this::logGestureEvent);
+        }
+        gestureAnalyzer = analyzer;
+        startLandmarkRecording();
 
-            TextView recognizedGesture = findViewById(R.id.recognizedGesture);
+        hands.setResultListener(handsResult -> {
 
             glSurfaceView.setRenderData(handsResult);
             glSurfaceView.requestRender();
 
-            logWristLandmark(handsResult, /*showPixelValues=*/ false);
-
-            runOnUiThread(() -> {
-                if (!captureFlag) {
-                    lastGesture = HandGesture.UNDEFINED;
-                    lastGesture = GestureDetect.handGestureCalculator(handsResult.multiHandLandmarks(), lastGesture);
-                    try {
-                        recognizedGesture.setText(getEmoji(GestureDetect.gestureEmojis.get(lastGesture)));
-                        curGesture = (String) recognizedGesture.getText();
-                    } catch (Exception e) {
-                        recognizedGesture.setText("");
-                        e.printStackTrace();
-                    }
+            resultCount++;
+            if (resultLog.begin()) {
+                resultLog.append(resultCount).append(" results").emit();
+            }
 
-                    recognizedGesture.setTextColor(Color.parseColor("#FFFFFF"));
-                    recognizedGesture.invalidate();
-                    recognizedGesture.requestLayout();
-                    recognizedGesture.bringToFront();
-                    Log.i(TAG, "Camera activation");
-
-                    SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
-                    Set<String> selectedGesturesHex = sharedPrefs.getStringSet("emoji_pref", null);
-                    Set<Integer> selectedGesturesInt = new HashSet<>();
-                    try {
-                        selectedGesturesHex.forEach(x -> selectedGesturesInt.add(
-                                Integer.parseInt(x.replaceFirst("0x", ""), 16)));
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
+            // Copy the landmarks on the result thread, classification happens on the analyzer worker
+            long receivedNanos = pipelineMetrics.resultOut(handsResult.timestamp());
+            MultiHandFrame frame = analyzer.beginFrame();
+            HandsResultFrames.copyHands(handsResult, frame);
+            frame.setTimestampUs(handsResult.timestamp());
+            frame.setReceivedNanos(receivedNanos);
+            inferenceScheduler.onResult(frame.handCount() > 0, receivedNanos);
+            logWristLandmark(frame);
+            recordLandmarks(handsResult.timestamp(), frame);
+            analyzer.publishFrame();
+        });
+    }
 
+    private void logGestureEvent(GestureEventBus.Event event) {
+        if (gestureEventLog.begin()) {
+            gestureEventLog.append("hand ").append(event.getHand()).append(' ').append(event.getGesture().name())
+                    .append(' ').append(event.getConfidence(), 2)
+                    .append(" frame ").append(event.getFrameId())
+                    .append(" lost ").append(gestureEventLogSubscription.getLost())
+                    .emit();
+        }
+    }
 
-                    if (selectedGesturesInt.contains(GestureDetect.gestureEmojis.get(lastGesture))) {
-                        captureFlag = true;
-                        new CountDownTimer(3000, 1000) {
-                            public void onTick(long millisUntilFinished) {
-                                timer.setVisibility(View.VISIBLE);
-                                timer.setText(String.valueOf(1 + millisUntilFinished / 1000));
-                                timer.setTextColor(Color.parseColor("#FFFFFF"));
-                                timer.invalidate();
-                                timer.requestLayout();
-                                timer.bringToFront();
-                                counter++;
-                            }
-
-                            public void onFinish() {
-                                capturePhoto();
-                                counter = 0;
-                                timer.setVisibility(View.GONE);
-                                lastGesture = HandGesture.UNDEFINED;
-                                new CountDownTimer(2000, 1000) {
-                                    public void onTick(long l) {
-                                        Log.i(TAG, "extra timer is called");
-
-                                    }
-
-                                    public void onFinish() {
-                                        Log.i(TAG, "extra timer is called");
-                                        captureFlag = false;
-                                    }
-                                }.start();
-                            }
-                        }.start();
+    // Debug option: writes every result to a recording that LandmarkReplay can play back offline
+    private void startLandmarkRecording() {
+        if (landmarkRecorder != null
+                || !PreferenceManager.getDefaultSharedPreferences(this).getBoolean(RECORD_PREF_KEY, false)) {
+            return;
+        }
+        File output = new File(getExternalFilesDir(null), "landmarks-" + System.currentTimeMillis() + ".gclm");
+        try {
+            landmarkRecorder = new LandmarkRecorder(output);
+            Log.i(TAG, "Recording landmarks to " + output);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not start landmark recording", e);
+        }
+    }
+
+    // Runs on the result thread
+    private void recordLandmarks(long timestampUs, MultiHandFrame frame) {
+        LandmarkRecorder recorder = landmarkRecorder;
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.writeFrame(timestampUs, frame);
+        } catch (IOException e) {
+            Log.e(TAG, "Landmark recording failed, stopping it", e);
+            stopLandmarkRecording();
+        }
+    }
+
+    private void stopLandmarkRecording() {
+        LandmarkRecorder recorder = landmarkRecorder;
+        landmarkRecorder = null;
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.close();
+            Log.i(TAG, "Recorded " + recorder.getFrameCount() + " landmark frames");
+        } catch (IOException e) {
+            Log.e(TAG, "Could not finish landmark recording", e);
+        }
+    }
+
+    // One emoji per tracked hand, in the order MediaPipe reports the hands
+    private void showGestures(HandGesture[] gestures, int handCount) {
+        if (captureSequencer.isBusy()) {
+            return;
+        }
+        lastGesture = handCount > 0 ? gestures[0] : HandGesture.UNDEFINED;
+        gestureText.setLength(0);
+        for (int i = 0; i < handCount; i++) {
+            // UNDEFINED has no emoji
+            Integer emoji = GestureDetect.gestureEmojis.get(gestures[i]);
+            if (emoji != null) {
+                gestureText.appendCodePoint(emoji);
+            }
+        }
+        TextView recognizedGesture = findViewById(R.id.recognizedGesture);
+        recognizedGesture.setText(gestureText);
+        if (gestureText.length() > 0) {
+            curGesture = gestureText.toString();
+        }
+
+        recognizedGesture.setTextColor(Color.parseColor("#FFFFFF"));
+        recognizedGesture.invalidate();
+        recognizedGesture.requestLayout();
+        recognizedGesture.bringToFront();
+    }
+
+    private void startCountdown(HandGesture gesture) {
+        long now = System.nanoTime();
+        if (!captureSequencer.trigger(gesture, now)) {
+            return;
+        }
+        triggerNanos = now;
+        runSequencer();
+    }
+
+    // Advances the countdown or cooldown and reschedules itself for whatever is due next
+    private void runSequencer() {
+        long now = System.nanoTime();
+        long seenNanos = gestureAnalyzer != null ? gestureAnalyzer.getWatchedSeenNanos() : now;
+        scheduleSequencer(captureSequencer.tick(now, seenNanos), now);
+    }
+
+    private void scheduleSequencer(long dueNanos, long now) {
+        timer.removeCallbacks(sequencerTask);
+        if (dueNanos != CaptureSequencer.NO_DEADLINE) {
+            timer.postDelayed(sequencerTask, Math.max(0, (dueNanos - now + 999_999) / 1_000_000));
+        }
+    }
+
+    private void onCaptureStateChanged(CaptureSequencer.State from, CaptureSequencer.State to) {
+        if (to == CaptureSequencer.State.COUNTDOWN) {
+            if (captureSequencer.cancelsOnRelease() && gestureAnalyzer != null) {
+                gestureAnalyzer.watchHeld(captureSequencer.getGesture());
+            }
+            startFocusAndMetering();
+        } else if (from == CaptureSequencer.State.COUNTDOWN) {
+            counter = 0;
+            timer.setVisibility(View.GONE);
+            lastGesture = HandGesture.UNDEFINED;
+            if (gestureAnalyzer != null) {
+                gestureAnalyzer.watchHeld(HandGesture.UNDEFINED);
+            }
+            if (to != CaptureSequencer.State.CAPTURING) {
+                // Released or disarmed
+                triggerNanos = 0;
+                cancelFocusAndMetering();
+            }
+        } else if (from == CaptureSequencer.State.CAPTURING) {
+            cancelFocusAndMetering();
+        }
+    }
+
+    private void showCountdown(int secondsLeft) {
+        timer.setVisibility(View.VISIBLE);
+        timer.setText(String.valueOf(secondsLeft));
+        timer.setTextColor(Color.parseColor("#FFFFFF"));
+        timer.invalidate();
+        timer.requestLayout();
+        timer.bringToFront();
+        counter++;
+    }
+
+    private void startCapture(HandGesture gesture) {
+        pipelineMetrics.record(PipelineMetrics.Stage.CAPTURE_REQUESTED, triggerNanos);
+        triggerNanos = 0;
+        if (burstShots > 1) {
+            startBurst(gesture);
+        } else {
+            capturePhoto();
+            captureSequencer.captureFinished(System.nanoTime());
+        }
+    }
+
+    // Focuses and meters on the first hand while the countdown runs, so the shot does not wait for
+    // it. Only possible when the app bound the camera itself.
+    private void startFocusAndMetering() {
+        Camera bound = cameraSession.getCamera();
+        Display display = glSurfaceView != null ? glSurfaceView.getDisplay() : null;
+        if (bound == null || imageCapture == null || display == null) {
+            return;
+        }
+        float x = 0.5f;
+        float y = 0.5f;
+        if (gestureAnalyzer != null && gestureAnalyzer.copyHandBoxes(handBox) > 0 && handBox[2] > handBox[0]) {
+            x = (handBox[0] + handBox[2]) / 2;
+            y = (handBox[1] + handBox[3]) / 2;
+        }
+        // Hand boxes are in the coordinates of the displayed preview
+        MeteringPointFactory factory = new DisplayOrientedMeteringPointFactory(display, bound.getCameraInfo(), 1f, 1f);
+        FocusMeteringAction action = new FocusMeteringAction.Builder(
+                factory.createPoint(x, y), FocusMeteringAction.FLAG_AF | FocusMeteringAction.FLAG_AE)
+                .disableAutoCancel()
+                .build();
+        bound.getCameraControl().startFocusAndMetering(action);
+    }
+
+    private void cancelFocusAndMetering() {
+        Camera bound = cameraSession.getCamera();
+        if (bound != null) {
+            bound.getCameraControl().cancelFocusAndMetering();
+        }
+    }
+
+    private void startBurst(HandGesture gesture) {
+        BurstController controller = new BurstController(burstShots, burstIntervalMs, BURST_MAX_IN_FLIGHT);
+        burstName = Long.toString(System.currentTimeMillis() / 1000);
+        if (gestureAnalyzer != null) {
+            gestureAnalyzer.watchHeld(gesture);
+        }
+        controller.start(System.nanoTime());
+        burst = controller;
+        runBurst();
+    }
+
+    // Requests the shots that are due, then reschedules itself until the burst is over
+    private void runBurst() {
+        BurstController controller = burst;
+        if (controller == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        // Without an analyzer, e.g. while the graph is rebuilt, the gesture counts as released
+        boolean held = gestureAnalyzer != null
+                && now - gestureAnalyzer.getWatchedSeenNanos() < BURST_RELEASE_MS * 1_000_000L;
+        if (controller.shouldShoot(now, held, photoSaveQueue.hasCapacity())) {
+            captureBurstShot(controller, now);
+        }
+        if (controller.isFinished()) {
+            endBurst(controller, now);
+            return;
+        }
+        long untilNextMs = (controller.getNextShotNanos() - now) / 1_000_000L;
+        timer.postDelayed(burstTask, Math.max(1, Math.min(untilNextMs, BURST_POLL_MS)));
+    }
+
+    // Ends the burst now, shots already in the camera or the save queue still finish
+    private void stopBurst() {
+        BurstController controller = burst;
+        if (controller != null) {
+            timer.removeCallbacks(burstTask);
+            Log.i(TAG, "Burst stopped early");
+            endBurst(controller, System.nanoTime());
+        }
+    }
+
+    private void endBurst(BurstController controller, long now) {
+        if (gestureAnalyzer != null) {
+            gestureAnalyzer.watchHeld(HandGesture.UNDEFINED);
+        }
+        burst = null;
+        Log.i(TAG, controller.describe());
+        scheduleSequencer(captureSequencer.captureFinished(now), now);
+    }
+
+    // In-memory capture: the camera buffer is freed as soon as the JPEG is copied, writing it
+    // overlaps with the next exposure
+    private void captureBurstShot(BurstController controller, long now) {
+        PhotoSaveQueue.Ticket ticket = photoSaveQueue.tryReserve();
+        if (ticket == null) {
+            return;
+        }
+        controller.onShotRequested(now);
+        String name = burstName + "_" + controller.getRequested();
+        if (imageCapture == null) {
+            capturePreviewFrame(ticket, name, controller);
+            return;
+        }
+        imageCapture.takePicture(captureCallbacks, new ImageCapture.OnImageCapturedCallback() {
+            @Override
+            public void onCaptureSuccess(@NonNull ImageProxy image) {
+                long capturedNanos = System.nanoTime();
+                byte[] jpeg;
+                try {
+                    jpeg = jpegBytes(image);
+                } finally {
+                    image.close();
+                }
+                runOnUiThread(() -> controller.onShotCaptured(capturedNanos));
+                if (jpeg == null) {
+                    ticket.fail();
+                    return;
+                }
+                // Camera JPEGs are stored as they are, the quality setting is for re-encoded photos
+                ticket.submit(
+                        quality -> MediaStoreWriter.insertJpeg(getContentResolver(), name, out -> out.write(jpeg)),
+                        shotSaved(name, controller, 0));
+            }
+
+            @Override
+            public void onError(@NonNull ImageCaptureException exception) {
+                ticket.fail();
+                Log.e(TAG, "Burst shot failed", exception);
+                runOnUiThread(controller::onShotFailed);
+            }
+        });
+    }
+
+    // Saves the next frame the preview draws: grabbed on the GL thread, flipped upright and encoded
+    // by the save queue. controller is null for single photos.
+    private void capturePreviewFrame(PhotoSaveQueue.Ticket ticket, String name, BurstController controller) {
+        long requestedNanos = System.nanoTime();
+        GlFrameGrabber.Callback callback = new GlFrameGrabber.Callback() {
+            @Override
+            public void onFrameGrabbed(ByteBuffer rgba, int width, int height, long timestampUs) {
+                Bitmap frame;
+                try {
+                    frame = bitmapPool.acquire(width, height, Bitmap.Config.ARGB_8888);
+                } catch (OutOfMemoryError e) {
+                    onGrabFailed(new RuntimeException("Out of memory while grabbing the preview", e));
+                    return;
+                }
+                frame.copyPixelsFromBuffer(rgba);
+                // The surface alpha is meaningless, treat the frame as opaque
+                frame.setHasAlpha(false);
+                if (controller != null) {
+                    long capturedNanos = System.nanoTime();
+                    runOnUiThread(() -> controller.onShotCaptured(capturedNanos));
+                }
+                ticket.submit(
+                        quality -> MediaStoreWriter.insertJpeg(getContentResolver(), name,
+                                out -> writeUpright(frame, out, quality)),
+                        shotSaved(name, controller, requestedNanos));
+            }
+
+            @Override
+            public void onGrabFailed(Exception error) {
+                ticket.fail();
+                Log.e(TAG, "Cannot grab the preview for " + name, error);
+                runOnUiThread(() -> {
+                    if (controller != null) {
+                        controller.onShotFailed();
+                    } else {
+                        Toast.makeText(MainActivity.this, "Error saving photo: " + error.getMessage(), Toast.LENGTH_SHORT).show();
                     }
+                });
+            }
+        };
+        if (frameGrabber == null || !frameGrabber.request(callback)) {
+            callback.onGrabFailed(new IllegalStateException("No preview running"));
+        }
+    }
+
+    // GL reads rows bottom up, the frame is flipped while copied into the bitmap that is encoded
+    private void writeUpright(Bitmap frame, OutputStream out, int quality) throws IOException {
+        Bitmap upright = null;
+        try {
+            upright = bitmapPool.acquire(frame.getWidth(), frame.getHeight(), Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(upright);
+            canvas.scale(1f, -1f, 0f, frame.getHeight() / 2f);
+            canvas.drawBitmap(frame, 0f, 0f, null);
+            if (!upright.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+                throw new IOException("Cannot encode the preview frame");
+            }
+        } finally {
+            // Pooled bitmaps are handed out with alpha
+            frame.setHasAlpha(true);
+            bitmapPool.release(frame);
+            bitmapPool.release(upright);
+        }
+    }
+
+    // Reports a saved shot: to the burst if there is one, else with a toast; requestedNanos 0 skips the metric
+    private PhotoSaveQueue.Callback<Uri> shotSaved(String name, BurstController controller, long requestedNanos) {
+        return new PhotoSaveQueue.Callback<Uri>() {
+            @Override
+            public void onSaved(Uri result) {
+                if (requestedNanos != 0) {
+                    pipelineMetrics.record(PipelineMetrics.Stage.CAPTURE_SAVED, requestedNanos);
                 }
-            });
+                if (controller == null) {
+                    Toast.makeText(MainActivity.this, "Photo has been saved successfully to " + result, Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                controller.onShotSaved();
+                if (controller.isSettled()) {
+                    Toast.makeText(MainActivity.this, controller.describe(), Toast.LENGTH_SHORT).show();
+                }
+            }
 
+            @Override
+            public void onFailed(Exception error) {
+                Log.e(TAG, "Cannot save " + name, error);
+                if (controller == null) {
+                    Toast.makeText(MainActivity.this, "Error saving photo: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                controller.onSaveFailed();
+            }
+        };
+    }
 
-        });
+    // The JPEG of an in-memory capture, null if the image is not a JPEG
+    private static byte[] jpegBytes(ImageProxy image) {
+        if (image.getFormat() != ImageFormat.JPEG) {
+            return null;
+        }
+        ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+        buffer.rewind();
+        byte[] jpeg = new byte[buffer.remaining()];
+        buffer.get(jpeg);
+        return jpeg;
+    }
+
+    // Compiles assets/gestures.txt, the built-in rules stay active if it is missing or malformed
+    private void loadGestureRules() {
+        try (Reader reader = new InputStreamReader(getAssets().open(GESTURE_RULES_ASSET), StandardCharsets.UTF_8)) {
+            GestureRules rules = GestureRules.parse(reader);
+            GestureDetect.setRules(rules);
+            Log.i(TAG, "Loaded " + rules.getRuleCount() + " gesture rules");
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Using built-in gesture rules, could not load " + GESTURE_RULES_ASSET, e);
+        }
+    }
+
+    private GestureModel loadGestureModel() {
+        File file = new File(getFilesDir(), GESTURE_MODEL_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            GestureModel model = GestureModel.load(file);
+            Log.i(TAG, "Loaded gesture model with " + model.getLabelCount() + " labels");
+            return model;
+        } catch (IOException e) {
+            Log.e(TAG, "Ignoring gesture model " + file, e);
+            return null;
+        }
     }
 
     private void startCamera() {
         cameraInput.start(
                 this,
                 hands.getGlContext(),
-                cameraFaceMediapipe, // CameraInput.CameraFacing.FRONT or ...BACK
+                cameraSession.getLensFacing() == CameraSelector.LENS_FACING_FRONT
+                        ? CameraInput.CameraFacing.FRONT
+                        : CameraInput.CameraFacing.BACK,
                 glSurfaceView.getWidth(),
                 glSurfaceView.getHeight());
 
-    cameraProviderFuture = ProcessCameraProvider.getInstance(this);
-
-    // required for taking pictures
-    imageCapture = new ImageCapture.Builder()
-            .setCaptureMode(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY)
-            .build();
-
-
-    cameraProviderFuture.addListener(() -> {
-      try {
-        ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
-        startCameraHelper(cameraProvider);
-      } catch (ExecutionException | InterruptedException e) {
-        e.printStackTrace();
-      }
-    }, getExecutor());
+    // In preview mode photos come from frameGrabber, the camera keeps the single stream CameraInput bound
+    imageCapture = capturePreviewFrames ? null : cameraSession.getImageCapture();
+    CameraInput input = cameraInput;
+    cameraSession.attach(() -> cameraInputPreview(input), imageCapture != null);
   }
 
     @SuppressLint("RestrictedApi")
-    private void startCameraHelper(ProcessCameraProvider cameraProvider) {
-        cameraProvider.unbindAll();
-        CameraSelector cameraSelector = new CameraSelector.Builder()
-                .requireLensFacing(cameraFaceCameraX)
-                .build();
-
-        Preview preview;
+    private Preview cameraInputPreview(CameraInput input) {
         try {
             // REFLECTION! We are accessing the Preview object that is created by mediapipe, 2 layers of wrappers and all declared private...
             // https://stackoverflow.com/questions/1196192/how-to-read-the-value-of-a-private-field-from-a-different-class-in-java
-            Field f1 = cameraInput.getClass().getDeclaredField("cameraHelper"); //potential NoSuchFieldException
+            Field f1 = input.getClass().getDeclaredField("cameraHelper"); //potential NoSuchFieldException
             f1.setAccessible(true);
-            CameraXPreviewHelper cameraHelper = (CameraXPreviewHelper) f1.get(cameraInput);
+            CameraXPreviewHelper cameraHelper = (CameraXPreviewHelper) f1.get(input);
             assert cameraHelper != null;
             Field f2 = cameraHelper.getClass().getDeclaredField("preview"); //potential NoSuchFieldException
             f2.setAccessible(true);
-            preview = (Preview) f2.get(cameraHelper);
+            Preview preview = (Preview) f2.get(cameraHelper);
             assert preview != null;
-            Log.e(TAG, "Reflection works, accessing the Preview: " + preview);
+            Log.i(TAG, "Reflection works, accessing the Preview: " + preview);
+            return preview;
         } catch (Exception e) {
-            e.printStackTrace();
-            preview = (new androidx.camera.core.Preview.Builder()).build();
+            // Photos still work, switching the lens restarts the camera instead
+            Log.e(TAG, "Cannot access the camera preview", e);
+            return null;
         }
-
-        cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageCapture);
     }
 
     private void stopCurrentPipeline() {
-        if (cameraInput != null) {
-            cameraInput.setNewFrameListener(null);
-            cameraInput.close();
-        }
+        // No pipeline to feed until setupStreamingModePipeline, which starts the camera again
+        inputSource = InputSource.UNKNOWN;
+        stopCameraInput();
         if (glSurfaceView != null) {
             glSurfaceView.setVisibility(View.GONE);
         }
+        if (frameGrabber != null) {
+            frameGrabber.close();
+            frameGrabber = null;
+        }
         if (hands != null) {
-            hands.close();
+            // Kept for the next activity, HandsHolder closes it if memory runs low
+            HandsHolder.park(hands, handsOptions);
+            hands = null;
+        }
+        if (gestureAnalyzer != null) {
+            gestureAnalyzer.setEventBus(null);
+            gestureAnalyzer.close();
+            gestureAnalyzer = null;
         }
+        if (gestureEventLogSubscription != null) {
+            gestureEventLogSubscription.close();
+            gestureEventLogSubscription = null;
+        }
+        stopLandmarkRecording();
     }
 
-    private void logWristLandmark(HandsResult result, boolean showPixelValues) {
-        if (result.multiHandLandmarks().isEmpty()) {
-            return;
-        }
-        NormalizedLandmark wristLandmark =
-                result.multiHandLandmarks().get(0).getLandmarkList().get(HandLandmark.WRIST);
-        // For Bitmaps, show the pixel values. For texture inputs, show the normalized coordinates.
-        if (showPixelValues) {
-            int width = result.inputBitmap().getWidth();
-            int height = result.inputBitmap().getHeight();
-            Log.i(
-                    TAG,
-                    String.format(
-                            "MediaPipe Hand wrist coordinates (pixel values): x=%f, y=%f",
-                            wristLandmark.getX() * width, wristLandmark.getY() * height));
-        } else {
-            Log.i(
-                    TAG,
-                    String.format(
-                            "MediaPipe Hand wrist normalized coordinates (value range: [0, 1]): x=%f, y=%f",
-                            wristLandmark.getX(), wristLandmark.getY()));
+    @Override
+    protected void onDestroy() {
+        if (hands == null && handsFuture != null) {
+            // Still being built, park it once done
+            HandsOptions options = handsOptions;
+            handsFuture.thenAccept(readyHands -> HandsHolder.park(readyHands, options));
         }
-        if (result.multiHandWorldLandmarks().isEmpty()) {
+        // onPause already stopped any burst, nothing may run against the closed analyzer
+        timer.removeCallbacks(burstTask);
+        burst = null;
+        // Drops a running countdown or cooldown along with its pending tick
+        timer.removeCallbacks(sequencerTask);
+        captureSequencer.disarm();
+        stopCurrentPipeline();
+        gestureTriggers.detach(PreferenceManager.getDefaultSharedPreferences(this));
+        // Queued photos still finish, their callbacks are dropped with the activity
+        photoSaveQueue.close();
+        captureCallbacks.shutdown();
+        super.onDestroy();
+    }
+
+    // Normalized coordinates in [0, 1], world coordinates in meters around the hand's center
+    private void logWristLandmark(MultiHandFrame frame) {
+        if (frame.handCount() == 0 || !frame.hand(0).isPresent() || !wristLog.begin()) {
             return;
         }
-        Landmark wristWorldLandmark =
-                result.multiHandWorldLandmarks().get(0).getLandmarkList().get(HandLandmark.WRIST);
-        Log.i(
-                TAG,
-                String.format(
-                        "MediaPipe Hand wrist world coordinates (in meters with the origin at the hand's"
-                                + " approximate geometric center): x=%f m, y=%f m, z=%f m",
-                        wristWorldLandmark.getX(), wristWorldLandmark.getY(), wristWorldLandmark.getZ()));
-      }
+        HandFrame hand = frame.hand(0);
+        wristLog.append("x=").append(hand.x(HandLandmark.WRIST), 4)
+                .append(" y=").append(hand.y(HandLandmark.WRIST), 4);
+        HandFrame worldHand = frame.worldHand(0);
+        if (worldHand.isPresent()) {
+            wristLog.append(" world x=").append(worldHand.x(HandLandmark.WRIST), 4)
+                    .append(" m y=").append(worldHand.y(HandLandmark.WRIST), 4)
+                    .append(" m z=").append(worldHand.z(HandLandmark.WRIST), 4).append(" m");
+        }
+        wristLog.emit();
+    }
 
 
     ///////////////////////////////
@@ -491,6 +1152,12 @@ public class MainActivity extends AppCompatActivity {
     }
 
   private void capturePhoto() {
+    // ImageCapture encodes and writes on its own thread, the ticket only bounds how many are in flight
+    PhotoSaveQueue.Ticket ticket = photoSaveQueue.tryReserve();
+    if (ticket == null) {
+      Toast.makeText(this, "Still saving earlier photos, try again", Toast.LENGTH_SHORT).show();
+      return;
+    }
     long unixTime = System.currentTimeMillis()/1000;
     String timestamp = Long.toString(unixTime);
 
@@ -498,23 +1165,31 @@ public class MainActivity extends AppCompatActivity {
     contentValues.put(MediaStore.MediaColumns.DISPLAY_NAME, timestamp);
     contentValues.put(MediaStore.MediaColumns.MIME_TYPE, "image/jpeg");
     _btn_map_depot.setVisibility(View.VISIBLE);
+    if (imageCapture == null) {
+      capturePreviewFrame(ticket, timestamp, null);
+      return;
+    }
 
+    long requestedNanos = System.nanoTime();
     imageCapture.takePicture(
             new ImageCapture.OutputFileOptions.Builder(
                     getContentResolver(),
                     MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
                     contentValues
             ).build(),
-            getExecutor(),
+            captureCallbacks,
             new ImageCapture.OnImageSavedCallback() {
               @Override
               public void onImageSaved(@NonNull ImageCapture.OutputFileResults outputFileResults) {
-                Toast.makeText(MainActivity.this, "Photo has been saved successfully to " + MediaStore.Images.Media.EXTERNAL_CONTENT_URI.getPath(), Toast.LENGTH_SHORT).show();
+                pipelineMetrics.record(PipelineMetrics.Stage.CAPTURE_SAVED, requestedNanos);
+                ticket.complete();
+                runOnUiThread(() -> Toast.makeText(MainActivity.this, "Photo has been saved successfully to " + MediaStore.Images.Media.EXTERNAL_CONTENT_URI.getPath(), Toast.LENGTH_SHORT).show());
               }
 
               @Override
               public void onError(@NonNull ImageCaptureException exception) {
-                Toast.makeText(MainActivity.this, "Error saving photo: " + exception.getMessage(), Toast.LENGTH_SHORT).show();
+                ticket.fail();
+                runOnUiThread(() -> Toast.makeText(MainActivity.this, "Error saving photo: " + exception.getMessage(), Toast.LENGTH_SHORT).show());
               }
 
             }
@@ -537,46 +1212,74 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onActivityResult(int requestCode, int resultCode, Intent data) {
-    Bitmap bmp = null;
       if(data == null){
           _btn_map_depot.setVisibility(View.INVISIBLE);
           _btn_save_cen.setVisibility(View.INVISIBLE);
           _btn_save_img.setVisibility(View.INVISIBLE);
-          captureFlag = false;
+          captureSequencer.arm();
           return;
       }
     if (resultCode == RESULT_OK) {
       Uri uri = data.getData();
       Log.e("uri", uri.toString());
-      ContentResolver cr = this.getContentResolver();
-      try {
-        bmp = BitmapFactory.decodeStream(cr.openInputStream(uri));
-        bmp = adjustPhotoRotation(bmp, 0);
-        Bitmap bmp_save = DrawingUtils.drawTextToLeftBottom(this, bmp, curGesture, 40, Color.RED, 20, 20);
+      PhotoAnnotator.Label label = new PhotoAnnotator.Label(curGesture, DrawingUtils.dp2px(this, 40), Color.RED,
+              AnnotationLayout.Anchor.LEFT_BOTTOM, DrawingUtils.dp2px(this, 20), DrawingUtils.dp2px(this, 20));
+      Bitmap bmp = decodePreview(uri, label);
+      if (bmp != null) {
         /* 将Bitmap设定到ImageView */
-        _iv.setImageBitmap(bmp_save);
-        this.bmp_save = bmp_save;
+        _iv.setImageBitmap(bmp);
+        bitmapPool.release(bmp_save);
+        this.bmp_save = bmp;
+        pickedPhoto = uri;
+        pickedLabel = label;
         _btn_map_depot.setVisibility(View.INVISIBLE);
-        captureFlag = true;
-      } catch (FileNotFoundException e) {
-        Log.e("Exception", e.getMessage(), e);
+        captureSequencer.disarm();
+      } else {
+        _btn_save_cen.setVisibility(View.INVISIBLE);
+        _btn_save_img.setVisibility(View.INVISIBLE);
+        captureSequencer.arm();
       }
-
-
     }
     super.onActivityResult(requestCode, resultCode, data);
   }
 
+  // Decodes a labeled preview at about the size it is shown, the photo itself is only read when saved
+  private Bitmap decodePreview(Uri uri, PhotoAnnotator.Label label) {
+    DisplayMetrics metrics = getResources().getDisplayMetrics();
+    int viewWidth = _iv.getWidth() > 0 ? _iv.getWidth() : metrics.widthPixels;
+    int viewHeight = _iv.getHeight() > 0 ? _iv.getHeight() : metrics.heightPixels;
+    try {
+      return photoAnnotator.decodePreview(uri, viewWidth, viewHeight, label);
+    } catch (IOException e) {
+      Log.e("Exception", e.getMessage(), e);
+    } catch (OutOfMemoryError e) {
+      bitmapPool.clear();
+      Log.e(TAG, "Not enough memory to open " + uri, e);
+      Toast.makeText(this, "The photo is too large to open", Toast.LENGTH_SHORT).show();
+    }
+    return null;
+  }
+
   Bitmap adjustPhotoRotation(Bitmap bm, final int orientationDegree) {
+    if (orientationDegree % 360 == 0) {
+      return bm;
+    }
     Matrix m = new Matrix();
     m.setRotate(orientationDegree, (float) bm.getWidth() / 2, (float) bm.getHeight() / 2);
     try {
       Bitmap bm1 = Bitmap.createBitmap(bm, 0, 0, bm.getWidth(), bm.getHeight(), m, true);
       return bm1;
     } catch (OutOfMemoryError ex) {
+      Log.e(TAG, "Not enough memory to rotate the photo", ex);
     }
     return null;
 
   }
 
+  @Override
+  public void onTrimMemory(int level) {
+    super.onTrimMemory(level);
+    bitmapPool.clear();
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.google.mediapipe.examples.hands;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Adds JPEGs to the shared pictures collection. The entry stays pending, hidden from other apps,
+ * until the content is complete, and is removed again if writing fails.
+ */
+final class MediaStoreWriter {
+
+    interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private MediaStoreWriter() {
+    }
+
+    static Uri insertJpeg(ContentResolver resolver, String displayName, Content content) throws IOException {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.DISPLAY_NAME, displayName);
+        values.put(MediaStore.MediaColumns.MIME_TYPE, "image/jpeg");
+        values.put(MediaStore.MediaColumns.IS_PENDING, 1);
+        Uri item = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if (item == null) {
+            throw new IOException("Cannot create " + displayName + " in MediaStore");
+        }
+        try (OutputStream out = resolver.openOutputStream(item)) {
+            if (out == null) {
+                throw new IOException("Cannot write " + item);
+            }
+            content.writeTo(out);
+        } catch (IOException | RuntimeException e) {
+            resolver.delete(item, null, null);
+            throw e;
+        }
+        values.clear();
+        values.put(MediaStore.MediaColumns.IS_PENDING, 0);
+        resolver.update(item, values, null, null);
+        return item;
+    }
+}
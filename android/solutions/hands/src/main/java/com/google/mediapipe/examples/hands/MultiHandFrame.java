@@ -0,0 +1,79 @@
+package com.google.mediapipe.examples.hands;
+
+// All hands of one camera frame, indexed like HandsResult.multiHandLandmarks()
+
+/**
+ * Fixed-capacity set of reusable {@link HandFrame}s, one per tracked hand.
+ *
+ * <p>Capacity is {@link #MAX_HANDS}; hands beyond that are ignored when copying a result in.
+ */
+public final class MultiHandFrame {
+
+    public static final int MAX_HANDS = 4;
+
+    private final HandFrame[] hands = new HandFrame[MAX_HANDS];
+    private final HandFrame[] worldHands = new HandFrame[MAX_HANDS];
+    private int handCount;
+    private long receivedNanos;
+    private long timestampUs;
+
+    public MultiHandFrame() {
+        for (int i = 0; i < MAX_HANDS; i++) {
+            hands[i] = new HandFrame();
+            worldHands[i] = new HandFrame();
+        }
+    }
+
+    // Normalized image coordinates, from multiHandLandmarks()
+    public HandFrame hand(int index) {
+        return hands[index];
+    }
+
+    // Metric coordinates around the hand's center, from multiHandWorldLandmarks(). Not present
+    // if the solution did not report world landmarks for this hand.
+    public HandFrame worldHand(int index) {
+        return worldHands[index];
+    }
+
+    public int handCount() {
+        return handCount;
+    }
+
+    public void setHandCount(int handCount) {
+        this.handCount = Math.min(handCount, MAX_HANDS);
+    }
+
+    // System.nanoTime() at which the result arrived, 0 if unknown
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    public void setReceivedNanos(long receivedNanos) {
+        this.receivedNanos = receivedNanos;
+    }
+
+    // Timestamp of the camera frame the hands were found in, in microseconds
+    public long getTimestampUs() {
+        return timestampUs;
+    }
+
+    public void setTimestampUs(long timestampUs) {
+        this.timestampUs = timestampUs;
+    }
+
+    public void clear() {
+        handCount = 0;
+        receivedNanos = 0;
+        timestampUs = 0;
+    }
+
+    public void copyFrom(MultiHandFrame other) {
+        for (int i = 0; i < other.handCount; i++) {
+            hands[i].copyFrom(other.hands[i]);
+            worldHands[i].copyFrom(other.worldHands[i]);
+        }
+        handCount = other.handCount;
+        receivedNanos = other.receivedNanos;
+        timestampUs = other.timestampUs;
+    }
+}
@@ -0,0 +1,86 @@
+package com.google.mediapipe.examples.hands;
+
+import java.util.Arrays;
+
+/**
+ * Growable, reusable array of 2D vertices that collects the overlay geometry of every hand in a
+ * frame, so the renderer can upload it once and issue a single draw call per primitive type.
+ *
+ * <p>Pure Java: packing can be checked and benchmarked without a GL context.
+ */
+final class OverlayVertexBatch {
+  static final int FLOATS_PER_VERTEX = 2;
+
+  // Vertices needed per hand by each add method.
+  static final int SQUARE_VERTICES = 8;
+  static final int CONNECTION_VERTICES = HandOverlayGeometry.NUM_CONNECTIONS * 2;
+  static final int POINT_VERTICES = HandFrame.NUM_LANDMARKS;
+
+  private float[] vertices;
+  private int floatCount;
+  private final float[] square = new float[HandOverlayGeometry.SQUARE_FLOATS];
+
+  OverlayVertexBatch(int initialVertexCapacity) {
+    vertices = new float[initialVertexCapacity * FLOATS_PER_VERTEX];
+  }
+
+  void reset() {
+    floatCount = 0;
+  }
+
+  /** Adds the four edges of the hand's bounding box as GL_LINES pairs. */
+  void addSquare(HandFrame hand) {
+    ensureCapacity(SQUARE_VERTICES);
+    HandOverlayGeometry.squareVertices(hand, square);
+    for (int i = 0; i < 4; i++) {
+      int start = 2 * i;
+      int end = 2 * ((i + 1) % 4);
+      vertices[floatCount++] = square[start];
+      vertices[floatCount++] = square[start + 1];
+      vertices[floatCount++] = square[end];
+      vertices[floatCount++] = square[end + 1];
+    }
+  }
+
+  /** Adds every hand connection as GL_LINES pairs. */
+  void addConnections(HandFrame hand) {
+    ensureCapacity(CONNECTION_VERTICES);
+    int[] connections = HandOverlayGeometry.HAND_CONNECTIONS;
+    for (int c = 0; c < connections.length; c++) {
+      int landmark = connections[c];
+      vertices[floatCount++] = hand.x(landmark);
+      vertices[floatCount++] = hand.y(landmark);
+    }
+  }
+
+  /** Adds every landmark as a single vertex, for a GL_POINTS batch. */
+  void addPoints(HandFrame hand) {
+    ensureCapacity(POINT_VERTICES);
+    float[] coords = hand.coords();
+    for (int i = 0; i < coords.length; i += HandFrame.STRIDE) {
+      vertices[floatCount++] = coords[i];
+      vertices[floatCount++] = coords[i + 1];
+    }
+  }
+
+  int vertexCount() {
+    return floatCount / FLOATS_PER_VERTEX;
+  }
+
+  int floatCount() {
+    return floatCount;
+  }
+
+  /** The backing array; only the first {@link #floatCount()} entries are valid. */
+  float[] array() {
+    return vertices;
+  }
+
+  // Only grows when more hands than ever before are on screen, so steady state never allocates.
+  private void ensureCapacity(int extraVertices) {
+    int required = floatCount + extraVertices * FLOATS_PER_VERTEX;
+    if (required > vertices.length) {
+      vertices = Arrays.copyOf(vertices, Math.max(required, vertices.length * 2));
+    }
+  }
+}
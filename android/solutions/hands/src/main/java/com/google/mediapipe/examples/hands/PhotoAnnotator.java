@@ -0,0 +1,232 @@
+package com.google.mediapipe.examples.hands;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Stamps a gesture label onto photos of any size without holding the full photo in memory.
+ *
+ * <p>The on-screen preview is decoded downsampled with {@code inSampleSize}. The saved photo keeps
+ * the full resolution: if its ARGB buffer fits in {@code fullDecodeBytes} it is decoded whole into
+ * a pooled bitmap and compressed natively, otherwise it is decoded one band of rows at a time with
+ * a {@link BitmapRegionDecoder}, the label is drawn into the bands it crosses, and every band is fed
+ * to a {@link JpegBandEncoder} that streams into the output. Placement math is in
+ * {@link AnnotationLayout}, so preview and saved photo put the label in the same spot.
+ */
+public class PhotoAnnotator {
+    private static final String TAG = "PhotoAnnotator";
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /** Text drawn onto a photo, sizes in pixels of the full-resolution photo. */
+    public static final class Label {
+        final String text;
+        final float textSize;
+        final int color;
+        final AnnotationLayout.Anchor anchor;
+        final int paddingX;
+        final int paddingY;
+
+        public Label(String text, float textSize, int color, AnnotationLayout.Anchor anchor, int paddingX, int paddingY) {
+            this.text = text;
+            this.textSize = textSize;
+            this.color = color;
+            this.anchor = anchor;
+            this.paddingX = paddingX;
+            this.paddingY = paddingY;
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final BitmapPool pool;
+    private final long fullDecodeBytes;
+    private final long bandBytes;
+
+    /**
+     * @param fullDecodeBytes largest photo buffer decoded at once, larger photos are banded
+     * @param bandBytes       size of one band of a banded photo
+     */
+    public PhotoAnnotator(ContentResolver resolver, BitmapPool pool, long fullDecodeBytes, long bandBytes) {
+        this.resolver = resolver;
+        this.pool = pool;
+        this.fullDecodeBytes = fullDecodeBytes;
+        this.bandBytes = bandBytes;
+    }
+
+    /**
+     * Decodes {@code source} downsampled for a {@code viewWidth} x {@code viewHeight} view and draws
+     * the label scaled to match, for display only.
+     */
+    public Bitmap decodePreview(Uri source, int viewWidth, int viewHeight, Label label) throws IOException {
+        BitmapFactory.Options options = decodeBounds(source);
+        int width = options.outWidth;
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inSampleSize = AnnotationLayout.sampleSize(width, options.outHeight, viewWidth, viewHeight);
+        Bitmap preview;
+        try (InputStream in = open(source)) {
+            preview = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (preview == null) {
+            throw new IOException("Cannot decode " + source);
+        }
+        Canvas canvas = new Canvas(preview);
+        drawLabel(canvas, label, preview.getWidth(), preview.getHeight(), preview.getWidth() / (float) width, 0);
+        return preview;
+    }
+
+    /** Writes {@code source} with the label as a JPEG of the same resolution to {@code out}. */
+    public void annotate(Uri source, Label label, OutputStream out, int quality) throws IOException {
+        BitmapFactory.Options options = decodeBounds(source);
+        int width = options.outWidth;
+        int height = options.outHeight;
+        if ((long) width * height * BYTES_PER_PIXEL <= fullDecodeBytes) {
+            annotateWhole(source, options, label, out, quality);
+            return;
+        }
+        ParcelFileDescriptor descriptor = resolver.openFileDescriptor(source, "r");
+        if (descriptor == null) {
+            throw new IOException("Cannot open " + source);
+        }
+        try {
+            BitmapRegionDecoder decoder;
+            try {
+                decoder = BitmapRegionDecoder.newInstance(descriptor.getFileDescriptor(), false);
+            } catch (IOException e) {
+                // Not a format the region decoder supports, keep as much resolution as fits
+                Log.w(TAG, "Cannot decode " + source + " by region, saving it downsampled", e);
+                options.inSampleSize = AnnotationLayout.sampleSizeForBudget(width, height, BYTES_PER_PIXEL, fullDecodeBytes);
+                annotateWhole(source, options, label, out, quality);
+                return;
+            }
+            try {
+                annotateBanded(decoder, label, out, quality);
+            } finally {
+                decoder.recycle();
+            }
+        } finally {
+            descriptor.close();
+        }
+    }
+
+    /** Saves {@code source} with the label as a new photo in the shared pictures collection. */
+    public Uri saveToMediaStore(Uri source, Label label, String displayName, int quality) throws IOException {
+        return MediaStoreWriter.insertJpeg(resolver, displayName, out -> annotate(source, label, out, quality));
+    }
+
+    private void annotateWhole(Uri source, BitmapFactory.Options options, Label label, OutputStream out, int quality)
+            throws IOException {
+        int width = options.outWidth;
+        int sample = Math.max(1, options.inSampleSize);
+        pool.prepareDecode(options, (width + sample - 1) / sample, (options.outHeight + sample - 1) / sample);
+        Bitmap bitmap;
+        try (InputStream in = open(source)) {
+            bitmap = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("Cannot decode " + source);
+        }
+        try {
+            drawLabel(new Canvas(bitmap), label, bitmap.getWidth(), bitmap.getHeight(), bitmap.getWidth() / (float) width, 0);
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+                throw new IOException("Cannot encode " + source);
+            }
+        } finally {
+            pool.release(bitmap);
+        }
+    }
+
+    private void annotateBanded(BitmapRegionDecoder decoder, Label label, OutputStream out, int quality)
+            throws IOException {
+        int width = decoder.getWidth();
+        int height = decoder.getHeight();
+        int bandRows = Math.min(AnnotationLayout.bandRows(width, BYTES_PER_PIXEL, bandBytes), height);
+        Bitmap band = pool.acquire(width, bandRows, Bitmap.Config.ARGB_8888);
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inBitmap = band;
+            Canvas canvas = new Canvas(band);
+            Paint paint = labelPaint(label, 1f);
+            Rect bounds = new Rect();
+            paint.getTextBounds(label.text, 0, label.text.length(), bounds);
+            int baseline = AnnotationLayout.top(label.anchor, height, bounds.height(), label.paddingY) + bounds.height();
+            // Rows the glyphs touch, one more on each side for antialiasing
+            int labelTop = baseline + bounds.top - 1;
+            int labelBottom = baseline + bounds.bottom + 1;
+
+            JpegBandEncoder encoder = new JpegBandEncoder(out, width, height, quality);
+            int[] pixels = new int[width * JpegBandEncoder.MCU_ROWS];
+            Rect region = new Rect();
+            for (int top = 0; top < height; top += bandRows) {
+                int rows = Math.min(bandRows, height - top);
+                region.set(0, top, width, top + rows);
+                // Writes into the top rows of the band bitmap, the rest of a short last band is unused
+                decoder.decodeRegion(region, options);
+                if (AnnotationLayout.overlaps(labelTop, labelBottom, top, top + rows)) {
+                    drawLabel(canvas, label, width, height, 1f, top);
+                }
+                for (int row = 0; row < rows; row += JpegBandEncoder.MCU_ROWS) {
+                    int count = Math.min(JpegBandEncoder.MCU_ROWS, rows - row);
+                    band.getPixels(pixels, 0, width, 0, row, width, count);
+                    encoder.writeRows(pixels, 0, width, count);
+                }
+            }
+            encoder.finish();
+        } finally {
+            pool.release(band);
+        }
+    }
+
+    // Draws the label of a width x height image scaled by scale, onto a canvas whose row 0 is image row originY
+    private static void drawLabel(Canvas canvas, Label label, int width, int height, float scale, int originY) {
+        Paint paint = labelPaint(label, scale);
+        Rect bounds = new Rect();
+        paint.getTextBounds(label.text, 0, label.text.length(), bounds);
+        int left = AnnotationLayout.left(label.anchor, width, bounds.width(), AnnotationLayout.scaled(label.paddingX, scale));
+        int top = AnnotationLayout.top(label.anchor, height, bounds.height(), AnnotationLayout.scaled(label.paddingY, scale));
+        canvas.save();
+        canvas.translate(0, -originY);
+        canvas.drawText(label.text, left, top + bounds.height(), paint);
+        canvas.restore();
+    }
+
+    private static Paint labelPaint(Label label, float scale) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(label.color);
+        paint.setTextSize(label.textSize * scale);
+        paint.setDither(true);
+        return paint;
+    }
+
+    private BitmapFactory.Options decodeBounds(Uri source) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = open(source)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Cannot decode " + source);
+        }
+        return options;
+    }
+
+    private InputStream open(Uri source) throws IOException {
+        InputStream in = resolver.openInputStream(source);
+        if (in == null) {
+            throw new IOException("Cannot open " + source);
+        }
+        return in;
+    }
+}
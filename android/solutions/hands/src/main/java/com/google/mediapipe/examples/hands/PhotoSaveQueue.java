@@ -0,0 +1,238 @@
+package com.google.mediapipe.examples.hands;
+
+import java.io.Closeable;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded background queue for encoding and writing photos.
+ *
+ * <p>Jobs run one at a time on a low-priority worker, so saving never competes with the camera,
+ * inference or UI threads, and their callbacks are posted to the main executor. At most
+ * {@code capacity} saves are pending at once: {@link #offer} and {@link #tryReserve()} refuse
+ * more instead of blocking or growing without bound, and the caller decides whether to drop the
+ * shot or tell the user. Saves done elsewhere, like {@code ImageCapture} writing its own file,
+ * take a slot through a {@link Ticket} so they count against the same bound.
+ *
+ * <p>Time spent waiting in the queue and saving goes to the {@link PipelineMetrics} stages
+ * {@link PipelineMetrics.Stage#SAVE_QUEUED} and {@link PipelineMetrics.Stage#SAVE_WRITTEN}.
+ */
+public class PhotoSaveQueue implements Closeable {
+
+    public static final int DEFAULT_JPEG_QUALITY = 90;
+
+    public interface Job<T> {
+        // Runs on the worker thread with the quality set when the job started
+        T save(int jpegQuality) throws Exception;
+    }
+
+    public interface Callback<T> {
+        // Called on the main executor
+        void onSaved(T result);
+
+        // Called on the main executor
+        void onFailed(Exception error);
+    }
+
+    /**
+     * A queue slot taken before the photo exists. Exactly one of the methods must be called: the
+     * save either ran elsewhere, or the photo arrived and is saved on the worker with
+     * {@link #submit}.
+     */
+    public final class Ticket {
+        private boolean done;
+
+        public void complete() {
+            if (use()) {
+                release(true);
+            }
+        }
+
+        public void fail() {
+            if (use()) {
+                release(false);
+            }
+        }
+
+        /** Queues the save in this ticket's slot, it cannot be rejected for capacity. */
+        public <T> void submit(Job<T> job, Callback<T> callback) {
+            if (!use()) {
+                throw new IllegalStateException("Ticket already used");
+            }
+            if (!execute(job, callback)) {
+                // Counted like an offer refused by a closed queue
+                rejected.incrementAndGet();
+                mainExecutor.execute(() -> callback.onFailed(new IllegalStateException("Save queue is closed")));
+            }
+        }
+
+        private synchronized boolean use() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            return true;
+        }
+    }
+
+    private final int capacity;
+    private final Executor mainExecutor;
+    private final PipelineMetrics metrics;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "PhotoSaveQueue");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private volatile int jpegQuality = DEFAULT_JPEG_QUALITY;
+
+    // Queued, running and ticketed saves
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger peakPending = new AtomicInteger();
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public PhotoSaveQueue(int capacity, Executor mainExecutor, PipelineMetrics metrics) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.mainExecutor = mainExecutor;
+        this.metrics = metrics;
+    }
+
+    // Used by jobs that start after the change
+    public void setJpegQuality(int quality) {
+        jpegQuality = Math.max(1, Math.min(quality, 100));
+    }
+
+    public int getJpegQuality() {
+        return jpegQuality;
+    }
+
+    /**
+     * Queues a save.
+     *
+     * @return false, without running or calling anything, if {@code capacity} saves are pending
+     */
+    public <T> boolean offer(Job<T> job, Callback<T> callback) {
+        if (!acquire()) {
+            return false;
+        }
+        if (!execute(job, callback)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /** Takes a slot for a save that runs elsewhere, or returns null if the queue is full. */
+    public Ticket tryReserve() {
+        return acquire() ? new Ticket() : null;
+    }
+
+    /** True if a save offered now would be accepted. */
+    public boolean hasCapacity() {
+        return pending.get() < capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    public int getPeakPending() {
+        return peakPending.get();
+    }
+
+    public long getSaved() {
+        return saved.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public String describe() {
+        return String.format(Locale.ROOT, "saves pending %d of %d, peak %d, saved %d, failed %d, rejected %d",
+                pending.get(), capacity, peakPending.get(), saved.get(), failed.get(), rejected.get());
+    }
+
+    /** Refuses new saves; the pending ones still finish and report. */
+    @Override
+    public void close() {
+        worker.shutdown();
+    }
+
+    // Runs the job in an acquired slot; false and the slot freed if the queue is closed
+    private <T> boolean execute(Job<T> job, Callback<T> callback) {
+        long queuedNanos = System.nanoTime();
+        try {
+            worker.execute(() -> run(job, callback, queuedNanos));
+            return true;
+        } catch (RuntimeException e) {
+            pending.decrementAndGet();
+            return false;
+        }
+    }
+
+    private <T> void run(Job<T> job, Callback<T> callback, long queuedNanos) {
+        long startNanos = metrics.record(PipelineMetrics.Stage.SAVE_QUEUED, queuedNanos);
+        T result = null;
+        Exception error = null;
+        boolean succeeded = false;
+        try {
+            result = job.save(jpegQuality);
+            metrics.record(PipelineMetrics.Stage.SAVE_WRITTEN, startNanos);
+            succeeded = true;
+        } catch (Exception e) {
+            error = e;
+        } catch (OutOfMemoryError e) {
+            error = new RuntimeException("Out of memory while saving", e);
+        } catch (Error e) {
+            // Still thrown on to the worker, after the slot is freed and the failure reported
+            error = new RuntimeException("Error while saving", e);
+            throw e;
+        } finally {
+            // Freed before the callback is posted, so the callback sees its slot free again
+            release(succeeded);
+            if (succeeded) {
+                T saved = result;
+                mainExecutor.execute(() -> callback.onSaved(saved));
+            } else {
+                Exception failure = error;
+                mainExecutor.execute(() -> callback.onFailed(failure));
+            }
+        }
+    }
+
+    private boolean acquire() {
+        while (true) {
+            int current = pending.get();
+            if (current >= capacity) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                peakPending.accumulateAndGet(current + 1, Math::max);
+                return true;
+            }
+        }
+    }
+
+    private void release(boolean success) {
+        pending.decrementAndGet();
+        (success ? saved : failed).incrementAndGet();
+    }
+}
@@ -0,0 +1,204 @@
+package com.google.mediapipe.examples.hands;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency of each stage of the camera, inference, gesture and capture pipeline.
+ *
+ * <p>Each stage boundary takes a {@link System#nanoTime()} stamp, and the time since the previous
+ * boundary goes into that stage's {@link LatencyHistogram}. Recording is lock-free and
+ * allocation-free, so it can stay on in production builds; only {@link #dump()} allocates.
+ *
+ * <p>Startup is tracked separately as {@link Milestone}s, each stamped once, from the activity being
+ * created to the first classified frame.
+ */
+public class PipelineMetrics {
+
+    public enum Stage {
+        // Camera frame handed to Hands.send() until its HandsResult arrives
+        RESULT_OUT("inference"),
+        // Result arrival until the analyzer worker has classified it
+        CLASSIFIED("classify"),
+        // Classification until the main thread applied the change to the views
+        UI_APPLIED("ui"),
+        // Trigger until ImageCapture.takePicture() is called, includes the countdown
+        CAPTURE_REQUESTED("countdown"),
+        // takePicture() until the photo is saved
+        CAPTURE_SAVED("capture"),
+        // Photo handed to the PhotoSaveQueue until its worker starts on it
+        SAVE_QUEUED("queued"),
+        // Encoding and writing of a queued photo
+        SAVE_WRITTEN("save"),
+        // Lens switch until the first frame from the new lens
+        CAMERA_SWITCH("switch");
+
+        final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    public enum Milestone {
+        // Activity created, the start of the timeline
+        CREATED("created"),
+        // Hands graph built or taken over warm
+        HANDS_READY("hands"),
+        // First camera frame sent to the graph
+        FIRST_FRAME("frame"),
+        // First HandsResult
+        FIRST_RESULT("result"),
+        // First result classified by the analyzer, what the user waits for
+        FIRST_CLASSIFIED("classified");
+
+        final String label;
+
+        Milestone(String label) {
+            this.label = label;
+        }
+    }
+
+    // Recent frame-in stamps, so a result can be matched to its input by timestamp. Written by
+    // the camera thread and read by the result thread; a slot is only reused 64 frames later.
+    private static final int IN_FLIGHT = 64;
+    private final AtomicLongArray inputTimestampsUs = new AtomicLongArray(IN_FLIGHT);
+    private final AtomicLongArray inputNanos = new AtomicLongArray(IN_FLIGHT);
+    private int nextInput;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final AtomicLong framesIn = new AtomicLong();
+    private final AtomicLong framesOut = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private final AtomicLongArray milestoneNanos = new AtomicLongArray(Milestone.values().length);
+
+    public PipelineMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /** Called from the camera thread right before a frame is sent to the solution. */
+    public void frameIn(long timestampUs) {
+        int slot = nextInput;
+        nextInput = slot + 1 == IN_FLIGHT ? 0 : slot + 1;
+        inputNanos.set(slot, System.nanoTime());
+        inputTimestampsUs.set(slot, timestampUs);
+        if (framesIn.incrementAndGet() == 1) {
+            reach(Milestone.FIRST_FRAME);
+        }
+    }
+
+    /**
+     * Called from the result thread when the result for {@code timestampUs} arrives.
+     *
+     * @return the arrival time, to be passed on to the next stage
+     */
+    public long resultOut(long timestampUs) {
+        long now = System.nanoTime();
+        if (framesOut.incrementAndGet() == 1) {
+            reach(Milestone.FIRST_RESULT);
+        }
+        for (int i = 0; i < IN_FLIGHT; i++) {
+            if (inputTimestampsUs.get(i) == timestampUs) {
+                histograms[Stage.RESULT_OUT.ordinal()].record(now - inputNanos.get(i));
+                break;
+            }
+        }
+        return now;
+    }
+
+    /**
+     * Records the time since {@code startNanos} for {@code stage}. A start of 0 means the previous
+     * boundary was not observed and nothing is recorded.
+     *
+     * @return the current time, to be passed on to the next stage
+     */
+    public long record(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        if (startNanos != 0) {
+            histograms[stage.ordinal()].record(now - startNanos);
+        }
+        return now;
+    }
+
+    /**
+     * Stamps {@code milestone} the first time it is reached, later calls only cost a read.
+     *
+     * @return true for the call that stamped it
+     */
+    public boolean reach(Milestone milestone) {
+        int i = milestone.ordinal();
+        return milestoneNanos.get(i) == 0 && milestoneNanos.compareAndSet(i, 0, System.nanoTime());
+    }
+
+    /** Milliseconds from {@link Milestone#CREATED} to {@code milestone}, or -1 if either was not reached. */
+    public long getMillisTo(Milestone milestone) {
+        long created = milestoneNanos.get(Milestone.CREATED.ordinal());
+        long reached = milestoneNanos.get(milestone.ordinal());
+        if (created == 0 || reached == 0) {
+            return -1;
+        }
+        return (reached - created) / 1_000_000L;
+    }
+
+    // A frame was overwritten before the analyzer got to it
+    public void frameDropped() {
+        framesDropped.incrementAndGet();
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public long getFramesIn() {
+        return framesIn.get();
+    }
+
+    public long getFramesOut() {
+        return framesOut.get();
+    }
+
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    // Milestones are kept, startup only happens once
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        framesIn.set(0);
+        framesOut.set(0);
+        framesDropped.set(0);
+    }
+
+    /** Human-readable p50/p95/p99/max per stage in milliseconds, the frame counters and the startup. */
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%-9s %6s %7s %7s %7s %7s%n", "stage", "n", "p50", "p95", "p99", "max"));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            out.append(String.format(Locale.ROOT, "%-9s %6d %7.2f %7.2f %7.2f %7.2f%n",
+                    stage.label,
+                    histogram.getCount(),
+                    histogram.getPercentileNanos(50) / 1e6,
+                    histogram.getPercentileNanos(95) / 1e6,
+                    histogram.getPercentileNanos(99) / 1e6,
+                    histogram.getMaxNanos() / 1e6));
+        }
+        long in = framesIn.get();
+        long results = framesOut.get();
+        out.append(String.format(Locale.ROOT, "frames in %d, results %d, lost in graph %d, dropped by analyzer %d",
+                in, results, Math.max(0, in - results), framesDropped.get()));
+        out.append(String.format(Locale.ROOT, "%nstartup ms"));
+        for (Milestone milestone : Milestone.values()) {
+            if (milestone != Milestone.CREATED) {
+                long millis = getMillisTo(milestone);
+                out.append(' ').append(milestone.label).append(' ').append(millis < 0 ? "-" : Long.toString(millis));
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package com.google.mediapipe.examples.hands;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Decides which stable gestures start a capture.
+ *
+ * <p>The selected gestures are kept as a bitmask over {@link HandGesture#ordinal()}, so {@link
+ * #isTrigger(HandGesture)} is a single load and bit test that can run on every frame from any
+ * thread. Has no Android dependencies; {@link GestureTriggers} keeps it in sync with the settings.
+ */
+public class TriggerRule implements GestureAnalyzer.TriggerPolicy {
+
+    private volatile int mask;
+    private volatile int maxHands = 1;
+    private volatile boolean allHands;
+
+    public TriggerRule() {
+    }
+
+    public TriggerRule(Set<HandGesture> selected, int maxHands, boolean allHands) {
+        setSelected(selected);
+        setMaxHands(maxHands);
+        setAllHands(allHands);
+    }
+
+    public boolean isTrigger(HandGesture gesture) {
+        return (mask & (1 << gesture.ordinal())) != 0;
+    }
+
+    /**
+     * Single-hand mode: any hand showing a selected gesture triggers. All-hands mode: every one of
+     * the {@link #getMaxHands()} tracked hands has to show the same selected gesture, e.g. both
+     * hands showing VICTORY.
+     */
+    @Override
+    public HandGesture match(HandGesture[] gestures, int handCount) {
+        if (!allHands) {
+            for (int i = 0; i < handCount; i++) {
+                if (isTrigger(gestures[i])) {
+                    return gestures[i];
+                }
+            }
+            return HandGesture.UNDEFINED;
+        }
+        if (handCount < maxHands || !isTrigger(gestures[0])) {
+            return HandGesture.UNDEFINED;
+        }
+        for (int i = 1; i < handCount; i++) {
+            if (gestures[i] != gestures[0]) {
+                return HandGesture.UNDEFINED;
+            }
+        }
+        return gestures[0];
+    }
+
+    public EnumSet<HandGesture> getSelected() {
+        EnumSet<HandGesture> selected = EnumSet.noneOf(HandGesture.class);
+        int current = mask;
+        for (HandGesture gesture : HandGesture.values()) {
+            if ((current & (1 << gesture.ordinal())) != 0) {
+                selected.add(gesture);
+            }
+        }
+        return selected;
+    }
+
+    public void setSelected(Set<HandGesture> selected) {
+        int result = 0;
+        for (HandGesture gesture : selected) {
+            result |= 1 << gesture.ordinal();
+        }
+        mask = result;
+    }
+
+    protected void setMask(int mask) {
+        this.mask = mask;
+    }
+
+    // Number of hands the Hands solution should track, read when the pipeline is set up
+    public int getMaxHands() {
+        return maxHands;
+    }
+
+    public void setMaxHands(int maxHands) {
+        this.maxHands = Math.max(1, Math.min(MultiHandFrame.MAX_HANDS, maxHands));
+    }
+
+    public boolean isAllHands() {
+        return allHands;
+    }
+
+    public void setAllHands(boolean allHands) {
+        this.allHands = allHands;
+    }
+}